@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryFixedPoint;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+
+/**
+ * Measures the memory used per account by each of the accounts repositories, split into java heap and direct (off-heap) memory.
+ * Each repository is filled with the same accounts and the retained memory is measured after forcing garbage collections.
+ *
+ * Usage: gradle accountMemoryBenchmark, or run the main class with args [numberOfAccounts]
+ * @author sinkar
+ *
+ */
+public class AccountMemoryBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int numberOfAccounts = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+
+		System.out.printf("%-30s %18s %18s %18s%n", "repository", "heap bytes/acc", "off-heap bytes/acc", "total bytes/acc");
+		measure("AccountsRepositoryInMemory", () -> new AccountsRepositoryInMemory(transactionIdempotency()), numberOfAccounts);
+		measure("AccountsRepositoryFixedPoint", () -> new AccountsRepositoryFixedPoint(transactionIdempotency()), numberOfAccounts);
+		measure("AccountsRepositoryOffHeap", () -> new AccountsRepositoryOffHeap(23, 1 << 20, transactionIdempotency()), numberOfAccounts);
+	}
+
+	private static TransactionIdempotency transactionIdempotency() {
+		return new TransactionIdempotency(3600, 1_000_000);
+	}
+
+	private static void measure(String name, Supplier<AccountsRepository> repositorySupplier, int numberOfAccounts) throws InterruptedException {
+		long heapBefore = usedHeap();
+		long directBefore = usedDirectMemory();
+
+		AccountsRepository accountsRepository = repositorySupplier.get();
+		for(int i = 0; i < numberOfAccounts; i++)
+			accountsRepository.createAccount(new Account("account-" + i, BigDecimal.valueOf(i % 100_000, 2)));
+
+		double heapPerAccount = (double) (usedHeap() - heapBefore) / numberOfAccounts;
+		double directPerAccount = (double) (usedDirectMemory() - directBefore) / numberOfAccounts;
+		System.out.printf("%-30s %18.1f %18.1f %18.1f%n", name, heapPerAccount, directPerAccount, heapPerAccount + directPerAccount);
+
+		// Keep the repository reachable until it has been measured.
+		if(accountsRepository.getAccount("account-0") == null)
+			throw new IllegalStateException("Account not found");
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(200);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long usedDirectMemory() {
+		for(BufferPoolMXBean bufferPool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if("direct".equals(bufferPool.getName()))
+				return bufferPool.getMemoryUsed();
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.db.awmd.challenge.journal.WriteAheadJournal;
+
+/**
+ * Compares durable appends to the write-ahead journal with one fsync per record against group commit,
+ * for an increasing number of concurrent writers. Every writer appends records of the size of a transaction record
+ * and waits until each one is durable, like the journaled transaction repository does.
+ *
+ * Usage: gradle journalBenchmark, or run the main class with args [maxWriters] [secondsPerRun] [directory]
+ * @author sinkar
+ *
+ */
+public class JournalBenchmark {
+
+	private static final int RECORD_SIZE = 100;
+
+	public static void main(String[] args) throws Exception {
+		int maxWriters = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int secondsPerRun = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		Path directory = args.length > 2 ? Files.createDirectories(Paths.get(args[2])) : Files.createTempDirectory("journalBenchmark");
+
+		System.out.printf("%-14s %-8s %14s %14s %14s %14s%n", "mode", "writers", "records/s", "p50 (us)", "p99 (us)", "max (us)");
+		for(int writers = 1; writers <= maxWriters; writers *= 4) {
+			run("fsync-per-write", false, writers, secondsPerRun, directory);
+			run("group-commit", true, writers, secondsPerRun, directory);
+		}
+	}
+
+	private static void run(String mode, boolean groupCommit, int writers, int seconds, Path directory) throws Exception {
+		Path file = directory.resolve(mode + "-" + writers + ".wal");
+		Files.deleteIfExists(file);
+
+		long[][] latencies = new long[writers][];
+		int[] counts = new int[writers];
+		try(WriteAheadJournal journal = new WriteAheadJournal(file, groupCommit)) {
+			CountDownLatch done = new CountDownLatch(writers);
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+			for(int w = 0; w < writers; w++) {
+				int writer = w;
+				new Thread(() -> {
+					byte[] record = new byte[RECORD_SIZE];
+					long[] writerLatencies = new long[1024];
+					int count = 0;
+					long now;
+					while((now = System.nanoTime()) < deadline) {
+						journal.appendAndSync(record);
+						if(count == writerLatencies.length)
+							writerLatencies = Arrays.copyOf(writerLatencies, count * 2);
+						writerLatencies[count++] = System.nanoTime() - now;
+					}
+					latencies[writer] = writerLatencies;
+					counts[writer] = count;
+					done.countDown();
+				}).start();
+			}
+			done.await();
+		}finally {
+			Files.deleteIfExists(file);
+		}
+
+		int total = 0;
+		for(int count : counts)
+			total += count;
+		long[] all = new long[total];
+		int position = 0;
+		for(int w = 0; w < writers; w++) {
+			System.arraycopy(latencies[w], 0, all, position, counts[w]);
+			position += counts[w];
+		}
+		Arrays.sort(all);
+		System.out.printf("%-14s %-8d %14d %14d %14d %14d%n", mode, writers, total / seconds,
+				percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000, all.length == 0 ? 0 : all[all.length - 1] / 1000);
+	}
+
+	private static long percentile(long[] sortedValues, double percentile) {
+		if(sortedValues.length == 0)
+			return 0;
+		return sortedValues[(int) Math.min(sortedValues.length - 1, Math.ceil(percentile * sortedValues.length) - 1)];
+	}
+}
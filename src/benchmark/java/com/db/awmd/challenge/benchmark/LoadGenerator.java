@@ -0,0 +1,262 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Open-loop load generator for POST /v1/transaction/jobs, run against a locally started instance.
+ * It creates the accounts, then sends transfer requests at a fixed rate whatever the response times are, polls every
+ * accepted job until it is completed, and finally checks that the total money across all accounts is unchanged.
+ *
+ * The response latency is measured from the time at which a request was due to be sent, not from the time it was
+ * actually sent, so that the requests held up by a saturated server are accounted for (coordinated omission).
+ * The latency from the actual send is reported too: the gap between the two shows where saturation starts.
+ *
+ * Usage: gradle loadGenerator, or run the main class with args [baseUrl] [accounts] [requestsPerSecond] [seconds] [zipfExponent] [connections]
+ * A zipfExponent of 0 selects the accounts uniformly; around 1 makes a few accounts take most of the transfers.
+ * @author sinkar
+ *
+ */
+public class LoadGenerator {
+
+	private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000);
+	private static final BigDecimal AMOUNT = BigDecimal.ONE;
+	private static final long POLL_INTERVAL_MILLIS = 10;
+	private static final long COMPLETION_TIMEOUT_SECONDS = 60;
+	private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final String baseUrl;
+	private final String[] accountIds;
+	private final ZipfDistribution zipfDistribution;
+
+	private final Recorder responseLatency = new Recorder(MAX_LATENCY_NANOS, 3);
+	private final Recorder serviceTime = new Recorder(MAX_LATENCY_NANOS, 3);
+	private final Recorder completionLatency = new Recorder(MAX_LATENCY_NANOS, 3);
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder succeeded = new LongAdder();
+	private final LongAdder unsuccessful = new LongAdder();
+	private final AtomicLong pendingJobs = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		String baseUrl = args.length > 0 ? args[0] : "http://localhost:18080";
+		int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int requestsPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+		double zipfExponent = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+		int connections = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+
+		new LoadGenerator(baseUrl, accounts, zipfExponent).run(requestsPerSecond, seconds, connections);
+	}
+
+	private LoadGenerator(String baseUrl, int accounts, double zipfExponent) {
+		this.baseUrl = baseUrl;
+		this.accountIds = new String[accounts];
+		// Unique per run, so that the generator can be run several times against the same instance.
+		String prefix = "load-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+		for(int i = 0; i < accounts; i++)
+			accountIds[i] = prefix + i;
+		this.zipfDistribution = new ZipfDistribution(accounts, zipfExponent);
+	}
+
+	private void run(int requestsPerSecond, int seconds, int connections) throws Exception {
+		System.out.printf("Creating %d accounts on %s%n", accountIds.length, baseUrl);
+		for(String accountId : accountIds) {
+			ObjectNode account = objectMapper.createObjectNode();
+			account.put("accountId", accountId);
+			account.put("balance", INITIAL_BALANCE);
+			send("POST", "/v1/accounts", account);
+		}
+
+		System.out.printf("Sending %d transfers/s for %d s over %d connections%n", requestsPerSecond, seconds, connections);
+		ExecutorService senders = Executors.newFixedThreadPool(connections);
+		ScheduledExecutorService pollers = Executors.newScheduledThreadPool(Math.max(1, connections / 4));
+
+		long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+		long requests = (long) requestsPerSecond * seconds;
+		long start = System.nanoTime();
+		for(long i = 0; i < requests; i++) {
+			long intendedStart = start + i * intervalNanos;
+			long wait = intendedStart - System.nanoTime();
+			if(wait > 0)
+				TimeUnit.NANOSECONDS.sleep(wait);
+			// The request is due now, even if no connection is free to send it yet.
+			senders.execute(() -> transfer(intendedStart, pollers));
+		}
+		senders.shutdown();
+		senders.awaitTermination(COMPLETION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		double sendingSeconds = (System.nanoTime() - start) / 1e9;
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(COMPLETION_TIMEOUT_SECONDS);
+		while(pendingJobs.get() > 0 && System.nanoTime() < deadline)
+			TimeUnit.MILLISECONDS.sleep(POLL_INTERVAL_MILLIS);
+		pollers.shutdownNow();
+		double totalSeconds = (System.nanoTime() - start) / 1e9;
+
+		report(requests, sendingSeconds, totalSeconds);
+		// A job still in flight may be debited and not credited yet, which would be reported as money lost.
+		if(pendingJobs.get() > 0)
+			System.out.printf("%nMoney conservation not checked: %d jobs not completed after %d s%n", pendingJobs.get(), COMPLETION_TIMEOUT_SECONDS);
+		else
+			checkMoneyConservation();
+	}
+
+	private void transfer(long intendedStart, ScheduledExecutorService pollers) {
+		int source = zipfDistribution.sample();
+		int target = zipfDistribution.sample();
+		if(target == source)
+			target = (target + 1 + ThreadLocalRandom.current().nextInt(accountIds.length - 1)) % accountIds.length;
+
+		ObjectNode request = objectMapper.createObjectNode();
+		request.put("sourceAccountId", accountIds[source]);
+		request.put("targetAccountId", accountIds[target]);
+		request.put("amount", AMOUNT);
+
+		long sendStart = System.nanoTime();
+		Response response;
+		try {
+			response = send("POST", "/v1/transaction/jobs", request);
+		}catch(IOException e) {
+			failed.increment();
+			return;
+		}
+		long now = System.nanoTime();
+		responseLatency.recordValue(Math.min(now - intendedStart, MAX_LATENCY_NANOS));
+		serviceTime.recordValue(Math.min(now - sendStart, MAX_LATENCY_NANOS));
+
+		if(response.status != 200 && response.status != 201) {
+			rejected.increment();
+			return;
+		}
+		accepted.increment();
+		pendingJobs.incrementAndGet();
+		String transactionJobId = response.body.get("transactionJobId").asText();
+		pollers.schedule(() -> pollCompletion(transactionJobId, intendedStart, pollers), POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	private void pollCompletion(String transactionJobId, long intendedStart, ScheduledExecutorService pollers) {
+		String status;
+		try {
+			status = send("GET", "/v1/transaction/jobs/" + transactionJobId, null).body.path("transactionStatus").asText();
+		}catch(IOException e) {
+			status = "IN_PROGRESS";
+		}
+
+		if("IN_PROGRESS".equals(status) || "DEBIT_SUCCESS".equals(status)) {
+			pollers.schedule(() -> pollCompletion(transactionJobId, intendedStart, pollers), POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			return;
+		}
+
+		completionLatency.recordValue(Math.min(System.nanoTime() - intendedStart, MAX_LATENCY_NANOS));
+		if("SUCCESS".equals(status))
+			succeeded.increment();
+		else
+			unsuccessful.increment();
+		pendingJobs.decrementAndGet();
+	}
+
+	private void report(long requests, double sendingSeconds, double totalSeconds) {
+		System.out.printf("%nRequests: %d, accepted: %d, rejected: %d, connection failures: %d%n", requests, accepted.sum(), rejected.sum(), failed.sum());
+		System.out.printf("Jobs succeeded: %d, not successful: %d, not completed: %d%n", succeeded.sum(), unsuccessful.sum(), pendingJobs.get());
+		System.out.printf("Throughput: %.1f requests/s sent, %.1f jobs/s completed%n", (accepted.sum() + rejected.sum()) / sendingSeconds,
+				(succeeded.sum() + unsuccessful.sum()) / totalSeconds);
+
+		System.out.printf("%n%-42s %10s %10s %10s %10s %10s%n", "latency (ms)", "p50", "p90", "p99", "p99.9", "max");
+		printLatency("response (from intended send)", responseLatency.getIntervalHistogram());
+		printLatency("response (from actual send)", serviceTime.getIntervalHistogram());
+		printLatency("job completion (from intended send)", completionLatency.getIntervalHistogram());
+	}
+
+	private static void printLatency(String name, Histogram histogram) {
+		System.out.printf("%-42s %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, millis(histogram.getValueAtPercentile(50)),
+				millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)),
+				millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	private void checkMoneyConservation() throws IOException {
+		BigDecimal total = BigDecimal.ZERO;
+		for(String accountId : accountIds)
+			total = total.add(new BigDecimal(send("GET", "/v1/accounts/" + accountId, null).body.get("balance").asText()));
+
+		BigDecimal expected = INITIAL_BALANCE.multiply(new BigDecimal(accountIds.length));
+		if(total.compareTo(expected) == 0)
+			System.out.printf("%nMoney conserved: total balance %s%n", total.toPlainString());
+		else
+			System.out.printf("%nMONEY NOT CONSERVED: total balance %s, expected %s%n", total.toPlainString(), expected.toPlainString());
+	}
+
+	private Response send(String method, String path, JsonNode body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Accept", "application/json");
+		if(body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try(OutputStream out = connection.getOutputStream()) {
+				objectMapper.writeValue(out, body);
+			}
+		}
+
+		int status = connection.getResponseCode();
+		// The whole response is read so that the connection is kept alive for the next request.
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		byte[] content = new byte[0];
+		if(in != null) {
+			try(InputStream responseBody = in) {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				byte[] chunk = new byte[4096];
+				int read;
+				while((read = responseBody.read(chunk)) != -1)
+					buffer.write(chunk, 0, read);
+				content = buffer.toByteArray();
+			}
+		}
+		return new Response(status, parse(content));
+	}
+
+	private static JsonNode parse(byte[] content) {
+		try {
+			return content.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(new String(content, StandardCharsets.UTF_8));
+		}catch(IOException e) {
+			// e.g. the plain text body of an internal server error.
+			return objectMapper.createObjectNode();
+		}
+	}
+
+	private static final class Response {
+		private final int status;
+		private final JsonNode body;
+
+		Response(int status, JsonNode body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.db.awmd.challenge.concurrent.AccountLockStripes;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+
+/**
+ * Contention benchmark for the account locking used while debiting/crediting accounts.
+ * Every thread transfers money between its own pair of accounts, so no two threads ever touch the same account.
+ * With a global debit lock and a global credit lock the throughput stays flat as threads are added,
+ * while with locks striped over the accountId it grows with the number of cores.
+ *
+ * Usage: gradle lockContentionBenchmark, or run the main class with args [maxThreads] [secondsPerRun]
+ * @author sinkar
+ *
+ */
+public class LockContentionBenchmark {
+
+	private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+	public static void main(String[] args) throws Exception {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int secondsPerRun = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		System.out.printf("%-8s %20s %20s%n", "threads", "global locks (ops/s)", "striped locks (ops/s)");
+		for(int threads = 1; threads <= maxThreads; threads <<= 1) {
+			long global = run(threads, secondsPerRun, new GlobalLocks());
+			long striped = run(threads, secondsPerRun, new StripedLocks(new AccountLockStripes(1024)));
+			System.out.printf("%-8d %20d %20d%n", threads, global, striped);
+		}
+	}
+
+	private static long run(int threads, int seconds, LockingScheme lockingScheme) throws InterruptedException {
+		AccountsRepository accountsRepository = new AccountsRepositoryInMemory(new TransactionIdempotency(3600, 10_000_000));
+		for(int i = 0; i < threads * 2; i++)
+			accountsRepository.createAccount(new Account("account-" + i, new BigDecimal(Long.MAX_VALUE)));
+
+		AtomicLong completedTransfers = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(threads);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+		for(int t = 0; t < threads; t++) {
+			String sourceAccountId = "account-" + (2 * t);
+			String targetAccountId = "account-" + (2 * t + 1);
+			String threadName = "worker-" + t + "-";
+			Thread worker = new Thread(() -> {
+				long transfers = 0;
+				while(System.nanoTime() < deadline) {
+					TransactionDO transactionDO = new TransactionDO();
+					transactionDO.setTransactionId(threadName + transfers);
+					transactionDO.setSourceAccountId(sourceAccountId);
+					transactionDO.setTargetAccountId(targetAccountId);
+					transactionDO.setAmount(AMOUNT);
+
+					Lock debitLock = lockingScheme.debitLock(sourceAccountId);
+					debitLock.lock();
+					try {
+						accountsRepository.debitAccountForTransaction(transactionDO);
+					}finally {
+						debitLock.unlock();
+					}
+
+					Lock creditLock = lockingScheme.creditLock(targetAccountId);
+					creditLock.lock();
+					try {
+						accountsRepository.creditAccountForTransaction(transactionDO);
+					}finally {
+						creditLock.unlock();
+					}
+					transfers++;
+				}
+				completedTransfers.addAndGet(transfers);
+				done.countDown();
+			});
+			worker.start();
+		}
+		done.await();
+		return completedTransfers.get() / seconds;
+	}
+
+	private interface LockingScheme {
+		Lock debitLock(String accountId);
+
+		Lock creditLock(String accountId);
+	}
+
+	/**
+	 * Mirrors the former FundsTransferManager: one monitor for all debits and one for all credits.
+	 */
+	private static class GlobalLocks implements LockingScheme {
+		private final Lock debitLock = new ReentrantLock();
+		private final Lock creditLock = new ReentrantLock();
+
+		@Override
+		public Lock debitLock(String accountId) {
+			return debitLock;
+		}
+
+		@Override
+		public Lock creditLock(String accountId) {
+			return creditLock;
+		}
+	}
+
+	private static class StripedLocks implements LockingScheme {
+		private final AccountLockStripes accountLocks;
+
+		StripedLocks(AccountLockStripes accountLocks) {
+			this.accountLocks = accountLocks;
+		}
+
+		@Override
+		public Lock debitLock(String accountId) {
+			return accountLocks.lockFor(accountId);
+		}
+
+		@Override
+		public Lock creditLock(String accountId) {
+			return accountLocks.lockFor(accountId);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples the ranks 0..n-1 with a probability proportional to 1 / (rank + 1)^exponent, i.e. a few hot accounts take most of
+ * the transfers, like merchant or settlement accounts in real traffic.
+ * @author sinkar
+ *
+ */
+public class ZipfDistribution {
+
+	private final double[] cumulativeProbabilities;
+
+	/**
+	 * @param n The number of ranks.
+	 * @param exponent The skew; 0 is uniform, around 1 is typical of real traffic.
+	 */
+	public ZipfDistribution(int n, double exponent) {
+		cumulativeProbabilities = new double[n];
+		double sum = 0;
+		for(int rank = 0; rank < n; rank++) {
+			sum += 1 / Math.pow(rank + 1, exponent);
+			cumulativeProbabilities[rank] = sum;
+		}
+		for(int rank = 0; rank < n; rank++)
+			cumulativeProbabilities[rank] /= sum;
+	}
+
+	public int sample() {
+		int index = Arrays.binarySearch(cumulativeProbabilities, ThreadLocalRandom.current().nextDouble());
+		// Not found: the insertion point is the first rank whose cumulative probability exceeds the random number.
+		return Math.min(index >= 0 ? index : -index - 1, cumulativeProbabilities.length - 1);
+	}
+}
@@ -0,0 +1,60 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.util.TransactionUtil;
+
+/**
+ * Cost of the conversions between 'TransactionDO' and 'TransactionJob', done several times for every transfer.
+ *
+ * Usage: gradle jmh -PjmhInclude=TransactionConversionBenchmark
+ * @author sinkar
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionConversionBenchmark {
+
+	private TransactionDO transactionDO;
+	private TransactionJob transactionJob;
+
+	@Setup
+	public void createTransaction() {
+		transactionDO = new TransactionDO();
+		transactionDO.setTransactionId("0B4XJ3Q5M8R00");
+		transactionDO.setSourceAccountId("123");
+		transactionDO.setTargetAccountId("abc");
+		transactionDO.setAmount(new BigDecimal("100.25"));
+		transactionDO.setTransactionStatus(TransactionStatus.IN_PROGRESS);
+		transactionJob = TransactionUtil.convertTransactionDOToTransactionJob(transactionDO);
+	}
+
+	@Benchmark
+	public TransactionJob transactionDOToTransactionJob() {
+		return TransactionUtil.convertTransactionDOToTransactionJob(transactionDO);
+	}
+
+	@Benchmark
+	public TransactionDO transactionJobToTransactionDO() {
+		return TransactionUtil.convertTransactionJobToTransactionDO(transactionJob);
+	}
+}
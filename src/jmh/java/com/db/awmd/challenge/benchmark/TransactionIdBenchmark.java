@@ -0,0 +1,53 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.id.TimeOrderedIdGenerator;
+import com.db.awmd.challenge.id.TransactionIds;
+
+/**
+ * Cost of generating the id of a transaction with all the request threads generating ids at the same time:
+ * the time-ordered generator against the random UUIDs, which share a SecureRandom.
+ *
+ * Usage: gradle jmh -PjmhInclude=TransactionIdBenchmark
+ * @author sinkar
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class TransactionIdBenchmark {
+
+	private final TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(0, System::currentTimeMillis);
+
+	@Benchmark
+	public String timeOrderedId() {
+		return TransactionIds.format(idGenerator.nextId());
+	}
+
+	@Benchmark
+	public long timeOrderedIdUnencoded() {
+		return idGenerator.nextId();
+	}
+
+	@Benchmark
+	public String randomUUID() {
+		return UUID.randomUUID().toString();
+	}
+}
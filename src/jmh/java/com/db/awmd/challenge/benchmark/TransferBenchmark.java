@@ -0,0 +1,139 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.engine.AccountAccess;
+import com.db.awmd.challenge.engine.BlockingAccountAccess;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryFixedPoint;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+
+/**
+ * Throughput of a transfer as done by 'FundsTransferManager' without the thread pool hops: the debit of the source account
+ * and the credit of the target account, each holding its account lock stripe.
+ * The accounts are picked uniformly or Zipf-skewed, so that the cost of contention on hot accounts shows up.
+ *
+ * Usage: gradle jmh -PjmhInclude=TransferBenchmark
+ * @author sinkar
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+	private static final BigDecimal AMOUNT = BigDecimal.ONE;
+	// Large enough for the hot accounts not to run dry during a run.
+	private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000_000L);
+	private static final Executor CALLING_THREAD = Runnable::run;
+
+	@Param({"decimal", "fixed-point"})
+	private String balanceMode;
+
+	@Param({"uniform", "zipf"})
+	private String accountSelection;
+
+	@Param({"10000"})
+	private int accounts;
+
+	private String[] accountIds;
+	private AccountsRepository accountsRepository;
+	private AccountAccess accountAccess;
+	private ZipfDistribution zipfDistribution;
+	private final AtomicInteger threads = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void createAccounts() {
+		// Fewer remembered transaction ids than in production, so that the idempotency stores fit in the default heap.
+		TransactionIdempotency transactionIdempotency = new TransactionIdempotency(3600, 1_000_000);
+		accountsRepository = "fixed-point".equals(balanceMode)
+				? new AccountsRepositoryFixedPoint(transactionIdempotency)
+				: new AccountsRepositoryInMemory(transactionIdempotency);
+		accountAccess = new BlockingAccountAccess(1024);
+		zipfDistribution = new ZipfDistribution(accounts, 1.0);
+
+		accountIds = new String[accounts];
+		for(int i = 0; i < accounts; i++) {
+			accountIds[i] = "account-" + i;
+			accountsRepository.createAccount(new Account(accountIds[i], INITIAL_BALANCE));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Transfers {
+		private String transactionIdPrefix;
+		private long transfers;
+
+		@Setup(Level.Trial)
+		public void setUp(TransferBenchmark benchmark) {
+			transactionIdPrefix = "worker-" + benchmark.threads.incrementAndGet() + "-";
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void transfer1Thread(Transfers transfers) {
+		transfer(transfers);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void transfer4Threads(Transfers transfers) {
+		transfer(transfers);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void transferMaxThreads(Transfers transfers) {
+		transfer(transfers);
+	}
+
+	private void transfer(Transfers transfers) {
+		int source = selectAccount();
+		int target = selectAccount();
+		if(target == source)
+			target = (target + 1) % accounts;
+
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(transfers.transactionIdPrefix + transfers.transfers++);
+		transactionDO.setSourceAccountId(accountIds[source]);
+		transactionDO.setTargetAccountId(accountIds[target]);
+		transactionDO.setAmount(AMOUNT);
+
+		accountAccess.execute(transactionDO.getSourceAccountId(), () -> {
+			accountsRepository.debitAccountForTransaction(transactionDO);
+			return () -> accountAccess.execute(transactionDO.getTargetAccountId(), () -> {
+				accountsRepository.creditAccountForTransaction(transactionDO);
+				return null;
+			}, CALLING_THREAD, null);
+		}, CALLING_THREAD, null);
+	}
+
+	private int selectAccount() {
+		return "zipf".equals(accountSelection) ? zipfDistribution.sample() : ThreadLocalRandom.current().nextInt(accounts);
+	}
+}
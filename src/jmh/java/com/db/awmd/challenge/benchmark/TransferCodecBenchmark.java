@@ -0,0 +1,96 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.client.BinaryTransferCodec;
+import com.db.awmd.challenge.client.FundsTransferRequest;
+import com.db.awmd.challenge.client.Link;
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.id.TransactionIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * CPU per request of the JSON and the binary media types: reading a transfer request and writing the transaction job
+ * returned for it. The bytes on the wire of both are printed at the start of every fork.
+ *
+ * Usage: gradle jmh -PjmhInclude=TransferCodecBenchmark
+ * @author sinkar
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransferCodecBenchmark {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private TransactionJob transactionJob;
+	private byte[] jsonRequest;
+	private byte[] binaryRequest;
+
+	@Setup
+	public void createMessages() throws IOException {
+		FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+		fundsTransferRequest.setSourceAccountId("ACC-0001234567");
+		fundsTransferRequest.setTargetAccountId("ACC-0007654321");
+		fundsTransferRequest.setAmount(new BigDecimal("1250.75"));
+
+		transactionJob = new TransactionJob(TransactionIds.format(0x1F2E3D4C5B6A7988L));
+		transactionJob.setTransactionStatus(TransactionStatus.IN_PROGRESS);
+		transactionJob.setSourceAccountId(fundsTransferRequest.getSourceAccountId());
+		transactionJob.setTargetAccountId(fundsTransferRequest.getTargetAccountId());
+		transactionJob.setAmount(fundsTransferRequest.getAmount());
+		// The JSON representation carries the HATEOAS link added by the controller.
+		TransactionJob jsonTransactionJob = jsonTransactionJob();
+
+		jsonRequest = objectMapper.writeValueAsBytes(fundsTransferRequest);
+		binaryRequest = BinaryTransferCodec.encodeRequest(fundsTransferRequest);
+		System.out.printf("%nBytes on the wire: request JSON %d, binary %d; job JSON %d, binary %d%n", jsonRequest.length, binaryRequest.length,
+				objectMapper.writeValueAsBytes(jsonTransactionJob).length, BinaryTransferCodec.encodeJob(transactionJob).length);
+	}
+
+	@Benchmark
+	public byte[] json() throws IOException {
+		FundsTransferRequest fundsTransferRequest = objectMapper.readValue(jsonRequest, FundsTransferRequest.class);
+		TransactionJob response = jsonTransactionJob();
+		response.setAmount(fundsTransferRequest.getAmount());
+		return objectMapper.writeValueAsBytes(response);
+	}
+
+	@Benchmark
+	public byte[] binary() {
+		FundsTransferRequest fundsTransferRequest = BinaryTransferCodec.decodeRequest(ByteBuffer.wrap(binaryRequest));
+		transactionJob.setAmount(fundsTransferRequest.getAmount());
+		return BinaryTransferCodec.encodeJob(transactionJob);
+	}
+
+	private TransactionJob jsonTransactionJob() {
+		TransactionJob jsonTransactionJob = new TransactionJob(transactionJob.getTransactionJobId());
+		jsonTransactionJob.setTransactionStatus(transactionJob.getTransactionStatus());
+		jsonTransactionJob.setSourceAccountId(transactionJob.getSourceAccountId());
+		jsonTransactionJob.setTargetAccountId(transactionJob.getTargetAccountId());
+		jsonTransactionJob.setAmount(transactionJob.getAmount());
+		jsonTransactionJob.setLinks(Collections.singletonList(new Link("Link to get transaction job status", "GET", "transactionJobStatus",
+				"/v1/transaction/jobs/" + transactionJob.getTransactionJobId(), TransactionJob.MEDIA_TYPE_JSON)));
+		return jsonTransactionJob;
+	}
+}
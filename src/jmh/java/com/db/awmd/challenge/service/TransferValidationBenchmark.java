@@ -0,0 +1,89 @@
+package com.db.awmd.challenge.service;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.db.awmd.challenge.client.FundsTransferRequest;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.TransferError;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+
+/**
+ * Cost of 'TransactionService.validateTransferRequest', for a valid request and for a rejected one.
+ * It is in the package of 'TransactionService' to call the validation directly.
+ *
+ * Usage: gradle jmh -PjmhInclude=TransferValidationBenchmark
+ * @author sinkar
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransferValidationBenchmark {
+
+	private TransactionService transactionService;
+	private Function<String, Account> accountLookup;
+	private FundsTransferRequest validRequest;
+	private FundsTransferRequest insufficientFundsRequest;
+
+	@Setup
+	public void createAccounts() throws ReflectiveOperationException {
+		AccountsService accountsService = new AccountsService(new AccountsRepositoryInMemory(new TransactionIdempotency(3600, 1000)));
+		accountsService.createAccount(new Account("123", new BigDecimal("1000")));
+		accountsService.createAccount(new Account("abc", new BigDecimal("10")));
+
+		// The service is injected by Spring in the application.
+		transactionService = new TransactionService();
+		Field accountsServiceField = TransactionService.class.getDeclaredField("accountsService");
+		accountsServiceField.setAccessible(true);
+		accountsServiceField.set(transactionService, accountsService);
+		accountLookup = accountsService::getAccount;
+
+		validRequest = request("123", "abc", "100.25");
+		insufficientFundsRequest = request("abc", "123", "100.25");
+	}
+
+	@Benchmark
+	public TransferError validRequest() {
+		return transactionService.validateTransferRequest(validRequest, accountLookup);
+	}
+
+	@Benchmark
+	public TransferError rejectedRequest() {
+		return transactionService.validateTransferRequest(insufficientFundsRequest, accountLookup);
+	}
+
+	/**
+	 * The failure returned to the API consumer for a rejected request, including the formatting of its message.
+	 */
+	@Benchmark
+	public String rejectedRequestMessage() {
+		return transactionService.validateTransferRequest(insufficientFundsRequest, accountLookup).failure(
+				insufficientFundsRequest.getSourceAccountId(), insufficientFundsRequest.getTargetAccountId(), insufficientFundsRequest.getAmount()).getMessage();
+	}
+
+	private static FundsTransferRequest request(String sourceAccountId, String targetAccountId, String amount) {
+		FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+		fundsTransferRequest.setSourceAccountId(sourceAccountId);
+		fundsTransferRequest.setTargetAccountId(targetAccountId);
+		fundsTransferRequest.setAmount(new BigDecimal(amount));
+		return fundsTransferRequest;
+	}
+}
@@ -1,15 +1,21 @@
 package com.db.awmd.challenge;
 
-import java.util.concurrent.ThreadPoolExecutor;
-
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import com.db.awmd.challenge.concurrent.CountingAbortPolicy;
+import com.db.awmd.challenge.metrics.QueueTimeTaskDecorator;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.service.FundsTransferEngine;
+
 @SpringBootApplication
 @ComponentScan
+@EnableAsync
 public class DevChallengeApplication {
 
   public static void main(String[] args) {
@@ -31,11 +37,17 @@ public class DevChallengeApplication {
 	 * NOTE: Under ideal conditions in production systems, the system would trigger events for transactions and the transactions would be processed by 
 	 * event-consumers and not thread pool.
 	 * The below threadpool is used as a place holder for asynchronous jobs.
+	 * It is only required by the executor based transfer engine.
+	 * Once the pool is saturated, a debit is rejected rather than run on the submitting thread, i.e. a request thread of
+	 * the web server: the transfer is timed out and the request answered with 429. The admission control keeps the transfers
+	 * in flight within the capacity of the pool, so it should not happen.
 	 * 
+	 * @param transferMetrics Records the time tasks wait in the queue of the pool.
 	 * @return ThreadPool executor instance.
 	 */
 	@Bean(name = DEBIT_TRANSACTION_THREADPOOL)
-	public ThreadPoolTaskExecutor debitTransactionExecutor(){
+	@ConditionalOnProperty(name = FundsTransferEngine.ENGINE_PROPERTY, havingValue = "executor", matchIfMissing = true)
+	public ThreadPoolTaskExecutor debitTransactionExecutor(TransferMetrics transferMetrics){
 		int corePoolSize = 5;
 		int maxPoolSize = 20;
 		int queueCapacity = 500;
@@ -45,7 +57,8 @@ public class DevChallengeApplication {
 		executor.setMaxPoolSize(maxPoolSize);
 		executor.setQueueCapacity(queueCapacity);
 		executor.setAllowCoreThreadTimeOut(true);
-		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+		executor.setTaskDecorator(new QueueTimeTaskDecorator(transferMetrics, TransferMetrics.Stage.DEBIT_QUEUE));
 		return executor;
   }
 	
@@ -56,11 +69,16 @@ public class DevChallengeApplication {
 	 * NOTE: Under ideal conditions in production systems, the system would trigger events for credit transactions and the transactions would be processed by 
 	 * event-consumers and not thread pool.
 	 * The below threadpool is used as a place holder for asynchronous jobs.
+	 * It is only required by the executor based transfer engine.
+	 * Once the pool is saturated, a credit is rejected rather than run on the submitting thread; the transaction stays
+	 * DEBIT_SUCCESS until the stuck transfer sweeper re-drives its credit.
 	 * 
+	 * @param transferMetrics Records the time tasks wait in the queue of the pool.
 	 * @return ThreadPool executor instance.
 	 */
 	@Bean(name = CREDIT_TRANSACTION_THREADPOOL)
-	public ThreadPoolTaskExecutor creditTransactionExecutor(){
+	@ConditionalOnProperty(name = FundsTransferEngine.ENGINE_PROPERTY, havingValue = "executor", matchIfMissing = true)
+	public ThreadPoolTaskExecutor creditTransactionExecutor(TransferMetrics transferMetrics){
 		int corePoolSize = 5;
 		int maxPoolSize = 20;
 		int queueCapacity = 500;
@@ -70,7 +88,8 @@ public class DevChallengeApplication {
 		executor.setMaxPoolSize(maxPoolSize);
 		executor.setQueueCapacity(queueCapacity);
 		executor.setAllowCoreThreadTimeOut(true);
-		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+		executor.setTaskDecorator(new QueueTimeTaskDecorator(transferMetrics, TransferMetrics.Stage.CREDIT_QUEUE));
 		return executor;
 	}
 	
@@ -81,11 +100,15 @@ public class DevChallengeApplication {
 	 * NOTE: Under ideal conditions in production systems, the system would trigger events for sending notifications and notification events would be processed by 
 	 * event-consumers and not thread pool.
 	 * The below threadpool is used as a place holder for asynchronous jobs.
+	 * It sends the transaction events to their subscribers, whose transitions are published by threads holding an account.
+	 * A task is therefore never run by the submitting thread: once the pool is saturated, it is rejected, and the
+	 * subscription it was sending to is closed.
 	 * 
+	 * @param transferMetrics Records the time tasks wait in the queue of the pool.
 	 * @return ThreadPool executor instance.
 	 */
 	@Bean(name = NOTIFICATION_THREADPOOL)
-	public ThreadPoolTaskExecutor notificationThreadpoolExecutor(){
+	public ThreadPoolTaskExecutor notificationThreadpoolExecutor(TransferMetrics transferMetrics){
 		int corePoolSize = 5;
 		int maxPoolSize = 20;
 		int queueCapacity = 500;
@@ -95,7 +118,8 @@ public class DevChallengeApplication {
 		executor.setMaxPoolSize(maxPoolSize);
 		executor.setQueueCapacity(queueCapacity);
 		executor.setAllowCoreThreadTimeOut(true);
-		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.setRejectedExecutionHandler(new CountingAbortPolicy());
+		executor.setTaskDecorator(new QueueTimeTaskDecorator(transferMetrics, TransferMetrics.Stage.NOTIFICATION_QUEUE));
 		return executor;
   }
 }
\ No newline at end of file
@@ -9,4 +9,7 @@ public interface AccountTransactionErrorCodes {
 	int INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT = 1005;
 	int SOURCE_ACCOUNT_SAME_AS_TARGET_ACCOUNT = 1006;
 	int NULL_EMPTY_TRANSACTION_ID = 1007;
+	int TRANSACTION_BATCH_TOO_LARGE = 1008;
+	int MISSING_JOB_QUERY_CRITERIA = 1009;
+	int TRANSFERS_OVERLOADED = 1010;
 }
\ No newline at end of file
@@ -0,0 +1,156 @@
+package com.db.awmd.challenge.client;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.id.TransactionIds;
+
+/**
+ * Fixed-layout binary encoding of the transfer requests, the transaction jobs and the errors, for the service-to-service
+ * callers which do not need the JSON representation. All numbers are big-endian.
+ *
+ * FundsTransferRequest: version (1 byte), amount (8 bytes unscaled value, 1 byte scale), source account id, target account id.
+ * TransactionJob: version (1 byte), transaction job id (8 bytes), status ordinal (1 byte, -1 for none), amount (9 bytes),
+ * source account id, target account id. The HATEOAS links are not part of it: the job URI is derived from its id.
+ * ResourceException: version (1 byte), HTTP status (2 bytes), error code (4 bytes), message (2 bytes length, UTF-8).
+ * An account id is 1 byte of length followed by its UTF-8 bytes.
+ * @author sinkar
+ *
+ */
+public class BinaryTransferCodec {
+
+	public static final byte VERSION = 1;
+	
+	private static final byte NO_STATUS = -1;
+	private static final int AMOUNT_SIZE = 9;
+	private static final int MAX_ACCOUNT_ID_SIZE = 255;
+	private static final int MAX_MESSAGE_SIZE = 65535;
+	
+	private BinaryTransferCodec() {
+	}
+	
+	public static byte[] encodeRequest(FundsTransferRequest fundsTransferRequest) {
+		byte[] sourceAccountId = accountId(fundsTransferRequest.getSourceAccountId());
+		byte[] targetAccountId = accountId(fundsTransferRequest.getTargetAccountId());
+		
+		ByteBuffer buffer = ByteBuffer.allocate(1 + AMOUNT_SIZE + 2 + sourceAccountId.length + targetAccountId.length);
+		buffer.put(VERSION);
+		putAmount(buffer, fundsTransferRequest.getAmount());
+		putAccountId(buffer, sourceAccountId);
+		putAccountId(buffer, targetAccountId);
+		return buffer.array();
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if the content is not a request of this version.
+	 */
+	public static FundsTransferRequest decodeRequest(ByteBuffer buffer) {
+		checkVersion(buffer);
+		FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+		fundsTransferRequest.setAmount(getAmount(buffer));
+		fundsTransferRequest.setSourceAccountId(getAccountId(buffer));
+		fundsTransferRequest.setTargetAccountId(getAccountId(buffer));
+		checkFullyRead(buffer);
+		return fundsTransferRequest;
+	}
+	
+	public static byte[] encodeJob(TransactionJob transactionJob) {
+		byte[] sourceAccountId = accountId(transactionJob.getSourceAccountId());
+		byte[] targetAccountId = accountId(transactionJob.getTargetAccountId());
+		
+		ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 1 + AMOUNT_SIZE + 2 + sourceAccountId.length + targetAccountId.length);
+		buffer.put(VERSION);
+		buffer.putLong(TransactionIds.parse(transactionJob.getTransactionJobId()));
+		buffer.put(transactionJob.getTransactionStatus() == null ? NO_STATUS : (byte) transactionJob.getTransactionStatus().ordinal());
+		putAmount(buffer, transactionJob.getAmount());
+		putAccountId(buffer, sourceAccountId);
+		putAccountId(buffer, targetAccountId);
+		return buffer.array();
+	}
+	
+	/**
+	 * @throws IllegalArgumentException if the content is not a transaction job of this version.
+	 */
+	public static TransactionJob decodeJob(ByteBuffer buffer) {
+		checkVersion(buffer);
+		TransactionJob transactionJob = new TransactionJob(TransactionIds.format(buffer.getLong()));
+		byte status = buffer.get();
+		if(status < NO_STATUS || status >= TransactionStatus.values().length)
+			throw new IllegalArgumentException("Invalid transaction status " + status);
+		transactionJob.setTransactionStatus(status == NO_STATUS ? null : TransactionStatus.values()[status]);
+		transactionJob.setAmount(getAmount(buffer));
+		transactionJob.setSourceAccountId(getAccountId(buffer));
+		transactionJob.setTargetAccountId(getAccountId(buffer));
+		checkFullyRead(buffer);
+		return transactionJob;
+	}
+	
+	public static byte[] encodeError(ResourceException resourceException) {
+		byte[] message = resourceException.getMessage() == null ? new byte[0] : resourceException.getMessage().getBytes(StandardCharsets.UTF_8);
+		int messageSize = Math.min(message.length, MAX_MESSAGE_SIZE);
+		
+		ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + 4 + 2 + messageSize);
+		buffer.put(VERSION);
+		buffer.putShort((short) resourceException.getHttpStatus().value());
+		buffer.putInt(resourceException.getErrorCode());
+		buffer.putShort((short) messageSize);
+		buffer.put(message, 0, messageSize);
+		return buffer.array();
+	}
+	
+	private static void checkVersion(ByteBuffer buffer) {
+		byte version = buffer.get();
+		if(version != VERSION)
+			throw new IllegalArgumentException("Unsupported binary version " + version);
+	}
+	
+	private static void checkFullyRead(ByteBuffer buffer) {
+		if(buffer.hasRemaining())
+			throw new IllegalArgumentException(buffer.remaining() + " unexpected bytes after the content");
+	}
+	
+	/**
+	 * The amount is exact: an amount whose unscaled value does not fit in a long is rejected rather than rounded.
+	 */
+	private static void putAmount(ByteBuffer buffer, BigDecimal amount) {
+		if(amount == null)
+			throw new IllegalArgumentException("The amount is required");
+		if(amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("Amount out of range " + amount);
+		try {
+			buffer.putLong(amount.unscaledValue().longValueExact());
+		}catch(ArithmeticException e) {
+			throw new IllegalArgumentException("Amount out of range " + amount, e);
+		}
+		buffer.put((byte) amount.scale());
+	}
+	
+	private static BigDecimal getAmount(ByteBuffer buffer) {
+		long unscaledValue = buffer.getLong();
+		return new BigDecimal(BigInteger.valueOf(unscaledValue), buffer.get());
+	}
+	
+	private static byte[] accountId(String accountId) {
+		if(accountId == null)
+			throw new IllegalArgumentException("The account ids are required");
+		byte[] bytes = accountId.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length > MAX_ACCOUNT_ID_SIZE)
+			throw new IllegalArgumentException("Account id longer than " + MAX_ACCOUNT_ID_SIZE + " bytes");
+		return bytes;
+	}
+	
+	private static void putAccountId(ByteBuffer buffer, byte[] accountId) {
+		buffer.put((byte) accountId.length);
+		buffer.put(accountId);
+	}
+	
+	private static String getAccountId(ByteBuffer buffer) {
+		byte[] accountId = new byte[buffer.get() & 0xFF];
+		buffer.get(accountId);
+		return new String(accountId, StandardCharsets.UTF_8);
+	}
+}
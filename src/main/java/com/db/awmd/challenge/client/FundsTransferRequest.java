@@ -22,6 +22,8 @@ public class FundsTransferRequest{
 
 	public static final String MEDIA_TYPE = "application/com.db.funds.transfer.request";
 	public static final String MEDIA_TYPE_JSON = MEDIA_TYPE+AccountConstants.JSON;
+	// Fixed-layout binary representation for service-to-service callers, see BinaryTransferCodec.
+	public static final String MEDIA_TYPE_BINARY = MEDIA_TYPE+AccountConstants.BINARY;
 	
 	private int version = 1;
 	
@@ -0,0 +1,136 @@
+package com.db.awmd.challenge.client;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A HATEOAS link relation shared by all the resources of a kind, whose links only differ by the id of the resource.
+ * The template is created once; a link of a resource only holds the template and the id, and its URI is spliced together
+ * when the link is serialized. The constant fields are written from their precomputed JSON encoding.
+ * @author sinkar
+ *
+ */
+public class LinkTemplate {
+
+	private static final SerializedString VERSION_FIELD = new SerializedString("version");
+	private static final SerializedString METHOD_FIELD = new SerializedString("method");
+	private static final SerializedString REL_FIELD = new SerializedString("rel");
+	private static final SerializedString URI_FIELD = new SerializedString("uri");
+	private static final SerializedString TYPE_FIELD = new SerializedString("type");
+	private static final SerializedString TITLE_FIELD = new SerializedString("title");
+
+	private final String title;
+	private final String method;
+	private final String rel;
+	private final String uriPrefix;
+	private final String type;
+
+	private final SerializableString serializedTitle;
+	private final SerializableString serializedMethod;
+	private final SerializableString serializedRel;
+	private final SerializableString serializedType;
+
+	/**
+	 * @param uriPrefix The URI of the links without the id of the resource, e.g. '/v1/transaction/jobs/'.
+	 */
+	public LinkTemplate(String title, String method, String rel, String uriPrefix, String type) {
+		this.title = title;
+		this.method = method;
+		this.rel = rel;
+		this.uriPrefix = uriPrefix;
+		this.type = type;
+		this.serializedTitle = new SerializedString(title);
+		this.serializedMethod = new SerializedString(method);
+		this.serializedRel = new SerializedString(rel);
+		this.serializedType = new SerializedString(type);
+	}
+
+	/**
+	 * @param id The id of the resource.
+	 * @return The URI of the resource.
+	 */
+	public String uriFor(String id) {
+		return uriPrefix + id;
+	}
+
+	/**
+	 * @param id The id of the resource.
+	 * @return The links of the resource, made of this link only.
+	 */
+	public List<Link> linksFor(String id) {
+		return Collections.singletonList(new TemplatedLink(this, id));
+	}
+
+	/**
+	 * A link of a resource, read from its template.
+	 */
+	@JsonSerialize(using = TemplatedLinkSerializer.class)
+	static final class TemplatedLink extends Link {
+
+		private final LinkTemplate template;
+		private final String id;
+
+		TemplatedLink(LinkTemplate template, String id) {
+			this.template = template;
+			this.id = id;
+		}
+
+		@Override
+		public String getTitle() {
+			return template.title;
+		}
+
+		@Override
+		public String getMethod() {
+			return template.method;
+		}
+
+		@Override
+		public String getRel() {
+			return template.rel;
+		}
+
+		@Override
+		public String getUri() {
+			return template.uriFor(id);
+		}
+
+		@Override
+		public String getType() {
+			return template.type;
+		}
+	}
+
+	/**
+	 * Writes the same fields, in the same order, as the serialization of a Link.
+	 */
+	static final class TemplatedLinkSerializer extends JsonSerializer<TemplatedLink> {
+
+		@Override
+		public void serialize(TemplatedLink link, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+			LinkTemplate template = link.template;
+			generator.writeStartObject();
+			generator.writeFieldName(VERSION_FIELD);
+			generator.writeNumber(link.getVersion());
+			generator.writeFieldName(METHOD_FIELD);
+			generator.writeString(template.serializedMethod);
+			generator.writeFieldName(REL_FIELD);
+			generator.writeString(template.serializedRel);
+			generator.writeFieldName(URI_FIELD);
+			generator.writeString(link.getUri());
+			generator.writeFieldName(TYPE_FIELD);
+			generator.writeString(template.serializedType);
+			generator.writeFieldName(TITLE_FIELD);
+			generator.writeString(template.serializedTitle);
+			generator.writeEndObject();
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.db.awmd.challenge.client;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+/**
+ * An entry of the history of an account: the debit or the credit of the account by one transaction.
+ * Every transfer is posted twice, as a debit of its source account and a credit of its target account.
+ * @author sinkar
+ *
+ */
+@Data
+public class Posting {
+
+	// Position of the entry in the history of the account, from 1.
+	private long sequence;
+	private String transactionJobId;
+	private PostingType type;
+	private BigDecimal amount;
+	// Balance of the account right after the entry.
+	private BigDecimal balance;
+	// The other account of the transfer.
+	private String counterpartyAccountId;
+	private long postedAtMillis;
+	
+	public Posting() {
+	}
+	
+	public Posting(long sequence, String transactionJobId, PostingType type, BigDecimal amount, BigDecimal balance, String counterpartyAccountId,
+			long postedAtMillis) {
+		this.sequence = sequence;
+		this.transactionJobId = transactionJobId;
+		this.type = type;
+		this.amount = amount;
+		this.balance = balance;
+		this.counterpartyAccountId = counterpartyAccountId;
+		this.postedAtMillis = postedAtMillis;
+	}
+	
+	public enum PostingType {
+		DEBIT, CREDIT
+	}
+}
@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.client;
+
+import java.util.List;
+
+import com.db.awmd.challenge.domain.AccountConstants;
+
+import lombok.Data;
+
+/**
+ * A page of the history of an account, from the newest entry to the oldest one.
+ * The next page is requested with 'nextCursor', which is null on the last page.
+ * @author sinkar
+ *
+ */
+@Data
+public class PostingPage {
+
+	public static final String MEDIA_TYPE = "application/com.db.account.postings";
+	public static final String MEDIA_TYPE_JSON = MEDIA_TYPE+AccountConstants.JSON;
+	
+	private int version = 1;
+	
+	private String accountId;
+	private List<Posting> postings;
+	private String nextCursor;
+}
@@ -8,6 +8,7 @@ import javax.validation.constraints.NotNull;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import com.db.awmd.challenge.domain.AccountConstants;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import lombok.Data;
 
@@ -16,6 +17,8 @@ public class TransactionJob {
 
 	public static final String MEDIA_TYPE = "application/com.db.transaction.job";
 	public static final String MEDIA_TYPE_JSON = MEDIA_TYPE+AccountConstants.JSON;
+	// Fixed-layout binary representation for service-to-service callers, see BinaryTransferCodec.
+	public static final String MEDIA_TYPE_BINARY = MEDIA_TYPE+AccountConstants.BINARY;
 	
 	@NotNull
 	@NotEmpty
@@ -28,7 +31,8 @@ public class TransactionJob {
 	private String targetAccountId;
 	private BigDecimal amount;
 	
-	// It holds the HATEOAS links for this response.
+	// It holds the HATEOAS links for this response; left out of a minimal representation.
+	@JsonInclude(JsonInclude.Include.NON_NULL)
 	private List<Link> links;
 	
 	public TransactionJob() {
@@ -0,0 +1,49 @@
+package com.db.awmd.challenge.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.db.awmd.challenge.domain.AccountConstants;
+import com.db.awmd.challenge.exception.ResourceException;
+
+import lombok.Data;
+
+/**
+ * Response to a batch of funds transfer requests. It holds one result per request, in the order of the requests:
+ * either the TransactionJob started for the request, or the validation error which rejected it.
+ * @author sinkar
+ *
+ */
+@Data
+public class TransactionJobBatch {
+
+	public static final String MEDIA_TYPE = "application/com.db.transaction.job.batch";
+	public static final String MEDIA_TYPE_JSON = MEDIA_TYPE+AccountConstants.JSON;
+	
+	private int version = 1;
+	
+	private int acceptedCount;
+	private int rejectedCount;
+	
+	private List<Result> results = new ArrayList<>();
+	
+	@Data
+	public static class Result {
+		
+		// Position of the request in the batch
+		private int index;
+		
+		private TransactionJob transactionJob;
+		
+		private ResourceException error;
+		
+		public Result() {
+		}
+		
+		public Result(int index, TransactionJob transactionJob, ResourceException error) {
+			this.index = index;
+			this.transactionJob = transactionJob;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.db.awmd.challenge.domain.AccountConstants;
+
+import lombok.Data;
+
+/**
+ * Response to a query of the transaction jobs by account and/or status, in the order the jobs were started.
+ * @author sinkar
+ *
+ */
+@Data
+public class TransactionJobList {
+
+	public static final String MEDIA_TYPE = "application/com.db.transaction.job.list";
+	public static final String MEDIA_TYPE_JSON = MEDIA_TYPE+AccountConstants.JSON;
+	
+	private int version = 1;
+	
+	private List<TransactionJob> transactionJobs = new ArrayList<>();
+}
@@ -0,0 +1,62 @@
+package com.db.awmd.challenge.concurrent;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed pool of locks hashed over the accountId.
+ * Two transactions contend only when they touch the same account (or two accounts which hash to the same stripe),
+ * so transfers between disjoint accounts proceed in parallel without any global monitor.
+ *
+ * NOTE: In a production deployment spanning multiple nodes, these would be distributed locks hashed the same way.
+ * @author sinkar
+ *
+ */
+public class AccountLockStripes {
+
+	private final ReentrantLock[] locks;
+	private final int mask;
+
+	/**
+	 * @param stripes The number of locks in the pool. It is rounded up to the next power of two.
+	 */
+	public AccountLockStripes(int stripes) {
+		if(stripes <= 0)
+			throw new IllegalArgumentException("Number of lock stripes must be positive: " + stripes);
+
+		int size = Integer.highestOneBit(stripes);
+		if(size < stripes)
+			size <<= 1;
+
+		locks = new ReentrantLock[size];
+		for(int i = 0; i < size; i++)
+			locks[i] = new ReentrantLock();
+		mask = size - 1;
+	}
+
+	/**
+	 * Returns the lock guarding the given account.
+	 * @param accountId The account for which the lock is required.
+	 * @return The lock stripe on which the account is hashed.
+	 */
+	public ReentrantLock lockFor(String accountId) {
+		return locks[stripeIndex(accountId.hashCode())];
+	}
+
+	/**
+	 * Returns the lock guarding the given numeric key, e.g. the storage slot of an account.
+	 * @param key The key for which the lock is required.
+	 * @return The lock stripe on which the key is hashed.
+	 */
+	public ReentrantLock lockFor(int key) {
+		return locks[stripeIndex(key)];
+	}
+
+	public int size() {
+		return locks.length;
+	}
+
+	private int stripeIndex(int hash) {
+		// Spread the higher bits so that account ids with similar suffixes do not pile up on the same stripe.
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
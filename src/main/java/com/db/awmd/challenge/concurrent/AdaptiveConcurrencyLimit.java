@@ -0,0 +1,165 @@
+package com.db.awmd.challenge.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * A limit of the operations in flight which adapts to their latency (AIMD): while the operations complete within the target
+ * latency and the limit is in use, the limit grows by one per 'limit' completions; when an operation completes later than
+ * the target, the limit is multiplied by the backoff ratio, at most once per target latency so that the operations which
+ * were already in flight do not shrink it again. Other congestion signals, e.g. a queue building up in one of the stages of
+ * the operations, decrease the limit the same way through {@link #backOff()}, before the operations complete late.
+ *
+ * Acquiring a permit is a compare-and-set on the number of operations in flight; only the completions take a lock.
+ * @author sinkar
+ *
+ */
+public class AdaptiveConcurrencyLimit {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final long targetLatencyNanos;
+	private final double backoffRatio;
+	private final LongSupplier nanoClock;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int currentLimit;
+	private volatile long smoothedLatencyNanos;
+
+	// Guarded by 'this'.
+	private double limit;
+	private long lastDecreaseNanos;
+
+	/**
+	 * @param initialLimit The limit to start from.
+	 * @param minLimit The lowest limit.
+	 * @param maxLimit The highest limit.
+	 * @param targetLatency The latency above which the limit is decreased.
+	 * @param unit The unit of the target latency.
+	 * @param backoffRatio The ratio applied to the limit when it is decreased, between 0 and 1.
+	 */
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long targetLatency, TimeUnit unit, double backoffRatio) {
+		this(initialLimit, minLimit, maxLimit, targetLatency, unit, backoffRatio, System::nanoTime);
+	}
+
+	/**
+	 * @param nanoClock The current time in nanoseconds.
+	 */
+	public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long targetLatency, TimeUnit unit, double backoffRatio,
+			LongSupplier nanoClock) {
+		if(minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+			throw new IllegalArgumentException("Limits must be positive, with minLimit <= initialLimit <= maxLimit");
+		if(targetLatency <= 0 || backoffRatio <= 0 || backoffRatio >= 1)
+			throw new IllegalArgumentException("Target latency must be positive and backoff ratio between 0 and 1");
+
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.targetLatencyNanos = unit.toNanos(targetLatency);
+		this.backoffRatio = backoffRatio;
+		this.nanoClock = nanoClock;
+		this.limit = initialLimit;
+		this.currentLimit = initialLimit;
+		this.lastDecreaseNanos = nanoClock.getAsLong() - targetLatencyNanos;
+	}
+
+	/**
+	 * Acquires permits for operations about to start. A request for more permits than the limit is only granted when
+	 * nothing is in flight, so that it is not starved.
+	 * @param permits The number of operations.
+	 * @return true if the operations may start, false if they would exceed the limit.
+	 */
+	public boolean tryAcquire(int permits) {
+		while(true) {
+			int current = inFlight.get();
+			if(current > 0 && current + permits > currentLimit)
+				return false;
+			if(inFlight.compareAndSet(current, current + permits))
+				return true;
+		}
+	}
+
+	/**
+	 * Acquires as many permits as the limit leaves room for, up to the operations about to start. At least one permit is
+	 * granted when nothing is in flight, so that the operations are not starved.
+	 * @param permits The number of operations.
+	 * @return The number of permits acquired, from 0 to 'permits': the operations beyond it must not start.
+	 */
+	public int tryAcquireUpTo(int permits) {
+		while(true) {
+			int current = inFlight.get();
+			int acquired = Math.min(permits, Math.max(currentLimit - current, current == 0 ? 1 : 0));
+			if(acquired <= 0)
+				return 0;
+			if(inFlight.compareAndSet(current, current + acquired))
+				return acquired;
+		}
+	}
+
+	/**
+	 * Releases the permits of operations which did not run, without adapting the limit.
+	 * @param permits The number of operations.
+	 */
+	public void release(int permits) {
+		inFlight.addAndGet(-permits);
+	}
+
+	/**
+	 * Releases the permit of a completed operation and adapts the limit to its latency.
+	 * @param latencyNanos The time from the acquisition of the permit to the completion of the operation.
+	 */
+	public void complete(long latencyNanos) {
+		int inFlightBefore = inFlight.getAndDecrement();
+		adapt(latencyNanos, inFlightBefore);
+	}
+
+	/**
+	 * Decreases the limit on a congestion signal, at most once per target latency like a late completion.
+	 */
+	public synchronized void backOff() {
+		decrease(nanoClock.getAsLong());
+		currentLimit = (int) limit;
+	}
+
+	/**
+	 * Forgets the operations in flight, e.g. when they are discarded.
+	 */
+	public void reset() {
+		inFlight.set(0);
+	}
+
+	public int getLimit() {
+		return currentLimit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return The moving average of the latencies, weighted 1/8 for the latest one.
+	 */
+	public long getSmoothedLatencyNanos() {
+		return smoothedLatencyNanos;
+	}
+
+	private synchronized void adapt(long latencyNanos, int inFlightBefore) {
+		smoothedLatencyNanos = smoothedLatencyNanos == 0 ? latencyNanos : smoothedLatencyNanos + (latencyNanos - smoothedLatencyNanos) / 8;
+
+		if(latencyNanos > targetLatencyNanos)
+			decrease(nanoClock.getAsLong());
+		else if(inFlightBefore * 2 >= limit)
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		currentLimit = (int) limit;
+	}
+
+	/**
+	 * Called with the lock held.
+	 */
+	private void decrease(long now) {
+		if(now - lastDecreaseNanos >= targetLatencyNanos) {
+			limit = Math.max(minLimit, limit * backoffRatio);
+			lastDecreaseNanos = now;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package com.db.awmd.challenge.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hands messages over to a single worker thread, which delivers the messages of the same key received within a window as
+ * one digest, e.g. the notifications of an account.
+ *
+ * Offering a message never blocks and never runs the delivery on the offering thread: the queue is lock-free and bounded,
+ * and once it is full the oldest message queued is dropped to make room. The digests being built by the worker are bounded
+ * by 'maxDigestSize' messages per key.
+ *
+ * A digest is delivered 'window' after its first message was taken by the worker, or as soon as it is full. The worker
+ * polls the queue at least once per window, so a message is delivered at most two windows after it was offered, unless the
+ * deliveries fall behind.
+ * @author sinkar
+ *
+ */
+@Slf4j
+public class CoalescingDispatcher {
+
+	private final int capacity;
+	private final long windowNanos;
+	private final int maxDigestSize;
+	private final BiConsumer<String, List<String>> digestAction;
+
+	private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	// Digests by key, in the order of their first message, i.e. of their deadline; only accessed by the worker thread.
+	private final Map<String, Digest> digests = new LinkedHashMap<>();
+
+	private final Thread worker;
+	private volatile boolean stopped;
+
+	private final LongAdder offered = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder deliveredDigests = new LongAdder();
+
+	/**
+	 * @param capacity The maximum number of messages queued.
+	 * @param window The time during which the messages of a key are coalesced.
+	 * @param unit The unit of the window.
+	 * @param maxDigestSize The number of messages which triggers the delivery of a digest before the end of its window.
+	 * @param digestAction Delivers the messages of a key, in the order they were offered. Runs on the worker thread.
+	 * @param threadName The name of the worker thread.
+	 */
+	public CoalescingDispatcher(int capacity, long window, TimeUnit unit, int maxDigestSize, BiConsumer<String, List<String>> digestAction,
+			String threadName) {
+		if(capacity <= 0 || window <= 0 || maxDigestSize <= 0)
+			throw new IllegalArgumentException("Capacity, window and maximum digest size must be positive");
+
+		this.capacity = capacity;
+		this.windowNanos = unit.toNanos(window);
+		this.maxDigestSize = maxDigestSize;
+		this.digestAction = digestAction;
+		this.worker = new Thread(this::run, threadName);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Queues a message, dropping the oldest queued message if the queue is full.
+	 * @param key The key under which the message is coalesced.
+	 * @param message The message.
+	 */
+	public void offer(String key, String message) {
+		offered.increment();
+		if(stopped) {
+			dropped.increment();
+			return;
+		}
+
+		queue.add(new Message(key, message));
+		if(size.incrementAndGet() > capacity && queue.poll() != null) {
+			size.decrementAndGet();
+			dropped.increment();
+		}
+	}
+
+	/**
+	 * Stops the worker thread once it has delivered the messages already queued.
+	 */
+	public void stop() {
+		stopped = true;
+		LockSupport.unpark(worker);
+		try {
+			worker.join();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public long getOffered() {
+		return offered.sum();
+	}
+
+	/**
+	 * @return The number of messages dropped because the queue was full.
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	public long getDelivered() {
+		return delivered.sum();
+	}
+
+	public long getDeliveredDigests() {
+		return deliveredDigests.sum();
+	}
+
+	private void run() {
+		while(!stopped) {
+			takeQueuedMessages();
+			long now = System.nanoTime();
+			long parkNanos = windowNanos;
+			for(Iterator<Map.Entry<String, Digest>> iterator = digests.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry<String, Digest> digest = iterator.next();
+				long remainingNanos = digest.getValue().startNanos + windowNanos - now;
+				if(remainingNanos > 0) {
+					parkNanos = remainingNanos;
+					break;
+				}
+				iterator.remove();
+				deliver(digest.getKey(), digest.getValue());
+			}
+
+			if(queue.isEmpty())
+				LockSupport.parkNanos(this, parkNanos);
+		}
+
+		takeQueuedMessages();
+		for(Map.Entry<String, Digest> digest : digests.entrySet())
+			deliver(digest.getKey(), digest.getValue());
+		digests.clear();
+	}
+
+	private void takeQueuedMessages() {
+		long now = System.nanoTime();
+		Message message;
+		while((message = queue.poll()) != null) {
+			size.decrementAndGet();
+			Digest digest = digests.get(message.key);
+			if(digest == null) {
+				digest = new Digest(now);
+				digests.put(message.key, digest);
+			}
+			digest.messages.add(message.message);
+			if(digest.messages.size() >= maxDigestSize) {
+				digests.remove(message.key);
+				deliver(message.key, digest);
+			}
+		}
+	}
+
+	private void deliver(String key, Digest digest) {
+		try {
+			digestAction.accept(key, digest.messages);
+		}catch(RuntimeException e) {
+			log.error("Unexpected failure while delivering " + digest.messages.size() + " messages for " + key, e);
+		}
+		delivered.add(digest.messages.size());
+		deliveredDigests.increment();
+	}
+
+	private static final class Message {
+		private final String key;
+		private final String message;
+
+		Message(String key, String message) {
+			this.key = key;
+			this.message = message;
+		}
+	}
+
+	private static final class Digest {
+		private final long startNanos;
+		private final List<String> messages = new ArrayList<>();
+
+		Digest(long startNanos) {
+			this.startNanos = startNanos;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.concurrent;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects a task submitted to a saturated thread pool with a RejectedExecutionException, like {@link ThreadPoolExecutor.AbortPolicy},
+ * and counts these rejections. Unlike {@link CountingCallerRunsPolicy}, the submitting thread never runs the task, so it
+ * is used by the pools whose submitters must not be held up, and which handle the rejection themselves.
+ * @author sinkar
+ *
+ */
+public class CountingAbortPolicy extends ThreadPoolExecutor.AbortPolicy {
+
+	private final LongAdder rejections = new LongAdder();
+
+	@Override
+	public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+		rejections.increment();
+		super.rejectedExecution(task, executor);
+	}
+
+	public long getRejections() {
+		return rejections.sum();
+	}
+}
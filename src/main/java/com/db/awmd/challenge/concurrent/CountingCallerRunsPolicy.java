@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.concurrent;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a task rejected by a saturated thread pool on the submitting thread, like {@link ThreadPoolExecutor.CallerRunsPolicy},
+ * and counts these rejections, which otherwise go unnoticed while they slow down the submitting threads.
+ * @author sinkar
+ *
+ */
+public class CountingCallerRunsPolicy extends ThreadPoolExecutor.CallerRunsPolicy {
+
+	private final LongAdder rejections = new LongAdder();
+
+	@Override
+	public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+		rejections.increment();
+		super.rejectedExecution(task, executor);
+	}
+
+	public long getRejections() {
+		return rejections.sum();
+	}
+}
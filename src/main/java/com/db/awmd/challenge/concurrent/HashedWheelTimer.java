@@ -0,0 +1,148 @@
+package com.db.awmd.challenge.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A timer for a large number of short, approximate delays, e.g. the backoff of a retried transaction.
+ * The delayed tasks are hashed on a wheel of buckets by their deadline tick; a single worker thread advances the wheel
+ * every tick and runs the tasks of the bucket it reaches. Scheduling a task is O(1) and no thread is held by a task while
+ * it is waiting. A task runs at most one tick late.
+ *
+ * The tasks run on the worker thread, so they must only hand the actual work over to an executor.
+ * @author sinkar
+ *
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+	private final long tickNanos;
+	private final Queue<TimedTask>[] wheel;
+	private final int mask;
+
+	// Tasks scheduled since the last tick, moved onto the wheel by the worker thread which alone owns the buckets.
+	private final Queue<TimedTask> scheduledTasks = new ConcurrentLinkedQueue<>();
+	private final Thread worker;
+	private final long startNanos;
+	private volatile boolean stopped;
+
+	/**
+	 * @param tickDuration The duration of a tick, i.e. the resolution of the timer.
+	 * @param unit The unit of the tick duration.
+	 * @param wheelSize The number of buckets of the wheel. It is rounded up to the next power of two.
+	 * @param threadName The name of the worker thread.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize, String threadName) {
+		if(tickDuration <= 0 || wheelSize <= 0)
+			throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+
+		int size = Integer.highestOneBit(wheelSize);
+		if(size < wheelSize)
+			size <<= 1;
+
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Queue[size];
+		for(int i = 0; i < size; i++)
+			wheel[i] = new ArrayDeque<>();
+		this.mask = size - 1;
+
+		this.startNanos = System.nanoTime();
+		this.worker = new Thread(this::run, threadName);
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	/**
+	 * Schedules a task to run once after the given delay.
+	 * @param task The task, run on the worker thread of the timer.
+	 * @param delay The delay after which the task is run.
+	 * @param unit The unit of the delay.
+	 */
+	public void schedule(Runnable task, long delay, TimeUnit unit) {
+		if(stopped)
+			throw new IllegalStateException("Timer is stopped");
+
+		scheduledTasks.add(new TimedTask(task, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay))));
+	}
+
+	/**
+	 * Stops the worker thread. The tasks not run yet are discarded.
+	 */
+	public void stop() {
+		stopped = true;
+		worker.interrupt();
+		try {
+			worker.join();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		long tick = 0;
+		while(!stopped) {
+			long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startNanos);
+			if(sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				}catch(InterruptedException e) {
+					// Interrupted by stop().
+					continue;
+				}
+			}
+
+			placeScheduledTasks(tick);
+			expire(wheel[(int) (tick & mask)]);
+			tick++;
+		}
+	}
+
+	/**
+	 * Moves the tasks scheduled since the last tick into the bucket of their deadline tick.
+	 */
+	private void placeScheduledTasks(long currentTick) {
+		TimedTask task;
+		while((task = scheduledTasks.poll()) != null) {
+			// A task whose deadline has already passed runs in the current tick.
+			long deadlineTick = Math.max(task.deadlineNanos / tickNanos, currentTick);
+			task.remainingRounds = (deadlineTick - currentTick) / wheel.length;
+			wheel[(int) (deadlineTick & mask)].add(task);
+		}
+	}
+
+	private void expire(Queue<TimedTask> bucket) {
+		for(Iterator<TimedTask> iterator = bucket.iterator(); iterator.hasNext();) {
+			TimedTask task = iterator.next();
+			if(task.remainingRounds > 0) {
+				task.remainingRounds--;
+				continue;
+			}
+
+			iterator.remove();
+			try {
+				task.task.run();
+			}catch(RuntimeException e) {
+				log.error("Unexpected failure of a timed task", e);
+			}
+		}
+	}
+
+	private static final class TimedTask {
+		private final Runnable task;
+		// Relative to the start of the timer.
+		private final long deadlineNanos;
+		// Full turns of the wheel left before the deadline tick; only accessed by the worker thread.
+		private long remainingRounds;
+
+		TimedTask(Runnable task, long deadlineNanos) {
+			this.task = task;
+			this.deadlineNanos = deadlineNanos;
+		}
+	}
+}
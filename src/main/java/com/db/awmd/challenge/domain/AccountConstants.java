@@ -2,4 +2,5 @@ package com.db.awmd.challenge.domain;
 
 public class AccountConstants {
 	public static final String JSON = "+json";
+	public static final String BINARY = "+binary";
 }
@@ -0,0 +1,31 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Gives the debits/credits of the executor based transfer engine exclusive access to an account.
+ * The strategy, selected with 'transfer.contention', decides what an operation does while its account is busy:
+ * 'blocking' waits on the account lock, 'retry' is re-scheduled after a backoff without holding a thread, and 'mailbox'
+ * is parked in the FIFO mailbox of the account until the operations before it are done.
+ * @author sinkar
+ *
+ */
+public interface AccountAccess {
+
+	String CONTENTION_PROPERTY = "transfer.contention";
+
+	/**
+	 * Runs the operation with exclusive access to the account, on the calling thread if the account is free.
+	 * Otherwise, the operation may run later on the given executor, or be given up.
+	 *
+	 * @param accountId The account to which the operation needs exclusive access.
+	 * @param operation The operation, e.g. a debit. It returns the follow-up to run once the account is released, e.g. the
+	 * credit of the debited transaction, or null. The follow-up must not run while the account is held, as it may need
+	 * exclusive access to another account.
+	 * @param executor Runs the operation if it is deferred.
+	 * @param onGiveUp Runs instead of the operation if the account stayed busy beyond the budget of the strategy; null if the
+	 * operation must never be given up, e.g. the credit of a debited transaction.
+	 */
+	void execute(String accountId, Supplier<Runnable> operation, Executor executor, Runnable onGiveUp);
+}
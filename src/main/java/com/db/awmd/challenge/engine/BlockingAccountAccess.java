@@ -0,0 +1,46 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.concurrent.AccountLockStripes;
+
+/**
+ * Runs every operation on the calling thread, which waits on the lock of a busy account. An operation is never given up.
+ * @author sinkar
+ *
+ */
+@Component
+@ConditionalOnProperty(name = AccountAccess.CONTENTION_PROPERTY, havingValue = "blocking", matchIfMissing = true)
+public class BlockingAccountAccess implements AccountAccess {
+
+	// Locks are hashed over the accountId so that only operations on the same account contend with each other.
+	// In a production deployment, it would be implemented using a pool of distributed locks.
+	private final AccountLockStripes accountLocks;
+
+	@Autowired
+	public BlockingAccountAccess(@Value("${transfer.lock-stripes:1024}") int lockStripes) {
+		this.accountLocks = new AccountLockStripes(lockStripes);
+	}
+
+	@Override
+	public void execute(String accountId, Supplier<Runnable> operation, Executor executor, Runnable onGiveUp) {
+		ReentrantLock accountLock = accountLocks.lockFor(accountId);
+		accountLock.lock();
+		Runnable followUp;
+		try {
+			followUp = operation.get();
+		}finally {
+			// Release the account even when the operation fails, so that further operations on it are not blocked.
+			accountLock.unlock();
+		}
+		if(followUp != null)
+			followUp.run();
+	}
+}
@@ -0,0 +1,125 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.db.awmd.challenge.domain.TransactionDO;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Buffers the pending credits of every target account and hands them over as one batch, so that a hot target account
+ * (e.g. a merchant or settlement account) takes one lock and one balance update for many credits instead of one per credit.
+ *
+ * A batch is flushed when it reaches 'maxCredits' credits, on the thread submitting the last credit, or at the latest
+ * 'windowMillis' after its first credit, on the flush executor. A credit therefore waits at most one window.
+ * @author sinkar
+ *
+ */
+@Slf4j
+public class CreditCoalescer {
+
+	private final long windowMillis;
+	private final int maxCredits;
+	private final Consumer<List<TransactionDO>> flushAction;
+	private final Executor flushExecutor;
+	private final ScheduledExecutorService windowTimer;
+
+	private final Map<String, PendingCredits> pendingCredits = new ConcurrentHashMap<>();
+
+	/**
+	 * @param windowMillis Longest time a credit is buffered.
+	 * @param maxCredits Number of buffered credits of an account which triggers an immediate flush.
+	 * @param flushAction Applies a batch of credits, all with the same target account.
+	 * @param flushExecutor Runs the flushes triggered by the end of a window.
+	 */
+	public CreditCoalescer(long windowMillis, int maxCredits, Consumer<List<TransactionDO>> flushAction, Executor flushExecutor) {
+		if(windowMillis <= 0 || maxCredits <= 0)
+			throw new IllegalArgumentException("Credit coalescing window and maximum credits must be positive");
+
+		this.windowMillis = windowMillis;
+		this.maxCredits = maxCredits;
+		this.flushAction = flushAction;
+		this.flushExecutor = flushExecutor;
+		this.windowTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "creditCoalescerTimer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Buffers the credit of a debited transaction.
+	 * @param transactionDO The transaction whose target account is to be credited.
+	 */
+	public void submit(TransactionDO transactionDO) {
+		String targetAccountId = transactionDO.getTargetAccountId();
+		PendingCredits[] fullBatch = new PendingCredits[1];
+
+		// The buffer of an account is only changed inside compute(), under the lock of its map entry.
+		pendingCredits.compute(targetAccountId, (accountId, pending) -> {
+			if(pending == null) {
+				pending = new PendingCredits();
+				scheduleFlush(accountId, pending);
+			}
+			pending.credits.add(transactionDO);
+			if(pending.credits.size() < maxCredits)
+				return pending;
+
+			fullBatch[0] = pending;
+			return null;
+		});
+
+		if(fullBatch[0] != null)
+			flush(fullBatch[0].credits);
+	}
+
+	/**
+	 * Stops the window timer and flushes all the buffered credits on the calling thread.
+	 */
+	public void close() {
+		windowTimer.shutdownNow();
+		for(String accountId : pendingCredits.keySet()) {
+			PendingCredits pending = pendingCredits.remove(accountId);
+			if(pending != null)
+				flush(pending.credits);
+		}
+	}
+
+	private void scheduleFlush(String accountId, PendingCredits windowBatch) {
+		windowTimer.schedule(() -> {
+			try {
+				flushExecutor.execute(() -> flushWindow(accountId, windowBatch));
+			}catch(RejectedExecutionException e) {
+				// The flush executor is saturated: the batch is flushed after one more window rather than lost.
+				scheduleFlush(accountId, windowBatch);
+			}
+		}, windowMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void flushWindow(String accountId, PendingCredits windowBatch) {
+		// The batch may already have been flushed because it was full.
+		if(pendingCredits.remove(accountId, windowBatch))
+			flush(windowBatch.credits);
+	}
+
+	private void flush(List<TransactionDO> credits) {
+		try {
+			flushAction.accept(credits);
+		}catch(RuntimeException e) {
+			log.error("Unexpected failure while crediting " + credits.size() + " transactions to account " + credits.get(0).getTargetAccountId(), e);
+		}
+	}
+
+	private static final class PendingCredits {
+		private final List<TransactionDO> credits = new ArrayList<>();
+	}
+}
@@ -0,0 +1,137 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gives every account a FIFO mailbox, actor-style. An operation finding its account busy is parked in the mailbox without
+ * holding a thread, and is handed over to its executor as soon as the operation before it releases the account.
+ * The operations on an account are therefore applied strictly in the order they arrived, and are only given up if their
+ * executor fails for another reason than being saturated.
+ *
+ * When the executor of the next operation is saturated, the thread releasing the account keeps it and runs that operation
+ * itself, in a loop rather than recursively, so a long queue of parked operations does not grow the stack. The follow-up
+ * (credit) of every operation still runs as soon as that operation is done.
+ *
+ * NOTE: A mailbox is kept for every account which was ever debited/credited, like the account itself. In a production
+ * deployment, the mailbox of an account would be the partition of a message queue keyed by the accountId.
+ * @author sinkar
+ *
+ */
+@Component
+@ConditionalOnProperty(name = AccountAccess.CONTENTION_PROPERTY, havingValue = "mailbox")
+@Slf4j
+public class MailboxAccountAccess implements AccountAccess {
+
+	private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+	@Override
+	public void execute(String accountId, Supplier<Runnable> operation, Executor executor, Runnable onGiveUp) {
+		Mailbox mailbox = mailboxes.computeIfAbsent(accountId, id -> new Mailbox());
+
+		// Parked before it is counted, so that the operation releasing the account always finds the next one in the mailbox.
+		mailbox.operations.add(new ParkedOperation(operation, executor, onGiveUp));
+		if(mailbox.pending.getAndIncrement() == 0) {
+			// The account was free: run the oldest operation, i.e. this one unless others were parked at the same time.
+			run(mailbox, mailbox.operations.poll());
+		}
+	}
+
+	/**
+	 * Runs an operation holding the account, then the next ones which could not be handed over to their executor.
+	 * The first failure is thrown once the account is released.
+	 */
+	private void run(Mailbox mailbox, ParkedOperation parkedOperation) {
+		Throwable failure = null;
+		for(ParkedOperation current = parkedOperation; current != null; ) {
+			Runnable followUp = null;
+			try {
+				followUp = current.operation.get();
+			}catch(RuntimeException | Error e) {
+				// Release the account even when the operation fails, so that the operations parked behind it are not stuck.
+				failure = addFailure(failure, e);
+			}
+			current = release(mailbox);
+			if(followUp != null) {
+				try {
+					followUp.run();
+				}catch(RuntimeException | Error e) {
+					failure = addFailure(failure, e);
+				}
+			}
+		}
+		if(failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		if(failure instanceof Error)
+			throw (Error) failure;
+	}
+
+	/**
+	 * Releases the account from the operation which has just run, and hands it over to the next parked operation if any.
+	 * @return The next operation, which this thread must run because its executor is saturated, or null.
+	 */
+	private ParkedOperation release(Mailbox mailbox) {
+		while(mailbox.pending.decrementAndGet() > 0) {
+			ParkedOperation next = mailbox.operations.poll();
+			try {
+				next.executor.execute(() -> run(mailbox, next));
+				return null;
+			}catch(RejectedExecutionException e) {
+				// The executor is saturated. This thread runs the operations of the engine, never a web request, and holding the
+				// account for the next operation keeps their order.
+				return next;
+			}catch(RuntimeException e) {
+				// The executor is broken: the operation is given up, and the account is released from it too.
+				log.error("Could not hand over a parked operation", e);
+				giveUp(next);
+			}
+		}
+		return null;
+	}
+
+	private static void giveUp(ParkedOperation parkedOperation) {
+		if(parkedOperation.onGiveUp == null)
+			return;
+		try {
+			parkedOperation.onGiveUp.run();
+		}catch(RuntimeException e) {
+			log.error("Could not give up a parked operation", e);
+		}
+	}
+
+	private static Throwable addFailure(Throwable failure, Throwable e) {
+		if(failure == null)
+			return e;
+		failure.addSuppressed(e);
+		return failure;
+	}
+
+	private static final class Mailbox {
+		private final Queue<ParkedOperation> operations = new ConcurrentLinkedQueue<>();
+		// Number of operations parked or running; the account is busy while it is positive.
+		private final AtomicInteger pending = new AtomicInteger();
+	}
+
+	private static final class ParkedOperation {
+		private final Supplier<Runnable> operation;
+		private final Executor executor;
+		private final Runnable onGiveUp;
+
+		ParkedOperation(Supplier<Runnable> operation, Executor executor, Runnable onGiveUp) {
+			this.operation = operation;
+			this.executor = executor;
+			this.onGiveUp = onGiveUp;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetrics.Stage;
+import com.db.awmd.challenge.service.AccountTransactionProcessor;
+import com.db.awmd.challenge.service.FundsTransferEngine;
+import com.db.awmd.challenge.util.TransactionUtil;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Transfer engine in which every account is owned by exactly one single-threaded partition, chosen by hashing the accountId.
+ * All debits and credits of an account are processed by its owning partition thread, one after the other, so the balance
+ * of an account has a single writer and no locks or 'active transaction' bookkeeping are required.
+ *
+ * A transfer is processed as a debit message on the partition owning the source account, which on success posts a credit
+ * message to the partition owning the target account (which may be the same partition).
+ * The time a debit/credit message waits in the queue of its partition is recorded as the DEBIT_QUEUE/CREDIT_QUEUE stage,
+ * which the admission control backs off on like the queues of the executor engine.
+ *
+ * It is enabled with 'transfer.engine=partitioned'; the number of partitions is set with 'transfer.partitions'.
+ * NOTE: The partition queues are unbounded on purpose. A bounded queue would let two partitions posting credits to each other
+ * block forever, and rejecting a credit after a successful debit is not an option.
+ * @author sinkar
+ *
+ */
+@Component
+@ConditionalOnProperty(name = FundsTransferEngine.ENGINE_PROPERTY, havingValue = "partitioned")
+@Slf4j
+public class PartitionedTransferEngine implements FundsTransferEngine, DisposableBean {
+
+	@Autowired
+	private AccountTransactionProcessor accountTransactionProcessor;
+
+	@Autowired
+	private TransferMetrics transferMetrics;
+
+	private final ExecutorService[] partitions;
+
+	@Autowired
+	public PartitionedTransferEngine(@Value("${transfer.partitions:8}") int partitionCount) {
+		if(partitionCount <= 0)
+			throw new IllegalArgumentException("Number of transfer partitions must be positive: " + partitionCount);
+
+		partitions = new ExecutorService[partitionCount];
+		for(int i = 0; i < partitionCount; i++) {
+			String threadName = "transferPartition-" + i;
+			partitions[i] = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, threadName));
+		}
+		log.info("Started partitioned transfer engine with {} partitions", partitionCount);
+	}
+
+	@Override
+	public void startAsyncTransaction(TransactionJob transactionJob) {
+		TransactionDO transactionDO = TransactionUtil.convertTransactionJobToTransactionDO(transactionJob);
+		post(partitionFor(transactionDO.getSourceAccountId()), Stage.DEBIT_QUEUE, () -> debit(transactionDO));
+	}
+
+	/**
+	 * The whole batch is a single debit message on the partition owning the source account, and the credits are posted as
+	 * one message per partition owning target accounts.
+	 */
+	@Override
+	public void startAsyncTransactions(List<TransactionJob> transactionJobs) {
+		List<TransactionDO> transactionDOs = new ArrayList<>(transactionJobs.size());
+		for(TransactionJob transactionJob : transactionJobs)
+			transactionDOs.add(TransactionUtil.convertTransactionJobToTransactionDO(transactionJob));
+		post(partitionFor(transactionDOs.get(0).getSourceAccountId()), Stage.DEBIT_QUEUE, () -> debit(transactionDOs));
+	}
+	
+	@Override
+	public void startAsyncCredit(TransactionDO transactionDO) {
+		post(partitionFor(transactionDO.getTargetAccountId()), Stage.CREDIT_QUEUE, () -> credit(transactionDO));
+	}
+	
+	/**
+	 * Runs on the partition owning the source account.
+	 */
+	private void debit(TransactionDO transactionDO) {
+		try {
+			if(debitSourceAccount(transactionDO))
+				post(partitionFor(transactionDO.getTargetAccountId()), Stage.CREDIT_QUEUE, () -> credit(transactionDO));
+		}catch(RuntimeException e) {
+			log.error("Unexpected failure while debiting for transaction " + transactionDO.getTransactionId(), e);
+		}
+	}
+
+	/**
+	 * Runs on the partition owning the source account of the batch.
+	 */
+	private void debit(List<TransactionDO> transactionDOs) {
+		Map<Integer, List<TransactionDO>> debitedByTargetPartition = new LinkedHashMap<>();
+		for(TransactionDO transactionDO : transactionDOs) {
+			try {
+				if(debitSourceAccount(transactionDO))
+					debitedByTargetPartition.computeIfAbsent(partitionIndex(transactionDO.getTargetAccountId()), partition -> new ArrayList<>()).add(transactionDO);
+			}catch(RuntimeException e) {
+				log.error("Unexpected failure while debiting for transaction " + transactionDO.getTransactionId(), e);
+			}
+		}
+		
+		for(Map.Entry<Integer, List<TransactionDO>> credits : debitedByTargetPartition.entrySet()) {
+			post(partitions[credits.getKey()], Stage.CREDIT_QUEUE, () -> {
+				for(TransactionDO transactionDO : credits.getValue())
+					credit(transactionDO);
+			});
+		}
+	}
+	
+	/**
+	 * Runs on the partition owning the target account.
+	 */
+	private void credit(TransactionDO transactionDO) {
+		try {
+			long start = System.nanoTime();
+			accountTransactionProcessor.creditTargetAccount(transactionDO);
+			transferMetrics.record(Stage.CREDIT, start);
+		}catch(RuntimeException e) {
+			log.error("Unexpected failure while crediting for transaction " + transactionDO.getTransactionId(), e);
+		}
+	}
+
+	private boolean debitSourceAccount(TransactionDO transactionDO) {
+		long start = System.nanoTime();
+		boolean debited = accountTransactionProcessor.debitSourceAccount(transactionDO);
+		transferMetrics.record(Stage.DEBIT, start);
+		return debited;
+	}
+
+	/**
+	 * Posts a message to a partition, recording how long it waits in the queue of the partition.
+	 */
+	private void post(Executor partition, Stage queueStage, Runnable message) {
+		long postedNanos = System.nanoTime();
+		partition.execute(() -> {
+			transferMetrics.record(queueStage, postedNanos);
+			message.run();
+		});
+	}
+
+	private int partitionIndex(String accountId) {
+		int hash = accountId.hashCode();
+		return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % partitions.length;
+	}
+
+	private ExecutorService partitionFor(String accountId) {
+		return partitions[partitionIndex(accountId)];
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for(ExecutorService partition : partitions)
+			partition.shutdown();
+		for(ExecutorService partition : partitions)
+			partition.awaitTermination(5, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,62 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+
+/**
+ * The budget of attempts of a retried operation and the backoff between them.
+ * The backoff doubles with every attempt from 'baseDelayMillis' up to 'maxDelayMillis', and a random part of it
+ * ('jitter', from 0 to 1) is taken off so that the operations which failed together do not all retry together.
+ * @author sinkar
+ *
+ */
+public class RetryPolicy {
+
+	@Getter
+	private final int maxAttempts;
+	private final long baseDelayMillis;
+	@Getter
+	private final long maxDelayMillis;
+	private final double jitter;
+
+	/**
+	 * @param maxAttempts Number of attempts, including the first one, after which the operation is given up.
+	 * @param baseDelayMillis Backoff after the first attempt.
+	 * @param maxDelayMillis Largest backoff.
+	 * @param jitter Largest fraction of the backoff randomly taken off, from 0 (no jitter) to 1.
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, double jitter) {
+		if(maxAttempts <= 0 || baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis)
+			throw new IllegalArgumentException("Attempts and delays must be positive, and the maximum delay at least the base delay");
+		if(jitter < 0 || jitter > 1)
+			throw new IllegalArgumentException("Jitter must be between 0 and 1: " + jitter);
+
+		this.maxAttempts = maxAttempts;
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * @param attempts The number of attempts made so far.
+	 * @return true if no attempt is left.
+	 */
+	public boolean isExhausted(int attempts) {
+		return attempts >= maxAttempts;
+	}
+
+	/**
+	 * @param attempts The number of attempts made so far, at least 1.
+	 * @return The backoff before the next attempt, in milliseconds.
+	 */
+	public long delayMillis(int attempts) {
+		long delay = baseDelayMillis;
+		for(int attempt = 1; attempt < attempts && delay < maxDelayMillis; attempt++)
+			delay <<= 1;
+		delay = Math.min(delay, maxDelayMillis);
+		if(jitter == 0)
+			return delay;
+		return delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+	}
+}
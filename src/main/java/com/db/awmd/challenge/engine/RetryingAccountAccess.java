@@ -0,0 +1,103 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.concurrent.AccountLockStripes;
+import com.db.awmd.challenge.concurrent.HashedWheelTimer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs an operation right away if its account is free, otherwise re-schedules it on a {@link HashedWheelTimer} after the
+ * backoff of the {@link RetryPolicy}, so that no thread is held while the account is busy.
+ * Once the attempts are exhausted, the operation is given up; an operation which must not be given up keeps being retried
+ * at the maximum backoff.
+ * @author sinkar
+ *
+ */
+@Component
+@ConditionalOnProperty(name = AccountAccess.CONTENTION_PROPERTY, havingValue = "retry")
+@Slf4j
+public class RetryingAccountAccess implements AccountAccess, DisposableBean {
+
+	private final AccountLockStripes accountLocks;
+	private final RetryPolicy retryPolicy;
+	private final HashedWheelTimer retryTimer;
+
+	@Autowired
+	public RetryingAccountAccess(@Value("${transfer.lock-stripes:1024}") int lockStripes,
+			@Value("${transfer.retry.max-attempts:10}") int maxAttempts,
+			@Value("${transfer.retry.base-delay-millis:5}") long baseDelayMillis,
+			@Value("${transfer.retry.max-delay-millis:200}") long maxDelayMillis,
+			@Value("${transfer.retry.jitter:0.5}") double jitter,
+			@Value("${transfer.retry.tick-millis:1}") long tickMillis) {
+		this(new AccountLockStripes(lockStripes), new RetryPolicy(maxAttempts, baseDelayMillis, maxDelayMillis, jitter), tickMillis);
+	}
+
+	public RetryingAccountAccess(AccountLockStripes accountLocks, RetryPolicy retryPolicy, long tickMillis) {
+		this.accountLocks = accountLocks;
+		this.retryPolicy = retryPolicy;
+		// The wheel covers the maximum backoff in one turn, so a retry is never carried over several turns.
+		int wheelSize = (int) Math.min(1 << 16, retryPolicy.getMaxDelayMillis() / tickMillis + 1);
+		this.retryTimer = new HashedWheelTimer(tickMillis, TimeUnit.MILLISECONDS, wheelSize, "accountRetryTimer");
+	}
+
+	@Override
+	public void execute(String accountId, Supplier<Runnable> operation, Executor executor, Runnable onGiveUp) {
+		attempt(accountId, operation, executor, onGiveUp, 1);
+	}
+
+	@Override
+	public void destroy() {
+		retryTimer.stop();
+	}
+
+	private void attempt(String accountId, Supplier<Runnable> operation, Executor executor, Runnable onGiveUp, int attempts) {
+		ReentrantLock accountLock = accountLocks.lockFor(accountId);
+		if(accountLock.tryLock()) {
+			Runnable followUp;
+			try {
+				followUp = operation.get();
+			}finally {
+				accountLock.unlock();
+			}
+			if(followUp != null)
+				followUp.run();
+			return;
+		}
+
+		if(retryPolicy.isExhausted(attempts)) {
+			if(onGiveUp != null) {
+				log.info("Account {} still busy after {} attempts, giving up", accountId, attempts);
+				onGiveUp.run();
+				return;
+			}
+			if(attempts == retryPolicy.getMaxAttempts())
+				log.warn("Account {} still busy after {} attempts, retrying until it is free", accountId, attempts);
+		}
+
+		scheduleAttempt(accountId, operation, executor, onGiveUp, attempts + 1, retryPolicy.delayMillis(attempts));
+	}
+
+	private void scheduleAttempt(String accountId, Supplier<Runnable> operation, Executor executor, Runnable onGiveUp, int attempts, long delayMillis) {
+		// The timer thread only hands the next attempt over to the executor.
+		retryTimer.schedule(() -> {
+			try {
+				executor.execute(() -> attempt(accountId, operation, executor, onGiveUp, attempts));
+			}catch(RejectedExecutionException e) {
+				// The executor is saturated: the attempt waits on the timer again rather than being lost.
+				scheduleAttempt(accountId, operation, executor, onGiveUp, attempts, retryPolicy.getMaxDelayMillis());
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+}
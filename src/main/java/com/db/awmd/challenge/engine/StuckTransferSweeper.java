@@ -0,0 +1,215 @@
+package com.db.awmd.challenge.engine;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.metrics.LatencyHistogram;
+import com.db.awmd.challenge.metrics.SweeperGauges;
+import com.db.awmd.challenge.repository.TransactionRespository;
+import com.db.awmd.challenge.service.AccountTransactionProcessor;
+import com.db.awmd.challenge.service.FundsTransferEngine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Finds the transactions whose status has not moved within 'transfer.sweeper.deadline-millis', e.g. because their credit
+ * task was lost with a pool thread or a shut down executor, and drives them to completion:
+ * <ul>
+ * <li>DEBIT_SUCCESS : the credit is re-driven through the transfer engine; it is applied only once, see 'creditedTransactions'.</li>
+ * <li>IN_PROGRESS : the debit id is claimed, so that a debit still queued can no longer be applied, and the job is marked
+ * TRANSACTION_TIMEOUT. If the debit was applied already, its credit is re-driven instead.</li>
+ * </ul>
+ * The debit ids are only claimed by the debits applied, every accounts repository claiming the id and applying the debit
+ * together, and by this sweeper. A durable accounts repository ('accounts.balance-mode=journaled') claims again on start-up
+ * the ids of the debits applied before a restart, so the claim tells whether a transaction recovered IN_PROGRESS was
+ * debited; the in-memory repositories lose their balances with their claims. The deadline must stay well below the
+ * idempotency time-to-live ('accounts.idempotency.ttl-seconds'), after which a claim is forgotten.
+ * The transaction repository only moves a status forward, so a slow debit recording DEBIT_SUCCESS after the re-driven
+ * credit does not overwrite SUCCESS.
+ *
+ * Every status change of an in-flight transaction is tracked in the bucket of the sweep interval it happened in, and a
+ * sweep only reads the buckets whose deadline has passed. A tracked transaction whose status moved since is dropped when
+ * its bucket is swept, so the cost of a sweep is proportional to the transactions which reached their deadline, not to the
+ * transaction store. A stuck transaction is found at most two sweep intervals after its deadline.
+ *
+ * On start-up, the transactions recovered in flight by a durable transaction store ('transactions.repository=journaled')
+ * are looked up through its status index and swept on the first sweep: nothing in this JVM is driving them.
+ * @author sinkar
+ *
+ */
+@Component
+@Slf4j
+public class StuckTransferSweeper implements InitializingBean, DisposableBean {
+
+	@Autowired
+	private TransactionRespository transactionRespository;
+	
+	@Autowired
+	private FundsTransferEngine fundsTransferEngine;
+	
+	@Autowired
+	private AccountTransactionProcessor accountTransactionProcessor;
+	
+	@Autowired
+	private TransactionIdempotency transactionIdempotency;
+	
+	private final long deadlineMillis;
+	private final long intervalMillis;
+	private final ScheduledExecutorService sweepTimer;
+	
+	// Tracked status changes by the sweep interval they happened in.
+	private final ConcurrentNavigableMap<Long, Queue<TrackedTransaction>> buckets = new ConcurrentSkipListMap<>();
+	
+	private final LongAdder tracked = new LongAdder();
+	private final LongAdder sweeps = new LongAdder();
+	private final LongAdder examined = new LongAdder();
+	private final LongAdder redrivenCredits = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+	private final LatencyHistogram sweepDuration = new LatencyHistogram();
+	// How late after their deadline the stuck transactions were found.
+	private final LatencyHistogram lag = new LatencyHistogram();
+	
+	@Autowired
+	public StuckTransferSweeper(@Value("${transfer.sweeper.enabled:true}") boolean enabled,
+			@Value("${transfer.sweeper.deadline-millis:60000}") long deadlineMillis,
+			@Value("${transfer.sweeper.interval-millis:1000}") long intervalMillis) {
+		if(deadlineMillis <= 0 || intervalMillis <= 0)
+			throw new IllegalArgumentException("Sweeper deadline and interval must be positive");
+		
+		this.deadlineMillis = deadlineMillis;
+		this.intervalMillis = intervalMillis;
+		this.sweepTimer = enabled ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "stuckTransferSweeper");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+	}
+	
+	/**
+	 * Tracks the transactions recovered in flight, then starts sweeping.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		if(sweepTimer == null)
+			return;
+		
+		List<TransactionDO> recoveredTransactions = transactionRespository.findTransactions(null, EnumSet.of(TransactionStatus.IN_PROGRESS, TransactionStatus.DEBIT_SUCCESS));
+		if(!recoveredTransactions.isEmpty()) {
+			log.info("Tracking {} transactions recovered in flight", recoveredTransactions.size());
+			// Already due, as if their status had moved one deadline ago.
+			long movedAtMillis = System.currentTimeMillis() - deadlineMillis - intervalMillis;
+			for(TransactionDO transactionDO : recoveredTransactions)
+				track(transactionDO, movedAtMillis);
+		}
+		sweepTimer.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Starts the deadline of a transaction which has just moved to an in-flight status (IN_PROGRESS or DEBIT_SUCCESS).
+	 * @param transactionDO The transaction.
+	 */
+	public void track(TransactionDO transactionDO) {
+		if(sweepTimer != null)
+			track(transactionDO, System.currentTimeMillis());
+	}
+	
+	private void track(TransactionDO transactionDO, long movedAtMillis) {
+		buckets.computeIfAbsent(movedAtMillis / intervalMillis, bucket -> new ConcurrentLinkedQueue<>())
+				.add(new TrackedTransaction(transactionDO.getTransactionId(), transactionDO.getTransactionStatus(), movedAtMillis));
+		tracked.increment();
+	}
+	
+	/**
+	 * Drives the transactions stuck since their deadline. Runs on the sweeper thread.
+	 */
+	void sweep() {
+		long start = System.nanoTime();
+		try {
+			long now = System.currentTimeMillis();
+			// Only the buckets whose every status change is older than the deadline.
+			ConcurrentNavigableMap<Long, Queue<TrackedTransaction>> expiredBuckets = buckets.headMap((now - deadlineMillis) / intervalMillis);
+			for(Map.Entry<Long, Queue<TrackedTransaction>> bucket : expiredBuckets.entrySet()) {
+				buckets.remove(bucket.getKey());
+				TrackedTransaction trackedTransaction;
+				while((trackedTransaction = bucket.getValue().poll()) != null) {
+					tracked.decrement();
+					examined.increment();
+					sweep(trackedTransaction, now);
+				}
+			}
+		}catch(RuntimeException e) {
+			log.error("Unexpected failure while sweeping the stuck transactions", e);
+		}
+		sweeps.increment();
+		sweepDuration.recordSince(start);
+	}
+	
+	private void sweep(TrackedTransaction trackedTransaction, long now) {
+		TransactionDO transactionDO = transactionRespository.findTransactionById(trackedTransaction.transactionId);
+		// The status has moved since it was tracked; statuses only move forward.
+		if(transactionDO == null || transactionDO.getTransactionStatus() != trackedTransaction.status)
+			return;
+		
+		lag.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - trackedTransaction.movedAtMillis - deadlineMillis)));
+		if(trackedTransaction.status == TransactionStatus.IN_PROGRESS && transactionIdempotency.getDebitedTransactions().tryClaim(trackedTransaction.transactionId)) {
+			log.warn("Transaction {} stuck in {} : timing it out", trackedTransaction.transactionId, trackedTransaction.status);
+			accountTransactionProcessor.timeOutTransaction(transactionDO);
+			timedOut.increment();
+			return;
+		}
+		
+		log.warn("Transaction {} stuck in {} : re-driving its credit", trackedTransaction.transactionId, trackedTransaction.status);
+		// The deadline starts over, in case the re-driven credit is lost too.
+		track(transactionDO);
+		fundsTransferEngine.startAsyncCredit(transactionDO);
+		redrivenCredits.increment();
+	}
+	
+	public SweeperGauges getGauges() {
+		SweeperGauges gauges = new SweeperGauges();
+		gauges.setTracked(tracked.sum());
+		gauges.setSweeps(sweeps.sum());
+		gauges.setExamined(examined.sum());
+		gauges.setRedrivenCredits(redrivenCredits.sum());
+		gauges.setTimedOut(timedOut.sum());
+		gauges.setSweepDuration(sweepDuration.snapshot());
+		gauges.setLag(lag.snapshot());
+		return gauges;
+	}
+	
+	@Override
+	public void destroy() {
+		if(sweepTimer != null)
+			sweepTimer.shutdownNow();
+	}
+	
+	private static final class TrackedTransaction {
+		private final String transactionId;
+		private final TransactionStatus status;
+		private final long movedAtMillis;
+		
+		TrackedTransaction(String transactionId, TransactionStatus status, long movedAtMillis) {
+			this.transactionId = transactionId;
+			this.status = status;
+			this.movedAtMillis = movedAtMillis;
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package com.db.awmd.challenge.events;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.util.TransactionUtil;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes the status transitions of the transaction jobs to the clients subscribed to a job or to accounts, as Server-Sent
+ * Events, so that the clients need not poll GET /v1/transaction/jobs/{transactionJobId}. It also completes the requests
+ * waiting for the completion of their job.
+ *
+ * An idle subscriber holds no thread: its response is kept open with Servlet async processing. The events are sent on the
+ * notification threadpool, never on the thread recording the transition, so that a slow client does not delay the
+ * transfers; the events of a subscriber are sent one at a time, in the order they were published. Once the notification
+ * threadpool is saturated, e.g. by stalled clients, the subscriptions whose events are rejected by it are closed rather than
+ * sent to on the publishing thread, which holds the account of the transition.
+ *
+ * NOTE: In a production deployment spanning multiple nodes, the transitions would be published on a topic consumed by
+ * every node holding subscribers.
+ * @author sinkar
+ *
+ */
+@Component
+@Slf4j
+public class TransactionEventHub {
+
+	public static final String EVENT_NAME = "transactionJob";
+
+	private final Map<String, Set<Subscription>> jobSubscriptions = new ConcurrentHashMap<>();
+	private final Map<String, Set<Subscription>> accountSubscriptions = new ConcurrentHashMap<>();
+	private final Map<String, Set<Consumer<TransactionJob>>> completionListeners = new ConcurrentHashMap<>();
+
+	private final Executor sendExecutor;
+	private final long timeoutMillis;
+
+	@Autowired
+	public TransactionEventHub(@Qualifier(DevChallengeApplication.NOTIFICATION_THREADPOOL) Executor sendExecutor,
+			@Value("${transaction.events.timeout-millis:600000}") long timeoutMillis) {
+		this.sendExecutor = sendExecutor;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * Subscribes to the transitions of one job. The stream starts with the current status of the job and is completed after
+	 * its terminal status.
+	 * @param transactionJobId The job.
+	 * @param currentStatus Looks up the stored job, once the subscription is registered so that no transition is missed.
+	 * @return The stream of events.
+	 */
+	public SseEmitter subscribeToJob(String transactionJobId, Supplier<TransactionJob> currentStatus) {
+		Subscription subscription = new Subscription(true);
+		register(jobSubscriptions, transactionJobId, subscription);
+		// A transition published before the registration is reflected in the stored job.
+		subscription.offer(currentStatus.get());
+		return subscription.emitter;
+	}
+
+	/**
+	 * Subscribes to the transitions of all the jobs debiting or crediting the given accounts, until the client disconnects
+	 * or the subscription times out.
+	 * @param accountIds The accounts.
+	 * @return The stream of events.
+	 */
+	public SseEmitter subscribeToAccounts(Collection<String> accountIds) {
+		Subscription subscription = new Subscription(false);
+		for(String accountId : accountIds)
+			register(accountSubscriptions, accountId, subscription);
+		return subscription.emitter;
+	}
+
+	/**
+	 * Calls the listener once the job reaches a terminal status, on the thread recording it, or right away if it already has.
+	 * @param transactionJobId The job.
+	 * @param currentStatus Looks up the stored job, once the listener is registered so that the completion is not missed.
+	 * @param listener Called with the completed job; it must be quick, and may be called twice.
+	 * @return Unregisters the listener, e.g. once the client stopped waiting.
+	 */
+	public Runnable awaitCompletion(String transactionJobId, Supplier<TransactionJob> currentStatus, Consumer<TransactionJob> listener) {
+		completionListeners.compute(transactionJobId, (id, listeners) -> {
+			if(listeners == null)
+				listeners = ConcurrentHashMap.newKeySet();
+			listeners.add(listener);
+			return listeners;
+		});
+		Runnable unregister = () -> completionListeners.computeIfPresent(transactionJobId, (id, listeners) -> {
+			listeners.remove(listener);
+			return listeners.isEmpty() ? null : listeners;
+		});
+
+		TransactionJob transactionJob = currentStatus.get();
+		if(isTerminal(transactionJob.getTransactionStatus())) {
+			unregister.run();
+			listener.accept(transactionJob);
+		}
+		return unregister;
+	}
+
+	/**
+	 * Publishes the new status of a job to its subscribers.
+	 * @param transactionDO The job, of which a copy is sent.
+	 */
+	public void publish(TransactionDO transactionDO) {
+		// Nothing to do on the transfer path while nobody is subscribed.
+		if(jobSubscriptions.isEmpty() && accountSubscriptions.isEmpty() && completionListeners.isEmpty())
+			return;
+
+		TransactionJob transactionJob = TransactionUtil.convertTransactionDOToTransactionJob(transactionDO);
+		if(isTerminal(transactionJob.getTransactionStatus())) {
+			Set<Consumer<TransactionJob>> listeners = completionListeners.remove(transactionJob.getTransactionJobId());
+			if(listeners != null)
+				listeners.forEach(listener -> listener.accept(transactionJob));
+		}
+
+		offer(jobSubscriptions.get(transactionJob.getTransactionJobId()), transactionJob);
+		Set<Subscription> sourceAccountSubscriptions = accountSubscriptions.get(transactionJob.getSourceAccountId());
+		offer(sourceAccountSubscriptions, transactionJob);
+		Set<Subscription> targetAccountSubscriptions = accountSubscriptions.get(transactionJob.getTargetAccountId());
+		if(targetAccountSubscriptions != null) {
+			for(Subscription subscription : targetAccountSubscriptions) {
+				// A subscriber to both accounts gets the event once.
+				if(sourceAccountSubscriptions == null || !sourceAccountSubscriptions.contains(subscription))
+					subscription.offer(transactionJob);
+			}
+		}
+	}
+
+	private static void offer(Set<Subscription> subscriptions, TransactionJob transactionJob) {
+		if(subscriptions != null) {
+			for(Subscription subscription : subscriptions)
+				subscription.offer(transactionJob);
+		}
+	}
+
+	private static void register(Map<String, Set<Subscription>> subscriptions, String key, Subscription subscription) {
+		// Added inside compute(), so that a closing subscription cannot drop the set in between.
+		subscriptions.compute(key, (k, registered) -> {
+			if(registered == null)
+				registered = ConcurrentHashMap.newKeySet();
+			registered.add(subscription);
+			return registered;
+		});
+		subscription.keys.put(key, subscriptions);
+	}
+
+	private static boolean isTerminal(TransactionStatus transactionStatus) {
+		return transactionStatus != TransactionStatus.IN_PROGRESS && transactionStatus != TransactionStatus.DEBIT_SUCCESS;
+	}
+
+	private static int rank(TransactionStatus transactionStatus) {
+		if(transactionStatus == TransactionStatus.IN_PROGRESS)
+			return 0;
+		return transactionStatus == TransactionStatus.DEBIT_SUCCESS ? 1 : 2;
+	}
+
+	private final class Subscription {
+		private final SseEmitter emitter = new SseEmitter(timeoutMillis);
+		// The maps in which the subscription is registered, by key, to unregister it.
+		private final Map<String, Map<String, Set<Subscription>>> keys = new ConcurrentHashMap<>();
+		private final boolean singleJob;
+
+		private final Queue<TransactionJob> events = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean sending = new AtomicBoolean();
+		private volatile boolean closed;
+		// Guarded by 'this'; only used for a single job, whose stream must never go back to an earlier status.
+		private int lastRank = -1;
+
+		Subscription(boolean singleJob) {
+			this.singleJob = singleJob;
+			emitter.onCompletion(this::close);
+			emitter.onTimeout(this::close);
+		}
+
+		void offer(TransactionJob transactionJob) {
+			if(closed)
+				return;
+			synchronized(this) {
+				if(singleJob) {
+					int rank = rank(transactionJob.getTransactionStatus());
+					if(rank <= lastRank)
+						return;
+					lastRank = rank;
+				}
+				events.add(transactionJob);
+			}
+			if(sending.compareAndSet(false, true))
+				scheduleSend();
+		}
+
+		private void send() {
+			try {
+				TransactionJob transactionJob;
+				while(!closed && (transactionJob = events.poll()) != null) {
+					emitter.send(SseEmitter.event().name(EVENT_NAME).id(transactionJob.getTransactionJobId() + "/" + transactionJob.getTransactionStatus().name())
+							.data(transactionJob, MediaType.APPLICATION_JSON));
+					if(singleJob && isTerminal(transactionJob.getTransactionStatus())) {
+						close();
+						emitter.complete();
+					}
+				}
+			}catch(IOException | IllegalStateException e) {
+				// The client has disconnected.
+				log.debug("Closing the transaction event subscription: {}", e.getMessage());
+				close();
+				emitter.completeWithError(e);
+			}finally {
+				sending.set(false);
+			}
+			// An event offered after the queue was found empty, but before 'sending' was reset.
+			if(!closed && !events.isEmpty() && sending.compareAndSet(false, true))
+				scheduleSend();
+		}
+
+		private void scheduleSend() {
+			try {
+				sendExecutor.execute(this::send);
+			}catch(RejectedExecutionException e) {
+				// The client has to subscribe again, and gets the current status of its job then.
+				log.debug("Closing the transaction event subscription: the notification threadpool is saturated");
+				close();
+				sending.set(false);
+				emitter.completeWithError(e);
+			}
+		}
+
+		private void close() {
+			closed = true;
+			for(Map.Entry<String, Map<String, Set<Subscription>>> key : keys.entrySet()) {
+				key.getValue().computeIfPresent(key.getKey(), (k, subscriptions) -> {
+					subscriptions.remove(this);
+					return subscriptions.isEmpty() ? null : subscriptions;
+				});
+			}
+		}
+	}
+}
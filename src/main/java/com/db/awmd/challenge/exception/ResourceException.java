@@ -44,4 +44,15 @@ public class ResourceException extends RuntimeException {
 		this.httpStatus = httpStatus;
 		this.errorCode = errorCode;
 	}
+	
+	/**
+	 * Creates an exception without a stack trace, for the expected business failures whose message is provided by the subclass.
+	 * @param httpStatus The corresponding HTTP status of the request
+	 * @param errorCode The application error code indicating the error encountered.
+	 */
+	protected ResourceException(HttpStatus httpStatus, int errorCode) {
+		super(null, null, false, false);
+		this.httpStatus = httpStatus;
+		this.errorCode = errorCode;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.db.awmd.challenge.exception;
+
+import org.springframework.http.HttpStatus;
+
+import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
+
+import lombok.Getter;
+
+/**
+ * Preallocated descriptors of the expected business failures of a transfer, with their application error codes.
+ * A failure is reported as a descriptor, without building an exception; only a failure returned to the API consumer is
+ * wrapped in a {@link TransferFailure}, whose message is formatted when it is read.
+ *
+ * The message formats take the source account id, the target account id and the amount of the transfer as arguments 1
+ * to 3, or the transaction id or the limit exceeded as argument 1.
+ * @author sinkar
+ *
+ */
+public enum TransferError {
+
+	EMPTY_TRANSACTION_REQUEST(AccountTransactionErrorCodes.EMPTY_TRANSACTION_REQUEST, HttpStatus.BAD_REQUEST, "Invalid Fund transfer request. Request cannot be null."),
+	EMPTY_TRANSACTION_BATCH(AccountTransactionErrorCodes.EMPTY_TRANSACTION_REQUEST, HttpStatus.BAD_REQUEST, "Invalid Fund transfer batch. Batch cannot be empty."),
+	INVALID_SOURCE_ACCOUNTID(AccountTransactionErrorCodes.INVALID_SOURCE_ACCOUNTID, HttpStatus.BAD_REQUEST, "Invalid source account id %1$s"),
+	INVALID_TARGET_ACCOUNTID(AccountTransactionErrorCodes.INVALID_TARGET_ACCOUNTID, HttpStatus.BAD_REQUEST, "Invalid target account id %2$s"),
+	INVALID_FUND_TRANSFER_AMOUNT(AccountTransactionErrorCodes.INVALID_FUND_TRANSFER_AMOUNT, HttpStatus.BAD_REQUEST, "Invalid Transfer Amount %3$s"),
+	INVALID_TRANSACTION_ID(AccountTransactionErrorCodes.INVALID_TRANSACTION_ID, HttpStatus.NOT_FOUND, "Invalid transaction id %1$s"),
+	INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT(AccountTransactionErrorCodes.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT, HttpStatus.BAD_REQUEST, "Insufficient funds in source Account %1$s , transaction amount: %3$s"),
+	SOURCE_ACCOUNT_SAME_AS_TARGET_ACCOUNT(AccountTransactionErrorCodes.SOURCE_ACCOUNT_SAME_AS_TARGET_ACCOUNT, HttpStatus.BAD_REQUEST, "Source Account and Target account cannot be same %2$s"),
+	NULL_EMPTY_TRANSACTION_ID(AccountTransactionErrorCodes.NULL_EMPTY_TRANSACTION_ID, HttpStatus.NOT_FOUND, "Invalid transaction object. transactionId cannot be null or empty"),
+	TRANSACTION_BATCH_TOO_LARGE(AccountTransactionErrorCodes.TRANSACTION_BATCH_TOO_LARGE, HttpStatus.BAD_REQUEST, "Invalid Fund transfer batch. Batch cannot have more than %1$s requests."),
+	MISSING_JOB_QUERY_CRITERIA(AccountTransactionErrorCodes.MISSING_JOB_QUERY_CRITERIA, HttpStatus.BAD_REQUEST, "Invalid transaction job query. An account id or a status is required."),
+	TRANSFERS_OVERLOADED(AccountTransactionErrorCodes.TRANSFERS_OVERLOADED, HttpStatus.TOO_MANY_REQUESTS, "Too many transfers in progress. Retry after %1$s seconds.");
+
+	@Getter
+	private final int errorCode;
+
+	@Getter
+	private final HttpStatus httpStatus;
+
+	private final String messageFormat;
+
+	TransferError(int errorCode, HttpStatus httpStatus, String messageFormat) {
+		this.errorCode = errorCode;
+		this.httpStatus = httpStatus;
+		this.messageFormat = messageFormat;
+	}
+
+	/**
+	 * @param arguments The arguments of the message, only formatted when the message is read.
+	 * @return The failure to return to the API consumer, without a stack trace.
+	 */
+	public TransferFailure failure(Object... arguments) {
+		return new TransferFailure(this, arguments);
+	}
+
+	String formatMessage(Object[] arguments) {
+		return arguments.length == 0 ? messageFormat : String.format(messageFormat, arguments);
+	}
+}
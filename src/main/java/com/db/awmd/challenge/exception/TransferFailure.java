@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * An expected business failure of a transfer returned to the API consumer, e.g. a rejected request.
+ * Unlike the other ResourceExceptions, it has no stack trace, and its message is only formatted when it is read.
+ * @author sinkar
+ *
+ */
+public class TransferFailure extends ResourceException {
+	private static final long serialVersionUID = 1L;
+
+	private final transient TransferError error;
+	private final transient Object[] arguments;
+	private transient String message;
+
+	TransferFailure(TransferError error, Object[] arguments) {
+		super(error.getHttpStatus(), error.getErrorCode());
+		this.error = error;
+		this.arguments = arguments;
+	}
+
+	@Override
+	public String getMessage() {
+		if(message == null)
+			message = error.formatMessage(arguments);
+		return message;
+	}
+}
@@ -0,0 +1,78 @@
+package com.db.awmd.challenge.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates k-sortable 64-bit ids made of the time in milliseconds since 2017-01-01 (41 bits, about 69 years), the id of
+ * the node (10 bits, 'transaction.id.node-id') and a sequence number within the millisecond (12 bits).
+ * The ids of a node are strictly increasing, and the ids of all the nodes are ordered by their time within the clock skew
+ * between the nodes.
+ *
+ * Generating an id is a single compare-and-set, with neither a lock nor a shared random generator. When more than 4096 ids
+ * are generated within a millisecond, or when the clock goes backwards, the ids borrow the time of the next milliseconds
+ * instead of waiting for the clock to catch up.
+ * @author sinkar
+ *
+ */
+@Component
+@ConditionalOnProperty(name = TransactionIdGenerator.GENERATOR_PROPERTY, havingValue = "time-ordered", matchIfMissing = true)
+public class TimeOrderedIdGenerator implements TransactionIdGenerator {
+
+	// 2017-01-01T00:00:00Z
+	static final long EPOCH_MILLIS = 1483228800000L;
+	static final int NODE_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private final long nodeBits;
+	private final LongSupplier clock;
+
+	// The time and the sequence number of the last id, as (time << SEQUENCE_BITS) | sequence.
+	private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+	@Autowired
+	public TimeOrderedIdGenerator(@Value("${transaction.id.node-id:0}") int nodeId) {
+		this(nodeId, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param nodeId The id of the node, from 0 to 1023, unique among the nodes generating ids.
+	 * @param clock The current time in milliseconds.
+	 */
+	public TimeOrderedIdGenerator(int nodeId, LongSupplier clock) {
+		if(nodeId < 0 || nodeId > MAX_NODE_ID)
+			throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+
+		this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+		this.clock = clock;
+	}
+
+	@Override
+	public long nextId() {
+		long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+		long last;
+		long next;
+		do {
+			last = lastTimeAndSequence.get();
+			// A sequence overflowing into the time borrows the next millisecond.
+			next = Math.max(now, last + 1);
+		}while(!lastTimeAndSequence.compareAndSet(last, next));
+
+		return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS) | nodeBits | (next & SEQUENCE_MASK);
+	}
+
+	/**
+	 * @param id An id generated by this generator.
+	 * @return The time in milliseconds at which the id was generated.
+	 */
+	public static long timeMillisOf(long id) {
+		return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+	}
+}
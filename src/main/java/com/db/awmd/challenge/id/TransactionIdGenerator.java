@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.id;
+
+/**
+ * Generates the ids of the transaction jobs as 64-bit numbers, kept as primitive keys by the transaction repositories.
+ * They are encoded as strings with {@link TransactionIds} at the API edge only.
+ * @author sinkar
+ *
+ */
+public interface TransactionIdGenerator {
+
+	// Selects the implementation: 'time-ordered' (default).
+	String GENERATOR_PROPERTY = "transaction.id.generator";
+
+	/**
+	 * @return A new id, unique among the ids generated by all the nodes.
+	 */
+	long nextId();
+}
@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.id;
+
+import java.util.Arrays;
+
+/**
+ * String encoding of the 64-bit transaction ids at the API edge: 13 characters of Crockford's base 32, most significant
+ * first and padded with zeros, so that the strings sort in the same order as the ids.
+ * @author sinkar
+ *
+ */
+public class TransactionIds {
+
+	public static final int ENCODED_LENGTH = 13;
+
+	private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+	private static final int[] VALUES = new int[128];
+
+	static {
+		Arrays.fill(VALUES, -1);
+		for(int i = 0; i < DIGITS.length; i++) {
+			VALUES[DIGITS[i]] = i;
+			VALUES[Character.toLowerCase(DIGITS[i])] = i;
+		}
+	}
+
+	private TransactionIds() {
+	}
+
+	/**
+	 * @param id The id.
+	 * @return The 13 characters encoding the id.
+	 */
+	public static String format(long id) {
+		char[] encoded = new char[ENCODED_LENGTH];
+		for(int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+			encoded[i] = DIGITS[(int) (id & 31)];
+			id >>>= 5;
+		}
+		return new String(encoded);
+	}
+
+	/**
+	 * @param encoded The encoded id, case insensitive.
+	 * @return The id.
+	 * @throws IllegalArgumentException if the string does not encode an id.
+	 */
+	public static long parse(String encoded) {
+		if(!isValid(encoded))
+			throw new IllegalArgumentException("Invalid transaction id " + encoded);
+
+		long id = 0;
+		for(int i = 0; i < ENCODED_LENGTH; i++)
+			id = id << 5 | VALUES[encoded.charAt(i)];
+		return id;
+	}
+
+	/**
+	 * @param encoded A string.
+	 * @return true if the string encodes an id.
+	 */
+	public static boolean isValid(String encoded) {
+		if(encoded == null || encoded.length() != ENCODED_LENGTH)
+			return false;
+		for(int i = 0; i < ENCODED_LENGTH; i++) {
+			char c = encoded.charAt(i);
+			if(c >= VALUES.length || VALUES[c] < 0)
+				return false;
+		}
+		// The first character only holds the 4 most significant bits.
+		return VALUES[encoded.charAt(0)] < 16;
+	}
+}
@@ -0,0 +1,254 @@
+package com.db.awmd.challenge.idempotency;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the ids of the operations applied recently, so that a replayed operation is applied only once.
+ * An id is remembered for at least the time-to-live, after which it expires; the number of ids remembered is capped.
+ *
+ * The ids are kept in time-bucketed generations. Every id is recorded in the generation current when it was claimed, and
+ * a generation is dropped as a whole once its time-to-live has passed since it stopped being current, so the expiry costs
+ * O(1) amortized per id and nothing scans the ids which are still alive. When the cap is exceeded, the oldest generations
+ * are evicted before their time-to-live.
+ *
+ * NOTE: In a production deployment, it would be implemented using a distributed Cache with a time-to-live, so that a
+ * replay handled by another node is detected too.
+ * @author sinkar
+ *
+ */
+public class IdempotencyStore {
+
+	private final long timeToLiveMillis;
+	private final long generationMillis;
+	private final int maxEntries;
+	private final LongSupplier clock;
+
+	// Every id maps to the generation it was claimed in. An id of a dropped generation which is still in the map is expired.
+	private final Map<String, Generation> ids = new ConcurrentHashMap<>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	// Generations from the oldest to the current one, guarded by 'generationsLock'.
+	private final Queue<Generation> generations = new ArrayDeque<>();
+	private final ReentrantLock generationsLock = new ReentrantLock();
+	private volatile Generation currentGeneration;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param timeToLive How long an id is remembered at least.
+	 * @param unit The unit of the time-to-live.
+	 * @param generations Number of generations spanning the time-to-live; an id expires at most timeToLive / generations late.
+	 * @param maxEntries Maximum number of ids remembered.
+	 */
+	public IdempotencyStore(long timeToLive, TimeUnit unit, int generations, int maxEntries) {
+		this(timeToLive, unit, generations, maxEntries, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param clock The current time in milliseconds.
+	 */
+	public IdempotencyStore(long timeToLive, TimeUnit unit, int generations, int maxEntries, LongSupplier clock) {
+		if(timeToLive <= 0 || generations <= 0 || maxEntries <= 0)
+			throw new IllegalArgumentException("Time-to-live, generations and maximum entries must be positive");
+
+		this.timeToLiveMillis = unit.toMillis(timeToLive);
+		this.generationMillis = Math.max(1, timeToLiveMillis / generations);
+		this.maxEntries = maxEntries;
+		this.clock = clock;
+		this.currentGeneration = new Generation(clock.getAsLong());
+		this.generations.add(currentGeneration);
+	}
+
+	/**
+	 * Claims the id for an operation about to be applied.
+	 * @param id The id of the operation.
+	 * @return true if the id was not seen within the time-to-live and the operation is to be applied, false for a replay.
+	 */
+	public boolean tryClaim(String id) {
+		Generation generation = currentGeneration(clock.getAsLong());
+		Generation previous = ids.putIfAbsent(id, generation);
+		if(previous != null) {
+			// An id of a dropped generation may still be in the map until that generation is swept.
+			if(!previous.dropped || !ids.replace(id, previous, generation)) {
+				hits.increment();
+				return false;
+			}
+		}else
+			size.incrementAndGet();
+
+		generation.ids.add(id);
+		// The generation was dropped while the id was being added to it.
+		if(generation.dropped && ids.remove(id, generation))
+			size.decrementAndGet();
+		if(size.get() > maxEntries)
+			evictOldestGenerations();
+		misses.increment();
+		return true;
+	}
+
+	/**
+	 * Forgets a claimed id, e.g. when the operation could not be applied and may be retried.
+	 * The id stays listed in its generation until the generation is dropped.
+	 * @param id The id of the operation.
+	 */
+	public void release(String id) {
+		Generation generation = ids.get(id);
+		if(generation != null && ids.remove(id, generation))
+			size.decrementAndGet();
+	}
+
+	/**
+	 * @param id The id of an operation.
+	 * @return true if the id was claimed within the time-to-live.
+	 */
+	public boolean contains(String id) {
+		Generation generation = ids.get(id);
+		return generation != null && !generation.dropped;
+	}
+
+	/**
+	 * Visits the ids claimed within the time-to-live, e.g. to persist them. An id claimed or released during the visit may
+	 * or may not be visited.
+	 * @param action Called with every id.
+	 */
+	public void forEach(Consumer<String> action) {
+		ids.forEach((id, generation) -> {
+			if(!generation.dropped)
+				action.accept(id);
+		});
+	}
+
+	public void clear() {
+		generationsLock.lock();
+		try {
+			for(Generation generation : generations)
+				generation.dropped = true;
+			generations.clear();
+			ids.clear();
+			size.set(0);
+			currentGeneration = new Generation(clock.getAsLong());
+			generations.add(currentGeneration);
+		}finally {
+			generationsLock.unlock();
+		}
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return The number of replayed ids detected.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of ids claimed.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The number of ids forgotten after their time-to-live.
+	 */
+	public long getExpirations() {
+		return expirations.sum();
+	}
+
+	/**
+	 * @return The number of ids forgotten before their time-to-live to respect the maximum number of entries.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the generation for new ids, starting a new one and dropping the expired ones when it is time.
+	 */
+	private Generation currentGeneration(long now) {
+		Generation generation = currentGeneration;
+		if(now - generation.startMillis < generationMillis)
+			return generation;
+
+		generationsLock.lock();
+		try {
+			if(now - currentGeneration.startMillis >= generationMillis)
+				startGeneration(now);
+
+			Generation oldest;
+			while((oldest = generations.peek()) != currentGeneration && now - oldest.endMillis >= timeToLiveMillis)
+				expirations.add(drop(generations.poll()));
+			return currentGeneration;
+		}finally {
+			generationsLock.unlock();
+		}
+	}
+
+	private void evictOldestGenerations() {
+		generationsLock.lock();
+		try {
+			while(size.get() > maxEntries) {
+				if(generations.peek() == currentGeneration) {
+					// The ids being claimed right now are not listed in their generation yet.
+					if(currentGeneration.ids.isEmpty())
+						break;
+					startGeneration(clock.getAsLong());
+				}
+				evictions.add(drop(generations.poll()));
+			}
+		}finally {
+			generationsLock.unlock();
+		}
+	}
+
+	/**
+	 * Called with 'generationsLock' held.
+	 */
+	private void startGeneration(long now) {
+		currentGeneration.endMillis = now;
+		currentGeneration = new Generation(now);
+		generations.add(currentGeneration);
+	}
+
+	/**
+	 * Forgets the ids of a generation which is no longer current.
+	 * @return The number of ids forgotten.
+	 */
+	private int drop(Generation generation) {
+		generation.dropped = true;
+		int dropped = 0;
+		for(String id : generation.ids) {
+			if(ids.remove(id, generation))
+				dropped++;
+		}
+		size.addAndGet(-dropped);
+		return dropped;
+	}
+
+	private static final class Generation {
+		private final long startMillis;
+		private volatile long endMillis = Long.MAX_VALUE;
+		private volatile boolean dropped;
+		private final Queue<String> ids = new ConcurrentLinkedQueue<>();
+
+		Generation(long startMillis) {
+			this.startMillis = startMillis;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.idempotency;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+
+/**
+ * The ids of the transactions recently debited from their source account and credited to their target account, used by
+ * the accounts repositories to apply a replayed debit/credit only once.
+ * The ids are remembered for 'accounts.idempotency.ttl-seconds' and at most 'accounts.idempotency.max-entries' of them
+ * are kept for the debits and for the credits.
+ * @author sinkar
+ *
+ */
+@Component
+public class TransactionIdempotency {
+
+	private static final int GENERATIONS = 16;
+
+	@Getter
+	private final IdempotencyStore debitedTransactions;
+
+	@Getter
+	private final IdempotencyStore creditedTransactions;
+
+	@Autowired
+	public TransactionIdempotency(@Value("${accounts.idempotency.ttl-seconds:3600}") long timeToLiveSeconds,
+			@Value("${accounts.idempotency.max-entries:10000000}") int maxEntries) {
+		this.debitedTransactions = new IdempotencyStore(timeToLiveSeconds, TimeUnit.SECONDS, GENERATIONS, maxEntries);
+		this.creditedTransactions = new IdempotencyStore(timeToLiveSeconds, TimeUnit.SECONDS, GENERATIONS, maxEntries);
+	}
+
+	public void clear() {
+		debitedTransactions.clear();
+		creditedTransactions.clear();
+	}
+}
@@ -0,0 +1,412 @@
+package com.db.awmd.challenge.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of records in a local file, written ahead of the in-memory state they describe.
+ * Every record gets a log sequence number (LSN) which increases by one per record.
+ *
+ * With group commit, the appending threads only queue their records. A single flusher thread writes all the records queued
+ * since its last flush with one write and makes them durable with one fsync, then wakes up all the waiting appenders.
+ * Under load many appenders share each fsync, so durability does not cap the throughput at one fsync per record.
+ * Without group commit, every append writes and fsyncs its own record before returning.
+ *
+ * Record layout on disk: | payload length (4) | lsn (8) | payload | crc32 of lsn and payload (4) |
+ * A torn or corrupt record at the tail (e.g. after a crash during a write) ends the journal and is truncated on open.
+ * @author sinkar
+ *
+ */
+@Slf4j
+public class WriteAheadJournal implements Closeable {
+
+	private static final int HEADER_SIZE = 4 + 8;
+	private static final int TRAILER_SIZE = 4;
+
+	/**
+	 * Receives the records of the journal during a replay.
+	 */
+	public interface RecordHandler {
+		void onRecord(long lsn, ByteBuffer payload);
+	}
+
+	private final Path file;
+	private final boolean groupCommit;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition recordsPending = lock.newCondition();
+	private final Condition recordsDurable = lock.newCondition();
+
+	// All guarded by 'lock'
+	private FileChannel channel;
+	private List<ByteBuffer> pendingRecords = new ArrayList<>();
+	private long lastAppendedLsn;
+	private long durableLsn;
+	private IOException failure;
+	private boolean closed;
+
+	private final Thread flusher;
+
+	/**
+	 * Opens (or creates) the journal file. The valid records already present are kept and the LSNs continue after them.
+	 * @param file The journal file.
+	 * @param groupCommit true to batch the fsync of concurrent appenders, false to fsync every record on its own.
+	 * @throws IOException If the journal file cannot be opened.
+	 */
+	public WriteAheadJournal(Path file, boolean groupCommit) throws IOException {
+		this.file = file;
+		this.groupCommit = groupCommit;
+		if(file.getParent() != null)
+			Files.createDirectories(file.getParent());
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		long validLength = scan(0, null);
+		if(validLength < channel.size()) {
+			log.warn("Truncating {} bytes of torn records at the end of journal {}", channel.size() - validLength, file);
+			channel.truncate(validLength);
+		}
+		channel.position(validLength);
+		durableLsn = lastAppendedLsn;
+
+		if(groupCommit) {
+			flusher = new Thread(this::flushLoop, "journalFlusher-" + file.getFileName());
+			flusher.setDaemon(true);
+			flusher.start();
+		}else
+			flusher = null;
+	}
+
+	/**
+	 * Appends a record to the journal. The record is durable once {@link #awaitDurable(long)} returns for its LSN.
+	 * @param payload The record.
+	 * @return The LSN assigned to the record.
+	 */
+	public long append(byte[] payload) {
+		lock.lock();
+		try {
+			checkUsable();
+			long lsn = ++lastAppendedLsn;
+			ByteBuffer record = encode(lsn, payload);
+			if(groupCommit) {
+				pendingRecords.add(record);
+				recordsPending.signal();
+			}else {
+				try {
+					writeFully(record);
+					channel.force(false);
+					durableLsn = lsn;
+				}catch(IOException e) {
+					failure = e;
+					throw new UncheckedIOException("Failed to write to journal " + file, e);
+				}
+			}
+			return lsn;
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks until the record with the given LSN (and all the records before it) has been fsynced.
+	 * @param lsn The LSN returned by {@link #append(byte[])}.
+	 */
+	public void awaitDurable(long lsn) {
+		lock.lock();
+		try {
+			while(durableLsn < lsn) {
+				checkUsable();
+				recordsDurable.awaitUninterruptibly();
+			}
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends a record and waits until it is durable.
+	 * @param payload The record.
+	 * @return The LSN assigned to the record.
+	 */
+	public long appendAndSync(byte[] payload) {
+		long lsn = append(payload);
+		awaitDurable(lsn);
+		return lsn;
+	}
+
+	/**
+	 * Replays all the durable records of the journal in LSN order.
+	 * @param fromLsn Records with a lower LSN are skipped.
+	 * @param handler The handler receiving the records.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	public void replay(long fromLsn, RecordHandler handler) throws IOException {
+		lock.lock();
+		try {
+			long end = scan(0, (lsn, payload) -> {
+				if(lsn >= fromLsn)
+					handler.onRecord(lsn, payload);
+			});
+			log.debug("Replayed journal {} up to offset {}", file, end);
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The LSN of the last record which has been made durable.
+	 */
+	public long getDurableLsn() {
+		lock.lock();
+		try {
+			return durableLsn;
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The LSN of the last record which has been appended, durable or not.
+	 */
+	public long getLastAppendedLsn() {
+		lock.lock();
+		try {
+			return lastAppendedLsn;
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Makes the LSNs of the records appended from now on continue after the given one.
+	 * The file only remembers the LSNs of the records it contains, so after {@link #discardBefore(long)} or {@link #reset()}
+	 * the owner of the journal re-establishes the LSNs covered by its checkpoint with this method when re-opening the journal.
+	 * @param lsn The LSN of the last record covered by the owner's checkpoint.
+	 */
+	public void advanceTo(long lsn) {
+		lock.lock();
+		try {
+			if(lsn > lastAppendedLsn) {
+				lastAppendedLsn = lsn;
+				durableLsn = lsn;
+			}
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Drops the records with an LSN lower than the given one, e.g. once they are covered by a checkpoint.
+	 * The remaining records are copied to a new file which atomically replaces the journal. Appenders wait during the copy,
+	 * so it is meant to be called right after a checkpoint, when only a short tail of records remains.
+	 * @param lsn The LSN of the first record to keep.
+	 * @throws IOException If the journal cannot be rewritten.
+	 */
+	public void discardBefore(long lsn) throws IOException {
+		lock.lock();
+		try {
+			awaitAllDurable();
+
+			// LSNs increase along the file, so the records to drop are a prefix of it.
+			long[] keptOffset = new long[1];
+			long end = scan(0, (recordLsn, payload) -> {
+				if(recordLsn < lsn)
+					keptOffset[0] += HEADER_SIZE + payload.remaining() + TRAILER_SIZE;
+			});
+			if(keptOffset[0] == 0)
+				return;
+
+			Path compactedFile = file.resolveSibling(file.getFileName() + ".compact");
+			try(FileChannel compacted = FileChannel.open(compactedFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				long position = keptOffset[0];
+				while(position < end)
+					position += channel.transferTo(position, end - position, compacted);
+				compacted.force(true);
+			}
+			channel.close();
+			Files.move(compactedFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+			log.debug("Discarded {} bytes of records before lsn {} from journal {}", keptOffset[0], lsn, file);
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Discards all the records of the journal. The LSNs keep increasing.
+	 * @throws IOException If the journal cannot be truncated.
+	 */
+	public void reset() throws IOException {
+		lock.lock();
+		try {
+			awaitAllDurable();
+			channel.truncate(0);
+			channel.position(0);
+			channel.force(true);
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			recordsPending.signalAll();
+			recordsDurable.signalAll();
+		}finally {
+			lock.unlock();
+		}
+		if(flusher != null) {
+			try {
+				flusher.join(TimeUnit.SECONDS.toMillis(5));
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		channel.close();
+	}
+
+	/**
+	 * Group commit: waits for records, writes everything queued so far in one go and fsyncs once for all of them.
+	 */
+	private void flushLoop() {
+		while(true) {
+			List<ByteBuffer> batch;
+			long batchLsn;
+			FileChannel target;
+			lock.lock();
+			try {
+				while(pendingRecords.isEmpty() && !closed)
+					recordsPending.awaitUninterruptibly();
+				if(pendingRecords.isEmpty())
+					return;
+				batch = pendingRecords;
+				batchLsn = lastAppendedLsn;
+				target = channel;
+				pendingRecords = new ArrayList<>(batch.size());
+			}finally {
+				lock.unlock();
+			}
+
+			IOException batchFailure = null;
+			try {
+				target.write(batch.toArray(new ByteBuffer[batch.size()]));
+				for(ByteBuffer record : batch) {
+					while(record.hasRemaining())
+						target.write(record);
+				}
+				target.force(false);
+			}catch(IOException e) {
+				log.error("Failed to flush journal " + file, e);
+				batchFailure = e;
+			}
+
+			lock.lock();
+			try {
+				if(batchFailure != null)
+					failure = batchFailure;
+				else
+					durableLsn = batchLsn;
+				recordsDurable.signalAll();
+			}finally {
+				lock.unlock();
+			}
+			if(batchFailure != null)
+				return;
+		}
+	}
+
+	/**
+	 * Waits until the flusher has written everything appended so far. Called with 'lock' held.
+	 */
+	private void awaitAllDurable() {
+		while(!pendingRecords.isEmpty() || durableLsn < lastAppendedLsn) {
+			checkUsable();
+			recordsDurable.awaitUninterruptibly();
+		}
+	}
+
+	private void checkUsable() {
+		if(failure != null)
+			throw new UncheckedIOException("Journal " + file + " failed earlier", failure);
+		if(closed)
+			throw new IllegalStateException("Journal " + file + " is closed");
+	}
+
+	private void writeFully(ByteBuffer record) throws IOException {
+		while(record.hasRemaining())
+			channel.write(record);
+	}
+
+	private static ByteBuffer encode(long lsn, byte[] payload) {
+		ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length + TRAILER_SIZE);
+		record.putInt(payload.length);
+		record.putLong(lsn);
+		record.put(payload);
+
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 4, 8 + payload.length);
+		record.putInt((int) crc.getValue());
+		record.flip();
+		return record;
+	}
+
+	/**
+	 * Reads the valid records from the given offset, remembering the last LSN seen.
+	 * @return The offset right after the last valid record.
+	 */
+	private long scan(long offset, RecordHandler handler) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		long size = channel.size();
+		while(offset + HEADER_SIZE + TRAILER_SIZE <= size) {
+			header.clear();
+			if(channel.read(header, offset) < HEADER_SIZE)
+				break;
+			header.flip();
+			int length = header.getInt();
+			long lsn = header.getLong();
+			if(length < 0 || offset + HEADER_SIZE + length + TRAILER_SIZE > size)
+				break;
+
+			ByteBuffer body = ByteBuffer.allocate(length + TRAILER_SIZE);
+			while(body.hasRemaining()) {
+				if(channel.read(body, offset + HEADER_SIZE + body.position()) < 0)
+					break;
+			}
+			if(body.hasRemaining())
+				break;
+
+			CRC32 crc = new CRC32();
+			crc.update(header.array(), 4, 8);
+			crc.update(body.array(), 0, length);
+			if((int) crc.getValue() != body.getInt(length))
+				break;
+
+			lastAppendedLsn = Math.max(lastAppendedLsn, lsn);
+			if(handler != null) {
+				body.position(0);
+				body.limit(length);
+				handler.onRecord(lsn, body.asReadOnlyBuffer());
+			}
+			offset += HEADER_SIZE + length + TRAILER_SIZE;
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,55 @@
+package com.db.awmd.challenge.ledger;
+
+import com.db.awmd.challenge.client.Posting;
+
+/**
+ * The append-only history of one account. The entries are stored in fixed-size chunks, so an append never copies the
+ * entries, and the entry of a sequence number is found in O(1).
+ *
+ * The appends are serialized; the reads take no lock. An entry is written before the size which publishes it, so a reader
+ * sees every entry up to the size it read.
+ * @author sinkar
+ *
+ */
+class AccountPostings {
+
+	private static final int CHUNK_BITS = 8;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	// Only the directory of the chunks is copied when it is full.
+	private volatile Posting[][] chunks = new Posting[4][];
+	private volatile int size;
+
+	/**
+	 * @param posting The entry, whose sequence number is the size of the history after it is appended.
+	 */
+	synchronized void append(Posting posting) {
+		int index = size;
+		Posting[][] currentChunks = chunks;
+		int chunk = index >>> CHUNK_BITS;
+		if(chunk == currentChunks.length) {
+			Posting[][] grownChunks = new Posting[currentChunks.length * 2][];
+			System.arraycopy(currentChunks, 0, grownChunks, 0, currentChunks.length);
+			chunks = grownChunks;
+			currentChunks = grownChunks;
+		}
+		if(currentChunks[chunk] == null)
+			currentChunks[chunk] = new Posting[CHUNK_SIZE];
+
+		currentChunks[chunk][index & CHUNK_MASK] = posting;
+		size = index + 1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param sequence A sequence number from 1 to the size.
+	 */
+	Posting get(long sequence) {
+		int index = (int) (sequence - 1);
+		return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+	}
+}
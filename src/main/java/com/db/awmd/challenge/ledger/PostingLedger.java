@@ -0,0 +1,115 @@
+package com.db.awmd.challenge.ledger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.client.Posting;
+import com.db.awmd.challenge.client.Posting.PostingType;
+import com.db.awmd.challenge.client.PostingPage;
+import com.db.awmd.challenge.domain.TransactionDO;
+
+/**
+ * Double-entry ledger of the transfers: every debited transaction is posted as a debit entry in the history of its source
+ * account, and every credited transaction as a credit entry in the history of its target account. An entry carries its
+ * sequence number in the history of the account and the balance of the account right after it.
+ *
+ * The entries of an account are posted by the transfer engine while it holds the account, so they are in the order of
+ * the balance updates. A page of history is read in O(page size) from a cursor, which is the sequence number to continue from.
+ * NOTE: In production, the postings would be persisted in a table, indexed by account and sequence number.
+ * @author sinkar
+ *
+ */
+@Component
+public class PostingLedger {
+
+	private final Map<String, AccountPostings> postings = new ConcurrentHashMap<>();
+
+	/**
+	 * Starts an empty history for a new account.
+	 * @param accountId The id of the account.
+	 */
+	public void openAccount(String accountId) {
+		postings.put(accountId, new AccountPostings());
+	}
+
+	/**
+	 * @param transactionDO The transaction debited from its source account.
+	 * @param balance The balance of the source account after the debit.
+	 */
+	public void postDebit(TransactionDO transactionDO, BigDecimal balance) {
+		AccountPostings accountPostings = postingsOf(transactionDO.getSourceAccountId());
+		synchronized(accountPostings) {
+			accountPostings.append(new Posting(accountPostings.size() + 1, transactionDO.getTransactionId(), PostingType.DEBIT, transactionDO.getAmount(),
+					balance, transactionDO.getTargetAccountId(), System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * @param transactionDOs The transactions credited together to their common target account, in the order of the credits.
+	 * @param balance The balance of the target account after the last credit.
+	 */
+	public void postCredits(List<TransactionDO> transactionDOs, BigDecimal balance) {
+		// The balance after every credit, from the balance after the last one.
+		BigDecimal[] balances = new BigDecimal[transactionDOs.size()];
+		for(int i = transactionDOs.size() - 1; i >= 0; i--) {
+			balances[i] = balance;
+			balance = balance.subtract(transactionDOs.get(i).getAmount());
+		}
+
+		AccountPostings accountPostings = postingsOf(transactionDOs.get(0).getTargetAccountId());
+		long postedAtMillis = System.currentTimeMillis();
+		synchronized(accountPostings) {
+			for(int i = 0; i < transactionDOs.size(); i++) {
+				TransactionDO transactionDO = transactionDOs.get(i);
+				accountPostings.append(new Posting(accountPostings.size() + 1, transactionDO.getTransactionId(), PostingType.CREDIT, transactionDO.getAmount(),
+						balances[i], transactionDO.getSourceAccountId(), postedAtMillis));
+			}
+		}
+	}
+
+	/**
+	 * @param accountId The id of the account.
+	 * @param cursor The cursor returned with the previous page, or null for the newest entries.
+	 * @param limit The maximum number of entries of the page.
+	 * @return The page of entries, from the newest to the oldest.
+	 * @throws IllegalArgumentException if the cursor is not one returned by this ledger.
+	 */
+	public PostingPage getPostings(String accountId, String cursor, int limit) {
+		AccountPostings accountPostings = postings.get(accountId);
+		int size = accountPostings == null ? 0 : accountPostings.size();
+		long newest = cursor == null ? size : parseCursor(cursor, size) - 1;
+		long oldest = Math.max(1, newest - limit + 1);
+
+		List<Posting> page = new ArrayList<>((int) Math.max(0, newest - oldest + 1));
+		for(long sequence = newest; sequence >= oldest; sequence--)
+			page.add(accountPostings.get(sequence));
+
+		PostingPage postingPage = new PostingPage();
+		postingPage.setAccountId(accountId);
+		postingPage.setPostings(page);
+		postingPage.setNextCursor(oldest > 1 && !page.isEmpty() ? Long.toString(oldest) : null);
+		return postingPage;
+	}
+
+	private AccountPostings postingsOf(String accountId) {
+		// The history of an account restored from a journal starts with its first posting.
+		return postings.computeIfAbsent(accountId, id -> new AccountPostings());
+	}
+
+	private static long parseCursor(String cursor, int size) {
+		long sequence;
+		try {
+			sequence = Long.parseLong(cursor);
+		}catch(NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor " + cursor);
+		}
+		if(sequence < 1 || sequence > size + 1L)
+			throw new IllegalArgumentException("Invalid cursor " + cursor);
+		return sequence;
+	}
+}
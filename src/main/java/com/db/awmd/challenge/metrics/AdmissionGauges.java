@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+/**
+ * The state of the admission control of the transfers: the adaptive limit of the transfers in flight, the transfers in
+ * flight, the smoothed latency of the transfers, the transfers admitted and rejected (shed) so far, the backoffs of the
+ * limit caused by a debit/credit waiting too long in its queue, and the admitted transfers rejected by the saturated debit
+ * threadpool.
+ * @author sinkar
+ *
+ */
+@Data
+public class AdmissionGauges {
+
+	private boolean enabled;
+	private int limit;
+	private int inFlight;
+	private long smoothedLatencyMicros;
+	private long accepted;
+	private long shed;
+	private long queueDelayBackoffs;
+	private long rejectedByPools;
+}
@@ -0,0 +1,44 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.db.awmd.challenge.concurrent.CountingAbortPolicy;
+import com.db.awmd.challenge.concurrent.CountingCallerRunsPolicy;
+
+import lombok.Data;
+
+/**
+ * The saturation of a thread pool. Once the queue is full, the tasks rejected by the pool are either run by the submitting
+ * thread, e.g. a request thread of the web server, which 'callerRunsRejections' counts, or handed back to the submitter with
+ * an exception, which 'abortRejections' counts.
+ * @author sinkar
+ *
+ */
+@Data
+public class ExecutorGauges {
+
+	private int activeThreads;
+	private int poolSize;
+	private int maxPoolSize;
+	private int queueSize;
+	private int queueRemainingCapacity;
+	private long callerRunsRejections;
+	private long abortRejections;
+
+	public static ExecutorGauges of(ThreadPoolTaskExecutor executor) {
+		ThreadPoolExecutor threadPoolExecutor = executor.getThreadPoolExecutor();
+		ExecutorGauges gauges = new ExecutorGauges();
+		gauges.setActiveThreads(threadPoolExecutor.getActiveCount());
+		gauges.setPoolSize(threadPoolExecutor.getPoolSize());
+		gauges.setMaxPoolSize(threadPoolExecutor.getMaximumPoolSize());
+		gauges.setQueueSize(threadPoolExecutor.getQueue().size());
+		gauges.setQueueRemainingCapacity(threadPoolExecutor.getQueue().remainingCapacity());
+		if(threadPoolExecutor.getRejectedExecutionHandler() instanceof CountingCallerRunsPolicy)
+			gauges.setCallerRunsRejections(((CountingCallerRunsPolicy) threadPoolExecutor.getRejectedExecutionHandler()).getRejections());
+		if(threadPoolExecutor.getRejectedExecutionHandler() instanceof CountingAbortPolicy)
+			gauges.setAbortRejections(((CountingAbortPolicy) threadPoolExecutor.getRejectedExecutionHandler()).getRejections());
+		return gauges;
+	}
+}
@@ -0,0 +1,30 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.idempotency.IdempotencyStore;
+
+import lombok.Data;
+
+/**
+ * The counters of an {@link IdempotencyStore}.
+ * @author sinkar
+ *
+ */
+@Data
+public class IdempotencyCounters {
+
+	private int size;
+	private long hits;
+	private long misses;
+	private long expirations;
+	private long evictions;
+
+	public static IdempotencyCounters of(IdempotencyStore idempotencyStore) {
+		IdempotencyCounters counters = new IdempotencyCounters();
+		counters.setSize(idempotencyStore.size());
+		counters.setHits(idempotencyStore.getHits());
+		counters.setMisses(idempotencyStore.getMisses());
+		counters.setExpirations(idempotencyStore.getExpirations());
+		counters.setEvictions(idempotencyStore.getEvictions());
+		return counters;
+	}
+}
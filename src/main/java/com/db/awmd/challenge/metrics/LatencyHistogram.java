@@ -0,0 +1,63 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * The latencies of one stage of a transfer, recorded since the start of the application.
+ * Recording is wait-free and does not allocate, so it can stay on the hot path; the recorded values are only gathered
+ * into a histogram when a snapshot is taken.
+ * @author sinkar
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+	// Guarded by 'this'.
+	private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+	private Histogram interval;
+
+	/**
+	 * Records the latency of a stage which started at the given time.
+	 * @param startNanos The {@link System#nanoTime()} at which the stage started.
+	 */
+	public void recordSince(long startNanos) {
+		recorder.recordValue(Math.max(0, System.nanoTime() - startNanos));
+	}
+
+	/**
+	 * Records a latency measured by the caller.
+	 * @param nanos The latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		recorder.recordValue(Math.max(0, nanos));
+	}
+
+	public synchronized LatencySnapshot snapshot() {
+		interval = recorder.getIntervalHistogram(interval);
+		total.add(interval);
+
+		LatencySnapshot snapshot = new LatencySnapshot();
+		snapshot.setCount(total.getTotalCount());
+		snapshot.setMeanMicros(total.getMean() / 1000);
+		snapshot.setP50Micros(micros(total.getValueAtPercentile(50)));
+		snapshot.setP90Micros(micros(total.getValueAtPercentile(90)));
+		snapshot.setP99Micros(micros(total.getValueAtPercentile(99)));
+		snapshot.setP999Micros(micros(total.getValueAtPercentile(99.9)));
+		snapshot.setMaxMicros(micros(total.getMaxValue()));
+		return snapshot;
+	}
+
+	public synchronized void reset() {
+		interval = recorder.getIntervalHistogram(interval);
+		total.reset();
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
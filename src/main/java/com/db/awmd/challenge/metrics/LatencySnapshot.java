@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+/**
+ * The latency percentiles of a stage, in microseconds.
+ * @author sinkar
+ *
+ */
+@Data
+public class LatencySnapshot {
+
+	private long count;
+	private double meanMicros;
+	private long p50Micros;
+	private long p90Micros;
+	private long p99Micros;
+	private long p999Micros;
+	private long maxMicros;
+}
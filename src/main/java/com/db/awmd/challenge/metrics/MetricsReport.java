@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.db.awmd.challenge.metrics.TransferMetrics.Stage;
+
+import lombok.Data;
+
+/**
+ * The response of GET /v1/metrics: the latency of every stage of a transfer, the saturation of every thread pool and the
+ * counters of the idempotency stores, of the stuck transfer sweeper, of the notification dispatcher and of the admission control.
+ * @author sinkar
+ *
+ */
+@Data
+public class MetricsReport {
+
+	private Map<Stage, LatencySnapshot> latencies = new LinkedHashMap<>();
+	private Map<String, ExecutorGauges> executors = new LinkedHashMap<>();
+	private Map<String, IdempotencyCounters> idempotency = new LinkedHashMap<>();
+	private SweeperGauges sweeper;
+	private NotificationGauges notifications;
+	private AdmissionGauges admission;
+}
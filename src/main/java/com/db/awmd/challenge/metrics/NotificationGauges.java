@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+/**
+ * The activity of the notification dispatcher: the notifications waiting in its queue, offered, dropped once the queue was
+ * full and delivered, and the number of digests they were delivered in.
+ * @author sinkar
+ *
+ */
+@Data
+public class NotificationGauges {
+
+	private int queued;
+	private long offered;
+	private long dropped;
+	private long delivered;
+	private long digests;
+}
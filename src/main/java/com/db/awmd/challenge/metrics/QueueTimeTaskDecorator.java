@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.metrics;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Records how long every task of a thread pool waited in its queue before a thread picked it up.
+ * @author sinkar
+ *
+ */
+public class QueueTimeTaskDecorator implements TaskDecorator {
+
+	private final TransferMetrics transferMetrics;
+	private final TransferMetrics.Stage queueStage;
+
+	public QueueTimeTaskDecorator(TransferMetrics transferMetrics, TransferMetrics.Stage queueStage) {
+		this.transferMetrics = transferMetrics;
+		this.queueStage = queueStage;
+	}
+
+	@Override
+	public Runnable decorate(Runnable task) {
+		long submittedNanos = System.nanoTime();
+		return () -> {
+			transferMetrics.record(queueStage, submittedNanos);
+			task.run();
+		};
+	}
+}
@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.metrics;
+
+import lombok.Data;
+
+/**
+ * The activity of the {@link com.db.awmd.challenge.engine.StuckTransferSweeper}: the status changes waiting for their
+ * deadline, the transactions examined and driven by the sweeps, the cost of a sweep and how late after their deadline the
+ * stuck transactions were found.
+ * @author sinkar
+ *
+ */
+@Data
+public class SweeperGauges {
+
+	private long tracked;
+	private long sweeps;
+	private long examined;
+	private long redrivenCredits;
+	private long timedOut;
+	private LatencySnapshot sweepDuration;
+	private LatencySnapshot lag;
+}
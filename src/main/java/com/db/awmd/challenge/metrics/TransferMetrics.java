@@ -0,0 +1,73 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * The latency of every stage of a transfer: the validation and persistence of the request, the wait in the debit, credit
+ * and notification thread pools, and the debit, credit and notification themselves.
+ *
+ * NOTE: In a production deployment, the histograms would be exported to the monitoring system instead of being only
+ * exposed on GET /v1/metrics.
+ * @author sinkar
+ *
+ */
+@Component
+public class TransferMetrics {
+
+	public enum Stage {
+		VALIDATION, PERSISTENCE, DEBIT_QUEUE, DEBIT, CREDIT_QUEUE, CREDIT, NOTIFICATION_QUEUE, NOTIFICATION
+	}
+
+	private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+	private final Map<Stage, List<LongConsumer>> listeners = new EnumMap<>(Stage.class);
+
+	public TransferMetrics() {
+		for(Stage stage : Stage.values()) {
+			latencies.put(stage, new LatencyHistogram());
+			listeners.put(stage, new CopyOnWriteArrayList<>());
+		}
+	}
+
+	/**
+	 * Registers a listener of every latency recorded for a stage, e.g. to react to a queue building up.
+	 * @param stage The stage of the transfer.
+	 * @param listener Called with the latency in nanoseconds, on the thread recording it; it must be quick.
+	 */
+	public void addListener(Stage stage, LongConsumer listener) {
+		listeners.get(stage).add(listener);
+	}
+
+	/**
+	 * Records the latency of a stage which started at the given time.
+	 * @param stage The stage of the transfer.
+	 * @param startNanos The {@link System#nanoTime()} at which the stage started.
+	 */
+	public void record(Stage stage, long startNanos) {
+		long latencyNanos = System.nanoTime() - startNanos;
+		latencies.get(stage).record(latencyNanos);
+		for(LongConsumer listener : listeners.get(stage))
+			listener.accept(latencyNanos);
+	}
+
+	/**
+	 * @return The latencies recorded for every stage since the start, in the order of the stages.
+	 */
+	public Map<Stage, LatencySnapshot> getLatencies() {
+		Map<Stage, LatencySnapshot> snapshots = new LinkedHashMap<>();
+		for(Map.Entry<Stage, LatencyHistogram> latency : latencies.entrySet())
+			snapshots.put(latency.getKey(), latency.getValue().snapshot());
+		return snapshots;
+	}
+
+	public void reset() {
+		for(LatencyHistogram latency : latencies.values())
+			latency.reset();
+	}
+}
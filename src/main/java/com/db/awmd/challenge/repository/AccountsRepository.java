@@ -1,18 +1,62 @@
 package com.db.awmd.challenge.repository;
 
+import java.math.BigDecimal;
+import java.util.List;
+
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.TransactionDO;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.exception.TransferError;
 
 public interface AccountsRepository {
 
+  // Selects the implementation: 'decimal' (default, BigDecimal balances), 'fixed-point' (long balances in minor units),
+  // 'off-heap' (minor units in direct memory) or 'journaled' (durable BigDecimal balances).
+  String BALANCE_MODE_PROPERTY = "accounts.balance-mode";
+
   void createAccount(Account account) throws DuplicateAccountIdException;
 
   Account getAccount(String accountId);
   
-  void debitAccountForTransaction(TransactionDO transactionDO);
+  /**
+   * Debits the amount of a transaction from its source account, unless the balance is too low or the transaction was
+   * debited earlier. An expected failure is returned rather than thrown.
+   * @param transactionDO The transaction to debit.
+   * @return true if the account was debited.
+   */
+  boolean tryDebitAccountForTransaction(TransactionDO transactionDO);
+
+  /**
+   * Debits the amount of a transaction from its source account.
+   * @param transactionDO The transaction to debit.
+   * @throws ResourceException if the balance is too low or the transaction was debited earlier.
+   */
+  default void debitAccountForTransaction(TransactionDO transactionDO) {
+    if (!tryDebitAccountForTransaction(transactionDO))
+      throw TransferError.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT.failure(transactionDO.getSourceAccountId(), transactionDO.getTargetAccountId(), transactionDO.getAmount());
+  }
   
   void creditAccountForTransaction(TransactionDO transactionDO);
 
+  /**
+   * Credits the amounts of several transactions to their common target account, as a single balance update where the
+   * implementation supports it. The transactions credited earlier are skipped.
+   * @param transactionDOs The transactions, all with the same target account.
+   */
+  default void creditAccountForTransactions(List<TransactionDO> transactionDOs) {
+    for (TransactionDO transactionDO : transactionDOs)
+      creditAccountForTransaction(transactionDO);
+  }
+
   void clearAccounts();
+
+  /**
+   * Checks whether the amount can be debited/credited by this repository without loss of precision.
+   * @param amount The amount of a transfer.
+   * @return true if the amount is supported.
+   */
+  default boolean isValidTransferAmount(BigDecimal amount) {
+    return true;
+  }
 }
\ No newline at end of file
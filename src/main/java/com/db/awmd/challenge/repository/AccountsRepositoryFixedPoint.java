@@ -0,0 +1,148 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.idempotency.IdempotencyStore;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.util.MinorUnits;
+
+/**
+ * In-memory accounts repository which keeps the balance of every account as a primitive long of minor units (paise).
+ * Debits and credits are a single map lookup followed by a compare-and-set on the balance, so no BigDecimal is allocated
+ * for the new balance and a debit can never take the balance below zero even without an external lock.
+ *
+ * It is enabled with 'accounts.balance-mode=fixed-point'. The accounts returned by {@link #getAccount(String)} are snapshots
+ * whose balance is converted back to a BigDecimal, so the JSON representation of the Account does not change.
+ * @author sinkar
+ *
+ */
+@Repository
+@ConditionalOnProperty(name = AccountsRepository.BALANCE_MODE_PROPERTY, havingValue = "fixed-point")
+public class AccountsRepositoryFixedPoint implements AccountsRepository {
+
+	private final Map<String, AccountBalance> accounts = new ConcurrentHashMap<>();
+	
+	// The checks for transaction ids would be used for idempotent behavior of re-play of events for debit/credit in event based system.
+	private final TransactionIdempotency transactionIdempotency;
+	private final IdempotencyStore debitedTransactions;
+	private final IdempotencyStore creditedTransactions;
+	
+	@Autowired
+	public AccountsRepositoryFixedPoint(TransactionIdempotency transactionIdempotency) {
+		this.transactionIdempotency = transactionIdempotency;
+		this.debitedTransactions = transactionIdempotency.getDebitedTransactions();
+		this.creditedTransactions = transactionIdempotency.getCreditedTransactions();
+	}
+	
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		if(!MinorUnits.isRepresentable(account.getBalance()))
+			throw new IllegalArgumentException("Balance " + account.getBalance() + " of account " + account.getAccountId() + " cannot be represented in minor units");
+		
+		AccountBalance previousAccount = accounts.putIfAbsent(account.getAccountId(), new AccountBalance(MinorUnits.toMinorUnits(account.getBalance())));
+		if (previousAccount != null) {
+			throw new DuplicateAccountIdException(
+				"Account id " + account.getAccountId() + " already exists!");
+		}
+	}
+	
+	@Override
+	public Account getAccount(String accountId) {
+		AccountBalance accountBalance = accounts.get(accountId);
+		if(accountBalance == null)
+			return null;
+		return new Account(accountId, MinorUnits.toBigDecimal(accountBalance.minorUnits));
+	}
+	
+	@Override
+	public void clearAccounts() {
+		accounts.clear();
+		transactionIdempotency.clear();
+	}
+	
+	@Override
+	public boolean isValidTransferAmount(BigDecimal amount) {
+		return MinorUnits.isRepresentable(amount);
+	}
+	
+	/**
+	 * Debits the source account unless the transaction was debited earlier.
+	 * The balance is debited before the transaction id is claimed, so that the id is only ever claimed by a debit which is
+	 * applied, e.g. for the sweeper to tell whether a transaction was debited: a replayed debit racing with the original one
+	 * gives its amount back once it fails to claim the id.
+	 */
+	@Override
+	public boolean tryDebitAccountForTransaction(TransactionDO transactionDO) {
+		String transactionId = transactionDO.getTransactionId();
+		if(debitedTransactions.contains(transactionId))
+			return false;
+		
+		AccountBalance accountBalance = accounts.get(transactionDO.getSourceAccountId());
+		long amount = MinorUnits.toMinorUnits(transactionDO.getAmount());
+		if(!accountBalance.debit(amount))
+			return false;
+		if(!debitedTransactions.tryClaim(transactionId)) {
+			accountBalance.credit(amount);
+			return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public void creditAccountForTransaction(TransactionDO transactionDO) {
+		if(creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+			accounts.get(transactionDO.getTargetAccountId()).credit(MinorUnits.toMinorUnits(transactionDO.getAmount()));
+	}
+	
+	@Override
+	public void creditAccountForTransactions(List<TransactionDO> transactionDOs) {
+		long creditedAmount = 0;
+		for(TransactionDO transactionDO : transactionDOs) {
+			if(creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+				creditedAmount = Math.addExact(creditedAmount, MinorUnits.toMinorUnits(transactionDO.getAmount()));
+		}
+		accounts.get(transactionDOs.get(0).getTargetAccountId()).credit(creditedAmount);
+	}
+	
+	/**
+	 * Mutable holder of an account balance, updated with compare-and-set.
+	 */
+	private static final class AccountBalance {
+		
+		private static final AtomicLongFieldUpdater<AccountBalance> MINOR_UNITS = AtomicLongFieldUpdater.newUpdater(AccountBalance.class, "minorUnits");
+		
+		private volatile long minorUnits;
+		
+		AccountBalance(long minorUnits) {
+			this.minorUnits = minorUnits;
+		}
+		
+		boolean debit(long amount) {
+			long current;
+			do {
+				current = minorUnits;
+				if(current < amount)
+					return false;
+			}while(!MINOR_UNITS.compareAndSet(this, current, current - amount));
+			return true;
+		}
+		
+		void credit(long amount) {
+			long current;
+			do {
+				current = minorUnits;
+			}while(!MINOR_UNITS.compareAndSet(this, current, Math.addExact(current, amount)));
+		}
+	}
+}
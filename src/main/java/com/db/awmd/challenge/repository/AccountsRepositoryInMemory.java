@@ -1,31 +1,39 @@
 package com.db.awmd.challenge.repository;
 
 import java.math.BigDecimal;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.TransactionDO;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
-import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.idempotency.IdempotencyStore;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
 
 @Repository
+@ConditionalOnProperty(name = AccountsRepository.BALANCE_MODE_PROPERTY, havingValue = "decimal", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
   private final Map<String, Account> accounts = new ConcurrentHashMap<>();
   
-  //  In a production deployment, it would be implemented using a distributed Cache backed by persistance
   // The checks for transaction ids would be used for idempotent behavior of re-play of events for debit/credit in event based system.
-  // Access to below data is a layer of cache for performance over the actual repository.
-  // The cache would have a life span typically, lets say 1 hour to handle any replay.
-  private Set<String> activeDebitTransactionSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
-  private Set<String> activeCreditTransactionSet = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  // The ids are remembered for a limited time (1 hour by default) to handle any replay.
+  private final TransactionIdempotency transactionIdempotency;
+  private final IdempotencyStore debitedTransactions;
+  private final IdempotencyStore creditedTransactions;
+
+  @Autowired
+  public AccountsRepositoryInMemory(TransactionIdempotency transactionIdempotency) {
+    this.transactionIdempotency = transactionIdempotency;
+    this.debitedTransactions = transactionIdempotency.getDebitedTransactions();
+    this.creditedTransactions = transactionIdempotency.getCreditedTransactions();
+  }
 	
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
@@ -41,9 +49,17 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
     return accounts.get(accountId);
   }
 
+  /**
+   * @return a live view of all the accounts, used for taking snapshots of the balances.
+   */
+  Collection<Account> getAllAccounts() {
+    return accounts.values();
+  }
+
   @Override
   public void clearAccounts() {
     accounts.clear();
+    transactionIdempotency.clear();
   }
 
   	
@@ -55,13 +71,14 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 	 * 	their transaction history from that table. The table would be responsible for maintaining both credit and debit transaction history.
 	 * The checks for transaction ids would be used for idempotent behavior of re-play of events for debit/credit in evolved event based system.
 	 */
-	public void debitAccountForTransaction(TransactionDO transactionDO) {
-		if(!activeDebitTransactionSet.contains(transactionDO.getTransactionId()) && accounts.get(transactionDO.getSourceAccountId()).getBalance().compareTo(transactionDO.getAmount()) >= 0) {
-			activeDebitTransactionSet.add(transactionDO.getTransactionId());
-			BigDecimal newBalance = accounts.get(transactionDO.getSourceAccountId()).getBalance().subtract(transactionDO.getAmount());
-			accounts.get(transactionDO.getSourceAccountId()).setBalance(newBalance);
-		}else
-			throw new ResourceException("Insufficient funds in account: " + transactionDO.getSourceAccountId() + " for transaction " + transactionDO.getTransactionId(), HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT);
+	public boolean tryDebitAccountForTransaction(TransactionDO transactionDO) {
+		Account sourceAccount = accounts.get(transactionDO.getSourceAccountId());
+		if(sourceAccount.getBalance().compareTo(transactionDO.getAmount()) >= 0 && debitedTransactions.tryClaim(transactionDO.getTransactionId())) {
+			BigDecimal newBalance = sourceAccount.getBalance().subtract(transactionDO.getAmount());
+			sourceAccount.setBalance(newBalance);
+			return true;
+		}
+		return false;
 	}
 	
 	@Override
@@ -73,10 +90,22 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 	 * The checks for transaction ids would be used for idempotent behavior of re-play of events for debit/credit in evolved event based system.
 	 */
 	public void creditAccountForTransaction(TransactionDO transactionDO) {
-		if(!activeCreditTransactionSet.contains(transactionDO.getTransactionId())) {
-			activeCreditTransactionSet.add(transactionDO.getTransactionId());
-			BigDecimal newBalance = accounts.get(transactionDO.getTargetAccountId()).getBalance().add(transactionDO.getAmount());
-			accounts.get(transactionDO.getTargetAccountId()).setBalance(newBalance);
+		if(creditedTransactions.tryClaim(transactionDO.getTransactionId())) {
+			Account targetAccount = accounts.get(transactionDO.getTargetAccountId());
+			BigDecimal newBalance = targetAccount.getBalance().add(transactionDO.getAmount());
+			targetAccount.setBalance(newBalance);
+		}
+	}
+	
+	@Override
+	public void creditAccountForTransactions(List<TransactionDO> transactionDOs) {
+		BigDecimal creditedAmount = BigDecimal.ZERO;
+		for(TransactionDO transactionDO : transactionDOs) {
+			if(creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+				creditedAmount = creditedAmount.add(transactionDO.getAmount());
 		}
+		
+		Account targetAccount = accounts.get(transactionDOs.get(0).getTargetAccountId());
+		targetAccount.setBalance(targetAccount.getBalance().add(creditedAmount));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,471 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.concurrent.AccountLockStripes;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.idempotency.IdempotencyStore;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.journal.WriteAheadJournal;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable implementation of the Accounts repository with BigDecimal balances, which restarts from a snapshot of the
+ * balances plus the tail of a journal instead of replaying the whole history of debits and credits.
+ *
+ * Every account creation, debit and credit is appended to a write-ahead journal before it is applied in memory. The
+ * balance and the transaction id of a debit/credit are checked first, and only the debits/credits which are then applied
+ * are journaled, so that replaying the journal does not depend on the ids claimed in memory before the restart. The
+ * checks, the journal append and the in-memory update are done under a lock striped over the accountId, and every account
+ * remembers the LSN of the last record applied to it.
+ * A snapshot is taken periodically ('accounts.snapshot.interval-seconds') without pausing transfers: it notes the last
+ * LSN appended when it starts, then copies the balance and last applied LSN of one account at a time under that
+ * account's lock. Records appended before the start are already applied to every account it copies, so after the
+ * snapshot is written the journal only keeps the records after that LSN. An account is only created under the read side
+ * of a lock whose write side is held while that LSN is noted, so a CREATE record it covers is always for an account in the
+ * map. On start-up, the snapshot is memory-mapped and
+ * loaded, and the remaining journal records are replayed, skipping those already applied to the account in the snapshot.
+ *
+ * The snapshot also holds the ids of the transactions debited/credited within the idempotency time-to-live, noted after
+ * its LSN: with the ids of the journal records replayed, they are claimed again on start-up. So a debit or credit applied
+ * before a restart is still known as applied afterwards, e.g. to the {@link com.db.awmd.challenge.engine.StuckTransferSweeper}
+ * deciding whether a transaction recovered IN_PROGRESS was debited.
+ *
+ * It is enabled with 'accounts.balance-mode=journaled'.
+ * NOTE: In a production deployment, the idempotency checks would be backed by their own persistent store.
+ * @author sinkar
+ *
+ */
+@Repository
+@ConditionalOnProperty(name = AccountsRepository.BALANCE_MODE_PROPERTY, havingValue = "journaled")
+@Slf4j
+public class AccountsRepositoryJournaled extends AccountsRepositoryInMemory implements DisposableBean {
+
+	private static final byte CREATE_RECORD = 1;
+	private static final byte DEBIT_RECORD = 2;
+	private static final byte CREDIT_RECORD = 3;
+
+	private static final int SNAPSHOT_MAGIC = 0x41434E54;
+	private static final int SNAPSHOT_VERSION = 2;
+	private static final byte SNAPSHOT_ACCOUNT = 1;
+	private static final byte SNAPSHOT_DEBITED = 2;
+	private static final byte SNAPSHOT_CREDITED = 3;
+	private static final byte SNAPSHOT_END = 0;
+
+	private final WriteAheadJournal journal;
+	private final Path snapshotFile;
+	private final AccountLockStripes accountLocks = new AccountLockStripes(1024);
+	private final IdempotencyStore debitedTransactions;
+	private final IdempotencyStore creditedTransactions;
+	// Read locked while an account creation is appended and applied, write locked while a snapshot notes its LSN.
+	private final ReentrantReadWriteLock creationLock = new ReentrantReadWriteLock();
+
+	// LSN of the last journal record applied to each account, guarded by the account's lock stripe.
+	private final Map<String, Long> appliedLsns = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService snapshotScheduler;
+
+	// Guarded by 'this'
+	private long lastSnapshotLsn;
+
+	@Autowired
+	public AccountsRepositoryJournaled(@Value("${accounts.journal.file:data/accounts.wal}") String journalFile,
+			@Value("${accounts.journal.group-commit:true}") boolean groupCommit,
+			@Value("${accounts.snapshot.file:data/accounts.snapshot}") String snapshotFile,
+			@Value("${accounts.snapshot.interval-seconds:300}") long snapshotIntervalSeconds,
+			TransactionIdempotency transactionIdempotency) throws IOException {
+		super(transactionIdempotency);
+		this.debitedTransactions = transactionIdempotency.getDebitedTransactions();
+		this.creditedTransactions = transactionIdempotency.getCreditedTransactions();
+		long startTime = System.nanoTime();
+		this.snapshotFile = Paths.get(snapshotFile);
+		this.journal = new WriteAheadJournal(Paths.get(journalFile), groupCommit);
+
+		int snapshotAccounts = 0;
+		if(Files.exists(this.snapshotFile))
+			snapshotAccounts = loadSnapshot();
+		long snapshotTime = System.nanoTime();
+
+		journal.advanceTo(lastSnapshotLsn);
+		int[] replayedRecords = new int[1];
+		journal.replay(lastSnapshotLsn + 1, (lsn, payload) -> {
+			replayedRecords[0]++;
+			applyRecord(lsn, payload);
+		});
+		long readyTime = System.nanoTime();
+		log.info("Accounts ready in {} ms: {} accounts loaded from snapshot {} at lsn {} in {} ms, {} journal records replayed from {} in {} ms",
+				TimeUnit.NANOSECONDS.toMillis(readyTime - startTime), snapshotAccounts, snapshotFile, lastSnapshotLsn,
+				TimeUnit.NANOSECONDS.toMillis(snapshotTime - startTime), replayedRecords[0], journalFile,
+				TimeUnit.NANOSECONDS.toMillis(readyTime - snapshotTime));
+
+		if(snapshotIntervalSeconds > 0) {
+			snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "accountsSnapshot");
+				thread.setDaemon(true);
+				return thread;
+			});
+			snapshotScheduler.scheduleWithFixedDelay(this::takeScheduledSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+		}else
+			snapshotScheduler = null;
+	}
+
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		ReentrantLock lock = accountLocks.lockFor(account.getAccountId());
+		creationLock.readLock().lock();
+		lock.lock();
+		try {
+			if(super.getAccount(account.getAccountId()) != null) {
+				throw new DuplicateAccountIdException(
+					"Account id " + account.getAccountId() + " already exists!");
+			}
+			long lsn = journal.appendAndSync(encode(CREATE_RECORD, account.getAccountId(), null, account.getBalance()));
+			super.createAccount(account);
+			appliedLsns.put(account.getAccountId(), lsn);
+		}finally {
+			lock.unlock();
+			creationLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * A debit refused for insufficient funds, or because its transaction id was claimed already (a replay, or a job timed
+	 * out by the sweeper), is not journaled: every debit record is applied on replay, whatever the ids claimed.
+	 */
+	@Override
+	public boolean tryDebitAccountForTransaction(TransactionDO transactionDO) {
+		ReentrantLock lock = accountLocks.lockFor(transactionDO.getSourceAccountId());
+		lock.lock();
+		try {
+			Account sourceAccount = super.getAccount(transactionDO.getSourceAccountId());
+			if(sourceAccount.getBalance().compareTo(transactionDO.getAmount()) < 0 || !debitedTransactions.tryClaim(transactionDO.getTransactionId()))
+				return false;
+
+			long lsn = appendClaimed(debitedTransactions, transactionDO.getTransactionId(),
+					encode(DEBIT_RECORD, transactionDO.getSourceAccountId(), transactionDO.getTransactionId(), transactionDO.getAmount()));
+			appliedLsns.put(transactionDO.getSourceAccountId(), lsn);
+			sourceAccount.setBalance(sourceAccount.getBalance().subtract(transactionDO.getAmount()));
+			return true;
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void creditAccountForTransaction(TransactionDO transactionDO) {
+		ReentrantLock lock = accountLocks.lockFor(transactionDO.getTargetAccountId());
+		lock.lock();
+		try {
+			if(!creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+				return;
+
+			long lsn = appendClaimed(creditedTransactions, transactionDO.getTransactionId(),
+					encode(CREDIT_RECORD, transactionDO.getTargetAccountId(), transactionDO.getTransactionId(), transactionDO.getAmount()));
+			appliedLsns.put(transactionDO.getTargetAccountId(), lsn);
+			Account targetAccount = super.getAccount(transactionDO.getTargetAccountId());
+			targetAccount.setBalance(targetAccount.getBalance().add(transactionDO.getAmount()));
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The credit records of all the transactions not credited yet are appended first, so they are made durable together.
+	 */
+	@Override
+	public void creditAccountForTransactions(List<TransactionDO> transactionDOs) {
+		String targetAccountId = transactionDOs.get(0).getTargetAccountId();
+		ReentrantLock lock = accountLocks.lockFor(targetAccountId);
+		lock.lock();
+		try {
+			List<TransactionDO> claimedTransactionDOs = new ArrayList<>(transactionDOs.size());
+			for(TransactionDO transactionDO : transactionDOs) {
+				if(creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+					claimedTransactionDOs.add(transactionDO);
+			}
+			if(claimedTransactionDOs.isEmpty())
+				return;
+
+			long lsn = 0;
+			BigDecimal creditedAmount = BigDecimal.ZERO;
+			try {
+				for(TransactionDO transactionDO : claimedTransactionDOs) {
+					lsn = journal.append(encode(CREDIT_RECORD, targetAccountId, transactionDO.getTransactionId(), transactionDO.getAmount()));
+					creditedAmount = creditedAmount.add(transactionDO.getAmount());
+				}
+				journal.awaitDurable(lsn);
+			}catch(RuntimeException e) {
+				for(TransactionDO transactionDO : claimedTransactionDOs)
+					creditedTransactions.release(transactionDO.getTransactionId());
+				throw e;
+			}
+			appliedLsns.put(targetAccountId, lsn);
+			Account targetAccount = super.getAccount(targetAccountId);
+			targetAccount.setBalance(targetAccount.getBalance().add(creditedAmount));
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public synchronized void clearAccounts() {
+		try {
+			journal.reset();
+			Files.deleteIfExists(snapshotFile);
+		}catch(IOException e) {
+			throw new UncheckedIOException("Failed to reset the accounts journal", e);
+		}
+		appliedLsns.clear();
+		super.clearAccounts();
+	}
+
+	/**
+	 * Writes a snapshot of all the balances and discards the journal records covered by it.
+	 * Transfers keep running while the snapshot is taken; each account is only locked while its balance is copied.
+	 * @throws IOException If the snapshot cannot be written.
+	 */
+	public synchronized void takeSnapshot() throws IOException {
+		long startTime = System.currentTimeMillis();
+		// No account creation is between its append and its put, so every CREATE record up to this LSN is for an account
+		// which the iteration below sees. The creations appended later are kept in the journal.
+		long snapshotLsn;
+		creationLock.writeLock().lock();
+		try {
+			snapshotLsn = journal.getLastAppendedLsn();
+		}finally {
+			creationLock.writeLock().unlock();
+		}
+
+		Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+		if(snapshotFile.getParent() != null)
+			Files.createDirectories(snapshotFile.getParent());
+
+		int accountCount = 0;
+		CRC32 crc = new CRC32();
+		try(FileOutputStream file = new FileOutputStream(temporaryFile.toFile());
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeLong(snapshotLsn);
+			for(Account account : getAllAccounts()) {
+				BigDecimal balance;
+				long appliedLsn;
+				ReentrantLock lock = accountLocks.lockFor(account.getAccountId());
+				lock.lock();
+				try {
+					balance = account.getBalance();
+					appliedLsn = appliedLsns.getOrDefault(account.getAccountId(), 0L);
+				}finally {
+					lock.unlock();
+				}
+
+				out.writeByte(SNAPSHOT_ACCOUNT);
+				writeString(out, account.getAccountId());
+				out.writeLong(appliedLsn);
+				writeAmount(out, balance);
+				accountCount++;
+			}
+			// A claim missed here was taken after the LSN was noted, so its record is in the journal tail.
+			writeClaims(out, SNAPSHOT_DEBITED, debitedTransactions);
+			writeClaims(out, SNAPSHOT_CREDITED, creditedTransactions);
+			out.writeByte(SNAPSHOT_END);
+			out.flush();
+			// The checksum covers everything before it and is written outside of the checked stream.
+			new DataOutputStream(file).writeLong(crc.getValue());
+			file.getFD().sync();
+		}
+		Files.move(temporaryFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		lastSnapshotLsn = snapshotLsn;
+
+		journal.discardBefore(snapshotLsn + 1);
+		log.info("Snapshot of {} accounts at lsn {} written to {} in {} ms", accountCount, snapshotLsn, snapshotFile, System.currentTimeMillis() - startTime);
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if(snapshotScheduler != null)
+			snapshotScheduler.shutdownNow();
+		// A snapshot on shutdown leaves nothing to replay on the next start.
+		takeSnapshot();
+		journal.close();
+	}
+
+	private synchronized void takeScheduledSnapshot() {
+		try {
+			if(journal.getLastAppendedLsn() > lastSnapshotLsn)
+				takeSnapshot();
+		}catch(IOException | RuntimeException e) {
+			log.error("Failed to take a snapshot of the accounts", e);
+		}
+	}
+
+	/**
+	 * Loads the memory-mapped snapshot file.
+	 * @return The number of accounts loaded.
+	 */
+	private int loadSnapshot() throws IOException {
+		try(FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+			MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			ByteBuffer content = snapshot.duplicate();
+			content.limit(snapshot.capacity() - 8);
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			// A version 1 snapshot has no transaction ids.
+			if(snapshot.getInt(0) != SNAPSHOT_MAGIC || snapshot.getInt(4) < 1 || snapshot.getInt(4) > SNAPSHOT_VERSION || crc.getValue() != snapshot.getLong(snapshot.capacity() - 8))
+				throw new IOException("Accounts snapshot " + snapshotFile + " is corrupt");
+
+			snapshot.position(8);
+			lastSnapshotLsn = snapshot.getLong();
+			int accountCount = 0;
+			byte entryType;
+			while((entryType = snapshot.get()) != SNAPSHOT_END) {
+				if(entryType == SNAPSHOT_ACCOUNT) {
+					String accountId = readString(snapshot);
+					long appliedLsn = snapshot.getLong();
+					super.createAccount(new Account(accountId, readAmount(snapshot)));
+					appliedLsns.put(accountId, appliedLsn);
+					accountCount++;
+				}else if(entryType == SNAPSHOT_DEBITED)
+					debitedTransactions.tryClaim(readString(snapshot));
+				else if(entryType == SNAPSHOT_CREDITED)
+					creditedTransactions.tryClaim(readString(snapshot));
+				else
+					throw new IOException("Accounts snapshot " + snapshotFile + " has an unknown entry " + entryType);
+			}
+			return accountCount;
+		}
+	}
+
+	/**
+	 * Appends and syncs the record of a debit/credit whose transaction id has just been claimed. The claim is released if
+	 * the record cannot be journaled, so that the debit/credit can be retried.
+	 */
+	private long appendClaimed(IdempotencyStore claims, String transactionId, byte[] record) {
+		try {
+			return journal.appendAndSync(record);
+		}catch(RuntimeException e) {
+			claims.release(transactionId);
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies a journal record during start-up, unless the snapshot already contains it.
+	 */
+	private void applyRecord(long lsn, ByteBuffer payload) {
+		byte recordType = payload.get();
+		String accountId = readString(payload);
+		String transactionId = readString(payload);
+		BigDecimal amount = readAmount(payload);
+		if(lsn <= appliedLsns.getOrDefault(accountId, 0L) || (recordType != CREATE_RECORD && super.getAccount(accountId) == null))
+			return;
+		appliedLsns.put(accountId, lsn);
+
+		if(recordType == CREATE_RECORD) {
+			super.createAccount(new Account(accountId, amount));
+			return;
+		}
+
+		// Only the debits/credits which were applied are journaled, so they are applied again, even though the snapshot may
+		// have claimed their transaction ids already.
+		Account account = super.getAccount(accountId);
+		if(recordType == DEBIT_RECORD) {
+			debitedTransactions.tryClaim(transactionId);
+			account.setBalance(account.getBalance().subtract(amount));
+		}else {
+			creditedTransactions.tryClaim(transactionId);
+			account.setBalance(account.getBalance().add(amount));
+		}
+	}
+
+	private static void writeClaims(DataOutputStream out, byte entryType, IdempotencyStore claims) throws IOException {
+		try {
+			claims.forEach(transactionId -> {
+				try {
+					out.writeByte(entryType);
+					writeString(out, transactionId);
+				}catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static byte[] encode(byte recordType, String accountId, String transactionId, BigDecimal amount) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try(DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(recordType);
+			writeString(out, accountId);
+			writeString(out, transactionId == null ? "" : transactionId);
+			writeAmount(out, amount);
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getShort() & 0xFFFF];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeAmount(DataOutputStream out, BigDecimal amount) throws IOException {
+		byte[] unscaledAmount = amount.unscaledValue().toByteArray();
+		out.writeInt(amount.scale());
+		out.writeShort(unscaledAmount.length);
+		out.write(unscaledAmount);
+	}
+
+	private static BigDecimal readAmount(ByteBuffer in) {
+		int scale = in.getInt();
+		byte[] unscaledAmount = new byte[in.getShort()];
+		in.get(unscaledAmount);
+		return new BigDecimal(new BigInteger(unscaledAmount), scale);
+	}
+}
@@ -0,0 +1,285 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.concurrent.AccountLockStripes;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.idempotency.IdempotencyStore;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.util.MinorUnits;
+
+/**
+ * Accounts repository meant for tens of millions of accounts, which keeps the accounts outside of the java heap.
+ * Every account occupies one fixed-width slot in direct (off-heap) memory:
+ * <pre>
+ *  | balance in minor units (8 bytes) | accountId length (1 byte) | accountId UTF-8 bytes (up to 'max-account-id-length') |
+ * </pre>
+ * The slots are allocated in chunks, so adding accounts never copies existing ones.
+ * The accountId to slot index is an open addressing hash table of ints, so the heap cost per account is about 8 bytes
+ * instead of an Account object, a BigDecimal and a ConcurrentHashMap node.
+ *
+ * Balances are updated under a lock striped over the slot index; accounts are created under the repository monitor, which
+ * is not on the transfer path. It is enabled with 'accounts.balance-mode=off-heap'.
+ * @author sinkar
+ *
+ */
+@Repository
+@ConditionalOnProperty(name = AccountsRepository.BALANCE_MODE_PROPERTY, havingValue = "off-heap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+	private static final int BALANCE_OFFSET = 0;
+	private static final int ID_LENGTH_OFFSET = 8;
+	private static final int ID_OFFSET = 9;
+
+	// The index table is grown once it is half full, which keeps the probe sequences short.
+	private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+	private final int maxAccountIdLength;
+	private final int slotSize;
+	private final int slotsPerChunk;
+	private final AccountLockStripes slotLocks = new AccountLockStripes(1024);
+
+	// Chunks of slots. Only the reference array is copied when a chunk is added.
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+	// Open addressing table of (slot index + 1), 0 marks an empty entry. Readers never lock; a new table is published on growth.
+	private volatile AtomicIntegerArray index = new AtomicIntegerArray(INITIAL_INDEX_CAPACITY);
+
+	// Guarded by 'this'
+	private int accountCount;
+
+	// The checks for transaction ids would be used for idempotent behavior of re-play of events for debit/credit in event based system.
+	private final TransactionIdempotency transactionIdempotency;
+	private final IdempotencyStore debitedTransactions;
+	private final IdempotencyStore creditedTransactions;
+
+	@Autowired
+	public AccountsRepositoryOffHeap(@Value("${accounts.off-heap.max-account-id-length:23}") int maxAccountIdLength,
+			@Value("${accounts.off-heap.slots-per-chunk:1048576}") int slotsPerChunk, TransactionIdempotency transactionIdempotency) {
+		if(maxAccountIdLength <= 0 || maxAccountIdLength > 255)
+			throw new IllegalArgumentException("Maximum account id length must be between 1 and 255 bytes: " + maxAccountIdLength);
+		if(slotsPerChunk <= 0)
+			throw new IllegalArgumentException("Number of slots per chunk must be positive: " + slotsPerChunk);
+
+		this.maxAccountIdLength = maxAccountIdLength;
+		// Round up to a multiple of 8 so that the balance of every slot is aligned.
+		this.slotSize = (ID_OFFSET + maxAccountIdLength + 7) & ~7;
+		this.slotsPerChunk = slotsPerChunk;
+		this.transactionIdempotency = transactionIdempotency;
+		this.debitedTransactions = transactionIdempotency.getDebitedTransactions();
+		this.creditedTransactions = transactionIdempotency.getCreditedTransactions();
+	}
+
+	@Override
+	public synchronized void createAccount(Account account) throws DuplicateAccountIdException {
+		byte[] accountId = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+		if(accountId.length > maxAccountIdLength)
+			throw new IllegalArgumentException("Account id " + account.getAccountId() + " is longer than " + maxAccountIdLength + " bytes");
+		if(!MinorUnits.isRepresentable(account.getBalance()))
+			throw new IllegalArgumentException("Balance " + account.getBalance() + " of account " + account.getAccountId() + " cannot be represented in minor units");
+
+		if(findSlot(account.getAccountId()) >= 0) {
+			throw new DuplicateAccountIdException(
+				"Account id " + account.getAccountId() + " already exists!");
+		}
+
+		int slot = accountCount;
+		if(slot / slotsPerChunk == chunks.length) {
+			ByteBuffer[] grownChunks = Arrays.copyOf(chunks, chunks.length + 1);
+			grownChunks[chunks.length] = ByteBuffer.allocateDirect(slotsPerChunk * slotSize);
+			chunks = grownChunks;
+		}
+
+		ByteBuffer chunk = chunkOf(slot);
+		int offset = offsetOf(slot);
+		chunk.putLong(offset + BALANCE_OFFSET, MinorUnits.toMinorUnits(account.getBalance()));
+		chunk.put(offset + ID_LENGTH_OFFSET, (byte) accountId.length);
+		for(int i = 0; i < accountId.length; i++)
+			chunk.put(offset + ID_OFFSET + i, accountId[i]);
+
+		if((accountCount + 1) * 2 > index.length())
+			index = rehash(index.length() * 2);
+		// The volatile write publishes the slot contents written above to the readers of the index.
+		insert(index, account.getAccountId().hashCode(), slot);
+		accountCount++;
+	}
+
+	@Override
+	public Account getAccount(String accountId) {
+		int slot = findSlot(accountId);
+		if(slot < 0)
+			return null;
+
+		ReentrantLock lock = slotLocks.lockFor(slot);
+		lock.lock();
+		try {
+			return new Account(accountId, MinorUnits.toBigDecimal(chunkOf(slot).getLong(offsetOf(slot) + BALANCE_OFFSET)));
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public synchronized void clearAccounts() {
+		accountCount = 0;
+		index = new AtomicIntegerArray(INITIAL_INDEX_CAPACITY);
+		// The direct memory of the dropped chunks is released once the buffers are garbage collected.
+		chunks = new ByteBuffer[0];
+		transactionIdempotency.clear();
+	}
+
+	@Override
+	public boolean isValidTransferAmount(BigDecimal amount) {
+		return MinorUnits.isRepresentable(amount);
+	}
+
+	/**
+	 * Debits the source account unless the transaction was debited earlier.
+	 * The transaction id is claimed under the lock of the account, once the balance is known to cover the debit, so that the
+	 * id is only ever claimed by a debit which is applied, e.g. for the sweeper to tell whether a transaction was debited.
+	 */
+	@Override
+	public boolean tryDebitAccountForTransaction(TransactionDO transactionDO) {
+		String transactionId = transactionDO.getTransactionId();
+		long amount = MinorUnits.toMinorUnits(transactionDO.getAmount());
+		int slot = findSlot(transactionDO.getSourceAccountId());
+		ByteBuffer chunk = chunkOf(slot);
+		int balanceOffset = offsetOf(slot) + BALANCE_OFFSET;
+
+		ReentrantLock lock = slotLocks.lockFor(slot);
+		lock.lock();
+		try {
+			long balance = chunk.getLong(balanceOffset);
+			if(balance < amount || !debitedTransactions.tryClaim(transactionId))
+				return false;
+			chunk.putLong(balanceOffset, balance - amount);
+			return true;
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void creditAccountForTransaction(TransactionDO transactionDO) {
+		if(!creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+			return;
+
+		long amount = MinorUnits.toMinorUnits(transactionDO.getAmount());
+		int slot = findSlot(transactionDO.getTargetAccountId());
+		ByteBuffer chunk = chunkOf(slot);
+		int balanceOffset = offsetOf(slot) + BALANCE_OFFSET;
+
+		ReentrantLock lock = slotLocks.lockFor(slot);
+		lock.lock();
+		try {
+			chunk.putLong(balanceOffset, Math.addExact(chunk.getLong(balanceOffset), amount));
+		}finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void creditAccountForTransactions(List<TransactionDO> transactionDOs) {
+		long creditedAmount = 0;
+		for(TransactionDO transactionDO : transactionDOs) {
+			if(creditedTransactions.tryClaim(transactionDO.getTransactionId()))
+				creditedAmount = Math.addExact(creditedAmount, MinorUnits.toMinorUnits(transactionDO.getAmount()));
+		}
+		
+		int slot = findSlot(transactionDOs.get(0).getTargetAccountId());
+		ByteBuffer chunk = chunkOf(slot);
+		int balanceOffset = offsetOf(slot) + BALANCE_OFFSET;
+		
+		ReentrantLock lock = slotLocks.lockFor(slot);
+		lock.lock();
+		try {
+			chunk.putLong(balanceOffset, Math.addExact(chunk.getLong(balanceOffset), creditedAmount));
+		}finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return the slot of the account, or -1 if there is no such account.
+	 */
+	private int findSlot(String accountId) {
+		AtomicIntegerArray table = index;
+		int mask = table.length() - 1;
+		for(int i = spread(accountId.hashCode()) & mask; ; i = (i + 1) & mask) {
+			int entry = table.get(i);
+			if(entry == 0)
+				return -1;
+			if(idEquals(entry - 1, accountId))
+				return entry - 1;
+		}
+	}
+
+	private AtomicIntegerArray rehash(int capacity) {
+		AtomicIntegerArray table = new AtomicIntegerArray(capacity);
+		for(int slot = 0; slot < accountCount; slot++)
+			insert(table, readAccountId(slot).hashCode(), slot);
+		return table;
+	}
+
+	private static void insert(AtomicIntegerArray table, int hash, int slot) {
+		int mask = table.length() - 1;
+		int i = spread(hash) & mask;
+		while(table.get(i) != 0)
+			i = (i + 1) & mask;
+		table.set(i, slot + 1);
+	}
+
+	/**
+	 * Compares the accountId stored in the slot without decoding it, for the common case of ASCII account ids.
+	 */
+	private boolean idEquals(int slot, String accountId) {
+		ByteBuffer chunk = chunkOf(slot);
+		int offset = offsetOf(slot);
+		int length = chunk.get(offset + ID_LENGTH_OFFSET) & 0xFF;
+		if(length != accountId.length())
+			return length >= accountId.length() && readAccountId(slot).equals(accountId);
+
+		for(int i = 0; i < length; i++) {
+			char c = accountId.charAt(i);
+			if(c >= 0x80)
+				return readAccountId(slot).equals(accountId);
+			if(chunk.get(offset + ID_OFFSET + i) != (byte) c)
+				return false;
+		}
+		return true;
+	}
+
+	private String readAccountId(int slot) {
+		ByteBuffer chunk = chunkOf(slot);
+		int offset = offsetOf(slot);
+		byte[] accountId = new byte[chunk.get(offset + ID_LENGTH_OFFSET) & 0xFF];
+		for(int i = 0; i < accountId.length; i++)
+			accountId[i] = chunk.get(offset + ID_OFFSET + i);
+		return new String(accountId, StandardCharsets.UTF_8);
+	}
+
+	private ByteBuffer chunkOf(int slot) {
+		return chunks[slot / slotsPerChunk];
+	}
+
+	private int offsetOf(int slot) {
+		return (slot % slotsPerChunk) * slotSize;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
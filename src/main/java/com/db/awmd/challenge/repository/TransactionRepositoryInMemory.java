@@ -1,39 +1,191 @@
 package com.db.awmd.challenge.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
 import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.id.TransactionIds;
 
 /**
  * In-memory implementation of the Transaction repository to be used for this application.
+ * The transactions are keyed by their 64-bit id rather than by its string encoding.
+ *
+ * The ids are indexed by source and target account, by status, and by account and status, so a query reads only the ids
+ * of the index matching its criteria, e.g. the few jobs in flight of an account with a long history. The status indexes of
+ * a transaction are moved under the lock of its own entry in 'indexedStatuses', not a global one. A query running during
+ * the move may find the id under both statuses, so it checks the current status of every transaction it finds and skips
+ * the ids already found. The same lock makes the status updates forward-only.
+ * NOTE: In production, these would be database indexes on the transaction table.
  * @author sinkar
  *
  */
 @Repository
+@ConditionalOnProperty(name = TransactionRespository.REPOSITORY_PROPERTY, havingValue = "in-memory", matchIfMissing = true)
 public class TransactionRepositoryInMemory implements TransactionRespository {
 
-	private final Map<String, TransactionDO> transactions = new ConcurrentHashMap<>();
+	private final Map<Long, TransactionDO> transactions = new ConcurrentHashMap<>();
+	
+	private final Map<String, Set<Long>> idsByAccount = new ConcurrentHashMap<>();
+	private final Map<TransactionStatus, Set<Long>> idsByStatus = new EnumMap<>(TransactionStatus.class);
+	private final Map<String, Map<TransactionStatus, Set<Long>>> idsByAccountAndStatus = new ConcurrentHashMap<>();
+	// The status under which every transaction is indexed, which its TransactionDO no longer holds once it is updated in place.
+	private final Map<Long, TransactionStatus> indexedStatuses = new ConcurrentHashMap<>();
+	
+	public TransactionRepositoryInMemory() {
+		for(TransactionStatus status : TransactionStatus.values())
+			idsByStatus.put(status, ConcurrentHashMap.newKeySet());
+	}
 	
 	@Override
 	public void createTransaction(TransactionDO transactionDO) {
-		transactions.putIfAbsent(transactionDO.getTransactionId(), transactionDO);
+		long id = TransactionIds.parse(transactionDO.getTransactionId());
+		if(transactions.putIfAbsent(id, transactionDO) == null) {
+			indexByAccount(transactionDO.getSourceAccountId(), id);
+			indexByAccount(transactionDO.getTargetAccountId(), id);
+			indexByStatus(id, transactionDO);
+		}
 	}
 
 	@Override
 	public TransactionDO findTransactionById(String transactionJobId) {
-		return transactions.get(transactionJobId);
+		// An id which was not generated cannot belong to a transaction.
+		return TransactionIds.isValid(transactionJobId) ? transactions.get(TransactionIds.parse(transactionJobId)) : null;
+	}
+	
+	@Override
+	public List<TransactionDO> findTransactions(String accountId, Collection<TransactionStatus> statuses) {
+		Set<TransactionStatus> statusSet = statuses == null || statuses.isEmpty() ? null : EnumSet.copyOf(statuses);
+		if(accountId == null && statusSet == null)
+			throw new IllegalArgumentException("An account id or a status is required");
+		
+		Collection<Set<Long>> candidates;
+		if(statusSet == null) {
+			candidates = Collections.singletonList(idsByAccount.getOrDefault(accountId, Collections.emptySet()));
+		}else {
+			Map<TransactionStatus, Set<Long>> statusIndex = accountId == null ? idsByStatus
+					: idsByAccountAndStatus.getOrDefault(accountId, Collections.emptyMap());
+			candidates = new ArrayList<>(statusSet.size());
+			for(TransactionStatus status : statusSet)
+				candidates.add(statusIndex.getOrDefault(status, Collections.emptySet()));
+		}
+		
+		List<TransactionDO> result = new ArrayList<>();
+		Set<Long> foundIds = candidates.size() > 1 ? new HashSet<>() : null;
+		for(Set<Long> ids : candidates) {
+			for(Long id : ids) {
+				TransactionDO transactionDO = transactions.get(id);
+				if(transactionDO != null && matches(transactionDO, accountId, statusSet) && (foundIds == null || foundIds.add(id)))
+					result.add(transactionDO);
+			}
+		}
+		// The ids are time-ordered.
+		result.sort(Comparator.comparingLong(transactionDO -> TransactionIds.parse(transactionDO.getTransactionId())));
+		return result;
 	}
 
 	@Override
 	public void clearTransactions() {
 		transactions.clear();
+		idsByAccount.clear();
+		idsByAccountAndStatus.clear();
+		indexedStatuses.clear();
+		for(Set<Long> ids : idsByStatus.values())
+			ids.clear();
 	}
 
 	@Override
-	public void updateTransactionJob(TransactionDO transactionDO) {
-		transactions.put(transactionDO.getTransactionId(), transactionDO);
+	public boolean updateTransactionJob(TransactionDO transactionDO) {
+		long id = TransactionIds.parse(transactionDO.getTransactionId());
+		TransactionStatus status = transactionDO.getTransactionStatus();
+		boolean[] updated = new boolean[1];
+		indexedStatuses.compute(id, (key, previousStatus) -> {
+			if(previousStatus != null && status != null && progress(status) < progress(previousStatus))
+				return previousStatus;
+			transactions.put(id, transactionDO);
+			reindexByStatus(id, transactionDO, previousStatus);
+			updated[0] = true;
+			return status == null ? previousStatus : status;
+		});
+		return updated[0];
+	}
+	
+	/**
+	 * @return 0 for IN_PROGRESS, 1 for DEBIT_SUCCESS and 2 for the terminal statuses, which may still be corrected.
+	 */
+	private static int progress(TransactionStatus status) {
+		switch(status) {
+		case IN_PROGRESS:
+			return 0;
+		case DEBIT_SUCCESS:
+			return 1;
+		default:
+			return 2;
+		}
+	}
+	
+	private void indexByAccount(String accountId, long id) {
+		if(accountId != null)
+			idsByAccount.computeIfAbsent(accountId, key -> ConcurrentHashMap.newKeySet()).add(id);
+	}
+	
+	private void indexByStatus(long id, TransactionDO transactionDO) {
+		TransactionStatus status = transactionDO.getTransactionStatus();
+		if(status == null)
+			return;
+		
+		indexedStatuses.compute(id, (key, previousStatus) -> {
+			reindexByStatus(id, transactionDO, previousStatus);
+			return status;
+		});
+	}
+	
+	/**
+	 * Called under the lock of the entry of the transaction in 'indexedStatuses'.
+	 */
+	private void reindexByStatus(long id, TransactionDO transactionDO, TransactionStatus previousStatus) {
+		TransactionStatus status = transactionDO.getTransactionStatus();
+		if(status == null || previousStatus == status)
+			return;
+		
+		idsByStatus.get(status).add(id);
+		indexByAccountAndStatus(transactionDO.getSourceAccountId(), status, id);
+		indexByAccountAndStatus(transactionDO.getTargetAccountId(), status, id);
+		if(previousStatus != null) {
+			idsByStatus.get(previousStatus).remove(id);
+			unindexByAccountAndStatus(transactionDO.getSourceAccountId(), previousStatus, id);
+			unindexByAccountAndStatus(transactionDO.getTargetAccountId(), previousStatus, id);
+		}
+	}
+	
+	private void indexByAccountAndStatus(String accountId, TransactionStatus status, long id) {
+		if(accountId != null)
+			idsByAccountAndStatus.computeIfAbsent(accountId, key -> new ConcurrentHashMap<>())
+					.computeIfAbsent(status, key -> ConcurrentHashMap.newKeySet()).add(id);
+	}
+	
+	private void unindexByAccountAndStatus(String accountId, TransactionStatus status, long id) {
+		Map<TransactionStatus, Set<Long>> statusIndex = accountId == null ? null : idsByAccountAndStatus.get(accountId);
+		Set<Long> ids = statusIndex == null ? null : statusIndex.get(status);
+		if(ids != null)
+			ids.remove(id);
+	}
+	
+	private static boolean matches(TransactionDO transactionDO, String accountId, Set<TransactionStatus> statuses) {
+		if(accountId != null && !accountId.equals(transactionDO.getSourceAccountId()) && !accountId.equals(transactionDO.getTargetAccountId()))
+			return false;
+		return statuses == null || statuses.contains(transactionDO.getTransactionStatus());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.id.TransactionIds;
+import com.db.awmd.challenge.journal.WriteAheadJournal;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable implementation of the Transaction repository. Every created and updated transaction is appended to a local
+ * write-ahead journal, and is only applied to the in-memory state once the journal record is durable.
+ * On start-up, the in-memory state is rebuilt by replaying the journal, so a debited transaction whose credit is pending
+ * is not lost on restart.
+ *
+ * Concurrent callers share fsyncs through the group commit of the journal ('transactions.journal.group-commit').
+ * It is enabled with 'transactions.repository=journaled'.
+ * NOTE: The journal is never compacted. In a production deployment, it would be checkpointed and rolled over regularly.
+ * @author sinkar
+ *
+ */
+@Repository
+@ConditionalOnProperty(name = TransactionRespository.REPOSITORY_PROPERTY, havingValue = "journaled")
+@Slf4j
+public class TransactionRepositoryJournaled extends TransactionRepositoryInMemory implements DisposableBean {
+
+	private static final byte CREATE_RECORD = 1;
+	private static final byte UPDATE_RECORD = 2;
+	
+	private final WriteAheadJournal journal;
+	
+	@Autowired
+	public TransactionRepositoryJournaled(@Value("${transactions.journal.file:data/transactions.wal}") String journalFile,
+			@Value("${transactions.journal.group-commit:true}") boolean groupCommit) throws IOException {
+		this.journal = new WriteAheadJournal(Paths.get(journalFile), groupCommit);
+		
+		long startTime = System.currentTimeMillis();
+		int[] recordCount = new int[1];
+		journal.replay(0, (lsn, payload) -> {
+			recordCount[0]++;
+			byte recordType = payload.get();
+			TransactionDO transactionDO = decode(payload);
+			if(recordType == CREATE_RECORD)
+				super.createTransaction(transactionDO);
+			else
+				super.updateTransactionJob(transactionDO);
+		});
+		log.info("Recovered transactions from {} journal records of {} in {} ms", recordCount[0], journalFile, System.currentTimeMillis() - startTime);
+	}
+	
+	@Override
+	public void createTransaction(TransactionDO transactionDO) {
+		journal.appendAndSync(encode(CREATE_RECORD, transactionDO));
+		super.createTransaction(transactionDO);
+	}
+	
+	/**
+	 * All the records of the batch are appended first, so they are made durable together.
+	 */
+	@Override
+	public void createTransactions(List<TransactionDO> transactionDOs) {
+		long lastLsn = 0;
+		for(TransactionDO transactionDO : transactionDOs)
+			lastLsn = journal.append(encode(CREATE_RECORD, transactionDO));
+		journal.awaitDurable(lastLsn);
+		
+		for(TransactionDO transactionDO : transactionDOs)
+			super.createTransaction(transactionDO);
+	}
+	
+	/**
+	 * An update refused because its status would move back is journaled too: it is refused again on replay, whatever the
+	 * order in which it was appended.
+	 */
+	@Override
+	public boolean updateTransactionJob(TransactionDO transactionDO) {
+		journal.appendAndSync(encode(UPDATE_RECORD, transactionDO));
+		return super.updateTransactionJob(transactionDO);
+	}
+	
+	@Override
+	public void clearTransactions() {
+		try {
+			journal.reset();
+		}catch(IOException e) {
+			throw new UncheckedIOException("Failed to reset the transactions journal", e);
+		}
+		super.clearTransactions();
+	}
+	
+	@Override
+	public void destroy() throws Exception {
+		journal.close();
+	}
+	
+	private static byte[] encode(byte recordType, TransactionDO transactionDO) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try(DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(recordType);
+			out.writeLong(TransactionIds.parse(transactionDO.getTransactionId()));
+			out.writeUTF(transactionDO.getSourceAccountId());
+			out.writeUTF(transactionDO.getTargetAccountId());
+			
+			byte[] unscaledAmount = transactionDO.getAmount().unscaledValue().toByteArray();
+			out.writeInt(transactionDO.getAmount().scale());
+			out.writeShort(unscaledAmount.length);
+			out.write(unscaledAmount);
+			
+			out.writeByte(transactionDO.getTransactionStatus() == null ? -1 : transactionDO.getTransactionStatus().ordinal());
+		}catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static TransactionDO decode(ByteBuffer payload) {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(TransactionIds.format(payload.getLong()));
+		transactionDO.setSourceAccountId(readUTF(payload));
+		transactionDO.setTargetAccountId(readUTF(payload));
+		
+		int scale = payload.getInt();
+		byte[] unscaledAmount = new byte[payload.getShort()];
+		payload.get(unscaledAmount);
+		transactionDO.setAmount(new BigDecimal(new BigInteger(unscaledAmount), scale));
+		
+		byte status = payload.get();
+		transactionDO.setTransactionStatus(status < 0 ? null : TransactionStatus.values()[status]);
+		return transactionDO;
+	}
+	
+	/**
+	 * Reads a string written by DataOutput.writeUTF. The ids are ASCII in practice, for which modified UTF-8 and UTF-8 are the same.
+	 */
+	private static String readUTF(ByteBuffer payload) {
+		byte[] value = new byte[payload.getShort() & 0xFFFF];
+		payload.get(value);
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
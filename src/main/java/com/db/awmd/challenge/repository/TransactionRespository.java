@@ -1,16 +1,32 @@
 package com.db.awmd.challenge.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
 import com.db.awmd.challenge.domain.TransactionDO;
 
 
 public interface TransactionRespository {
 
+	// Selects the implementation: 'in-memory' (default) or 'journaled' (durable, backed by a write-ahead journal).
+	String REPOSITORY_PROPERTY = "transactions.repository";
+
 	/**
 	 * It creates a transaction entry maintaining the Transaction object.
 	 * @param transactionDO The basic TransactionDO object holding information of transaction 
 	 */
 	void createTransaction(TransactionDO transactionDO);
 
+	/**
+	 * It creates the transaction entries of a batch of transactions with a single call.
+	 * @param transactionDOs The TransactionDO objects of the batch.
+	 */
+	default void createTransactions(List<TransactionDO> transactionDOs) {
+		for(TransactionDO transactionDO : transactionDOs)
+			createTransaction(transactionDO);
+	}
+
 	/**
 	 * Fetches the transaction object based on the transaction id
 	 * @param transactionJobId The unique identifier for the transaction.
@@ -18,6 +34,15 @@ public interface TransactionRespository {
 	 */
 	TransactionDO findTransactionById(String transactionJobId);
 	
+	/**
+	 * Fetches the transactions of an account and/or in some statuses, in the order of their creation.
+	 * At least one of the two criteria is required: the transactions are found through the index of the criteria given.
+	 * @param accountId The account debited or credited by the transactions, or null for any account.
+	 * @param statuses The current statuses of the transactions, or null/empty for any status.
+	 * @return The matching transactions.
+	 */
+	List<TransactionDO> findTransactions(String accountId, Collection<TransactionStatus> statuses);
+	
 	/**
 	 * Removes all the transaction that might have been carried out so far.
 	 */
@@ -25,7 +50,10 @@ public interface TransactionRespository {
 
 	/**
 	 * Updates the transaction object after an update in the repository. 
+	 * A status only moves forward: a transaction never moves back to IN_PROGRESS or DEBIT_SUCCESS once it has left it, e.g.
+	 * when a credit re-driven by the sweeper completes before its slow debit records DEBIT_SUCCESS.
 	 * @param transactionDO The transaction object to be updated.
+	 * @return true if the transaction was updated, false if its status would have moved back.
 	 */
-	void updateTransactionJob(TransactionDO transactionDO);
+	boolean updateTransactionJob(TransactionDO transactionDO);
 }
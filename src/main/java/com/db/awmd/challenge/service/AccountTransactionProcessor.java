@@ -0,0 +1,159 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.engine.StuckTransferSweeper;
+import com.db.awmd.challenge.events.TransactionEventHub;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.TransactionRespository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Performs the individual debit and credit legs of a transaction and records the resulting job status.
+ * The caller (transfer engine) is responsible for ensuring that only one leg at a time is processed for a given account.
+ * A leg may be replayed, e.g. a credit re-driven by the {@link StuckTransferSweeper}: a replayed leg only records the status.
+ * @author sinkar
+ *
+ */
+@Component
+@Slf4j
+public class AccountTransactionProcessor {
+
+	@Autowired
+	private AccountsService accountsService;
+	
+	@Autowired
+	private TransactionRespository transactionRespository;
+	
+	@Autowired
+	private TransferNotifier transferNotifier;
+	
+	@Autowired
+	private TransactionEventHub transactionEventHub;
+	
+	@Autowired
+	private TransactionIdempotency transactionIdempotency;
+	
+	@Autowired
+	private StuckTransferSweeper stuckTransferSweeper;
+	
+	@Autowired
+	private AdmissionController admissionController;
+	
+	/**
+	 * Debits the source account and marks the job as DEBIT_SUCCESS, or INSUFFICIENT_FUNDS if the balance is too low.
+	 * @param transactionDO The transaction for which the source account is to be debited.
+	 * @return true if the account was debited and a credit must follow, false otherwise.
+	 */
+	public boolean debitSourceAccount(TransactionDO transactionDO) {
+		log.info("Initiate Debit for transaction {} of amount {}", transactionDO.getTransactionId(), transactionDO.getAmount());
+		if(!accountsService.tryDebitSourceAccountForTransaction(transactionDO)) {
+			if(transactionIdempotency.getDebitedTransactions().contains(transactionDO.getTransactionId())) {
+				// Already debited, or timed out by the sweeper which claimed the debit.
+				log.info("Debit skipped for transaction {} : already claimed", transactionDO.getTransactionId());
+				return false;
+			}
+			log.info("Debit failed for transaction {} : insufficient funds in account {}", transactionDO.getTransactionId(), transactionDO.getSourceAccountId());
+			
+			// Mark the transaction FAILED.
+			transactionDO.setTransactionStatus(TransactionStatus.INSUFFICIENT_FUNDS);
+			updateTransactionJob(transactionDO);
+			return false;
+		}
+		
+		// Mark the transaction as DEBIT_SUCCESS after actual debit.
+		transactionDO.setTransactionStatus(TransactionStatus.DEBIT_SUCCESS);
+		if(!updateTransactionJob(transactionDO)) {
+			// The sweeper found the debit applied and has re-driven the credit already.
+			log.info("Credit skipped for transaction {} : completed by the sweeper", transactionDO.getTransactionId());
+			return false;
+		}
+		stuckTransferSweeper.track(transactionDO);
+		
+		transferNotifier.sendNotification(transactionDO.getSourceAccountId(), "Account number: " + transactionDO.getSourceAccountId() + " debited by amount : INR " + transactionDO.getAmount());
+		return true;
+	}
+	
+	/**
+	 * Marks the job as TRANSACTION_TIMEOUT, when its debit was given up because the source account stayed busy.
+	 * @param transactionDO The transaction which was not debited.
+	 */
+	public void timeOutTransaction(TransactionDO transactionDO) {
+		log.info("Debit timed out for transaction {}", transactionDO.getTransactionId());
+		transactionDO.setTransactionStatus(TransactionStatus.TRANSACTION_TIMEOUT);
+		updateTransactionJob(transactionDO);
+	}
+	
+	/**
+	 * Credits the target account and marks the job as SUCCESS.
+	 * @param transactionDO The transaction for which the target account is to be credited.
+	 */
+	public void creditTargetAccount(TransactionDO transactionDO) {
+		log.info("Initiate Credit for transaction {} of amount {}", transactionDO.getTransactionId(), transactionDO.getAmount());
+		boolean credited = !isCredited(transactionDO);
+		if(credited)
+			accountsService.creditTargetAccountForTransaction(transactionDO);
+		
+		// Update the transaction status to SUCCESS after successful credit to Target account
+		transactionDO.setTransactionStatus(TransactionStatus.SUCCESS);
+		updateTransactionJob(transactionDO);
+		
+		if(credited)
+			transferNotifier.sendNotification(transactionDO.getSourceAccountId(), "Account number: " + transactionDO.getTargetAccountId() + " credited with amount : INR " + transactionDO.getAmount());
+	}
+	
+	/**
+	 * Credits the target account with several transactions in one balance update, then marks every job as SUCCESS.
+	 * @param transactionDOs The transactions for which the target account is to be credited, all with the same target account.
+	 */
+	public void creditTargetAccount(List<TransactionDO> transactionDOs) {
+		log.info("Initiate Credit of {} transactions to account {}", transactionDOs.size(), transactionDOs.get(0).getTargetAccountId());
+		List<TransactionDO> credits = new ArrayList<>(transactionDOs.size());
+		for(TransactionDO transactionDO : transactionDOs) {
+			if(!isCredited(transactionDO))
+				credits.add(transactionDO);
+		}
+		if(!credits.isEmpty())
+			accountsService.creditTargetAccountForTransactions(credits);
+		
+		for(TransactionDO transactionDO : transactionDOs) {
+			transactionDO.setTransactionStatus(TransactionStatus.SUCCESS);
+			updateTransactionJob(transactionDO);
+		}
+		for(TransactionDO transactionDO : credits) {
+			transferNotifier.sendNotification(transactionDO.getSourceAccountId(), "Account number: " + transactionDO.getTargetAccountId() + " credited with amount : INR " + transactionDO.getAmount());
+		}
+	}
+	
+	/**
+	 * A replayed credit is skipped before it reaches the accounts, so that it is not posted to the history of the account twice.
+	 * It is exact because the credits of an account are processed one at a time.
+	 */
+	private boolean isCredited(TransactionDO transactionDO) {
+		if(!transactionIdempotency.getCreditedTransactions().contains(transactionDO.getTransactionId()))
+			return false;
+		log.info("Credit skipped for transaction {} : already credited", transactionDO.getTransactionId());
+		return true;
+	}
+	
+	/**
+	 * Records the new status of the job and pushes it to the clients subscribed to its events, unless the status would have
+	 * moved back.
+	 * @return true if the status was recorded.
+	 */
+	private boolean updateTransactionJob(TransactionDO transactionDO) {
+		if(!transactionRespository.updateTransactionJob(transactionDO))
+			return false;
+		transactionEventHub.publish(transactionDO);
+		if(transactionDO.getTransactionStatus() != TransactionStatus.IN_PROGRESS && transactionDO.getTransactionStatus() != TransactionStatus.DEBIT_SUCCESS)
+			admissionController.completed(transactionDO.getTransactionId());
+		return true;
+	}
+}
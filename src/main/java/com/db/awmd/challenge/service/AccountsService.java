@@ -1,10 +1,16 @@
 package com.db.awmd.challenge.service;
 
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.db.awmd.challenge.client.PostingPage;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.ledger.PostingLedger;
 import com.db.awmd.challenge.repository.AccountsRepository;
 
 import lombok.Getter;
@@ -15,24 +21,71 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
-  @Autowired
+  private final PostingLedger postingLedger;
+
   public AccountsService(AccountsRepository accountsRepository) {
+    this(accountsRepository, new PostingLedger());
+  }
+
+  @Autowired
+  public AccountsService(AccountsRepository accountsRepository, PostingLedger postingLedger) {
     this.accountsRepository = accountsRepository;
+    this.postingLedger = postingLedger;
   }
 
   public void createAccount(Account account) {
     this.accountsRepository.createAccount(account);
+    this.postingLedger.openAccount(account.getAccountId());
   }
 
   public Account getAccount(String accountId) {
     return this.accountsRepository.getAccount(accountId);
   }
   
+  public boolean isValidTransferAmount(BigDecimal amount) {
+    return this.accountsRepository.isValidTransferAmount(amount);
+  }
+  
+  /**
+   * @param accountId The id of an existing account.
+   * @param cursor The cursor of the page, or null for the newest postings.
+   * @param limit The maximum number of postings of the page.
+   * @return A page of the postings of the account, from the newest to the oldest.
+   */
+  public PostingPage getPostings(String accountId, String cursor, int limit) {
+    return this.postingLedger.getPostings(accountId, cursor, limit);
+  }
+  
   public void debitSourceAccountForTransaction(TransactionDO transactionDO) {
 	  accountsRepository.debitAccountForTransaction(transactionDO);
+	  postDebit(transactionDO);
+  }
+  
+  /**
+   * @return true if the source account was debited, false if its balance is too low.
+   */
+  public boolean tryDebitSourceAccountForTransaction(TransactionDO transactionDO) {
+	  if(!accountsRepository.tryDebitAccountForTransaction(transactionDO))
+		  return false;
+	  postDebit(transactionDO);
+	  return true;
   }
   
+  /**
+   * The credits are posted with the balance read right after them, which is exact because the transfer engine
+   * processes one leg at a time for an account.
+   */
   public void creditTargetAccountForTransaction(TransactionDO transactionDO) {
 	  accountsRepository.creditAccountForTransaction(transactionDO);
+	  postingLedger.postCredits(Collections.singletonList(transactionDO), getAccount(transactionDO.getTargetAccountId()).getBalance());
+  }
+  
+  public void creditTargetAccountForTransactions(List<TransactionDO> transactionDOs) {
+	  accountsRepository.creditAccountForTransactions(transactionDOs);
+	  postingLedger.postCredits(transactionDOs, getAccount(transactionDOs.get(0).getTargetAccountId()).getBalance());
+  }
+  
+  private void postDebit(TransactionDO transactionDO) {
+	  postingLedger.postDebit(transactionDO, getAccount(transactionDO.getSourceAccountId()).getBalance());
   }
 }
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.concurrent.AdaptiveConcurrencyLimit;
+import com.db.awmd.challenge.exception.TransferError;
+import com.db.awmd.challenge.metrics.AdmissionGauges;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetrics.Stage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits the transfers while the number of transfers in flight, from their admission to their terminal status, is within an
+ * adaptive limit, see {@link AdaptiveConcurrencyLimit}. The limit decreases when a transfer completes later than
+ * 'transfer.admission.target-latency-millis', and as soon as a debit/credit waits longer than
+ * 'transfer.admission.max-queue-delay-millis' in the queue of its threadpool, so that one stage backing up shrinks the limit
+ * before the transfers complete late. The transfers beyond the limit are rejected with 429 and a Retry-After header before
+ * anything is persisted or queued.
+ *
+ * With the executor engine, a transfer has at most one task in the debit threadpool and one in the credit threadpool at a
+ * time, so the limit is capped at the capacity (threads plus queue) of the smaller of them: the transfers admitted never
+ * saturate the pools, which reject their tasks rather than running them on the submitting thread. The partitioned engine
+ * has unbounded partition queues, which nothing caps the limit at: it is only adapted to the latency of the transfers and
+ * to the time their messages wait in the queues of the partitions.
+ * @author sinkar
+ *
+ */
+@Component
+@Slf4j
+public class AdmissionController {
+
+	private final boolean enabled;
+	private final long maxQueueDelayNanos;
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	
+	// Admission time of the transfers in flight, by transaction id; a transfer completed twice is only counted once.
+	private final Map<String, Long> admittedNanos = new ConcurrentHashMap<>();
+	
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+	private final LongAdder queueDelayBackoffs = new LongAdder();
+	private final LongAdder rejectedByPools = new LongAdder();
+	
+	@Autowired
+	public AdmissionController(@Value("${transfer.admission.enabled:true}") boolean enabled,
+			@Value("${transfer.admission.target-latency-millis:500}") long targetLatencyMillis,
+			@Value("${transfer.admission.max-queue-delay-millis:100}") long maxQueueDelayMillis,
+			@Value("${transfer.admission.initial-limit:200}") int initialLimit,
+			@Value("${transfer.admission.min-limit:10}") int minLimit,
+			@Value("${transfer.admission.max-limit:2000}") int maxLimit,
+			@Value("${transfer.admission.backoff-ratio:0.9}") double backoffRatio,
+			TransferMetrics transferMetrics,
+			// Only with the executor based transfer engine.
+			@Qualifier(DevChallengeApplication.DEBIT_TRANSACTION_THREADPOOL) Optional<ThreadPoolTaskExecutor> debitExecutor,
+			@Qualifier(DevChallengeApplication.CREDIT_TRANSACTION_THREADPOOL) Optional<ThreadPoolTaskExecutor> creditExecutor) {
+		int poolCapacity = Math.min(capacity(debitExecutor), capacity(creditExecutor));
+		if(maxLimit > poolCapacity) {
+			log.info("Transfers admitted capped at {}, the capacity of the debit/credit threadpools", poolCapacity);
+			maxLimit = poolCapacity;
+			minLimit = Math.min(minLimit, maxLimit);
+			initialLimit = Math.min(initialLimit, maxLimit);
+		}
+		
+		this.enabled = enabled;
+		this.maxQueueDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueDelayMillis);
+		this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, targetLatencyMillis, TimeUnit.MILLISECONDS, backoffRatio);
+		transferMetrics.addListener(Stage.DEBIT_QUEUE, this::queued);
+		transferMetrics.addListener(Stage.CREDIT_QUEUE, this::queued);
+	}
+	
+	/**
+	 * Admits transfers about to be persisted and started.
+	 * @param transfers The number of transfers.
+	 * @throws com.db.awmd.challenge.exception.TransferFailure TOO_MANY_REQUESTS if the transfers would exceed the limit.
+	 */
+	public void admit(int transfers) {
+		if(!enabled)
+			return;
+		
+		if(!concurrencyLimit.tryAcquire(transfers)) {
+			shed.add(transfers);
+			throw TransferError.TRANSFERS_OVERLOADED.failure(getRetryAfterSeconds());
+		}
+		accepted.add(transfers);
+	}
+	
+	/**
+	 * Admits as many transfers of a batch as the limit leaves room for, so that a batch larger than the room left is not
+	 * rejected again and again; the transfers beyond them are shed.
+	 * @param transfers The number of transfers of the batch.
+	 * @return The number of transfers admitted, the first ones of the batch.
+	 * @throws com.db.awmd.challenge.exception.TransferFailure TOO_MANY_REQUESTS if no transfer could be admitted.
+	 */
+	public int admitUpTo(int transfers) {
+		if(!enabled)
+			return transfers;
+		
+		int admitted = concurrencyLimit.tryAcquireUpTo(transfers);
+		shed.add(transfers - admitted);
+		if(admitted == 0)
+			throw TransferError.TRANSFERS_OVERLOADED.failure(getRetryAfterSeconds());
+		accepted.add(admitted);
+		return admitted;
+	}
+	
+	/**
+	 * Gives back the admission of transfers which could not be started.
+	 * @param transfers The number of transfers.
+	 */
+	public void cancel(int transfers) {
+		if(enabled)
+			concurrencyLimit.release(transfers);
+	}
+	
+	/**
+	 * @param transactionId The id of an admitted transfer, whose latency starts now.
+	 */
+	public void started(String transactionId) {
+		if(enabled)
+			admittedNanos.put(transactionId, System.nanoTime());
+	}
+	
+	/**
+	 * @param transactionId The id of a transfer which has reached its terminal status.
+	 */
+	public void completed(String transactionId) {
+		Long startNanos = enabled ? admittedNanos.remove(transactionId) : null;
+		if(startNanos != null)
+			concurrencyLimit.complete(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Gives back the admission of a started transfer whose debit was rejected by the saturated debit threadpool, and backs
+	 * off the limit.
+	 * @param transactionId The id of the transfer, which is not counted as completed afterwards.
+	 */
+	public void rejected(String transactionId) {
+		if(enabled && admittedNanos.remove(transactionId) != null) {
+			concurrencyLimit.release(1);
+			concurrencyLimit.backOff();
+			rejectedByPools.increment();
+		}
+	}
+	
+	/**
+	 * @return The seconds after which a rejected client should retry: about the time for the transfers in flight to complete.
+	 */
+	public long getRetryAfterSeconds() {
+		return Math.max(1, (long) Math.ceil(concurrencyLimit.getSmoothedLatencyNanos() / 1e9));
+	}
+	
+	public AdmissionGauges getGauges() {
+		AdmissionGauges gauges = new AdmissionGauges();
+		gauges.setEnabled(enabled);
+		gauges.setLimit(concurrencyLimit.getLimit());
+		gauges.setInFlight(concurrencyLimit.getInFlight());
+		gauges.setSmoothedLatencyMicros(TimeUnit.NANOSECONDS.toMicros(concurrencyLimit.getSmoothedLatencyNanos()));
+		gauges.setAccepted(accepted.sum());
+		gauges.setShed(shed.sum());
+		gauges.setQueueDelayBackoffs(queueDelayBackoffs.sum());
+		gauges.setRejectedByPools(rejectedByPools.sum());
+		return gauges;
+	}
+	
+	/**
+	 * Forgets the transfers in flight, when all the transactions are removed.
+	 */
+	public void clear() {
+		admittedNanos.clear();
+		concurrencyLimit.reset();
+	}
+	
+	/**
+	 * Called with the time every debit/credit waited in the queue of its threadpool.
+	 */
+	private void queued(long queueDelayNanos) {
+		if(enabled && queueDelayNanos > maxQueueDelayNanos) {
+			concurrencyLimit.backOff();
+			queueDelayBackoffs.increment();
+		}
+	}
+	
+	private static int capacity(Optional<ThreadPoolTaskExecutor> executor) {
+		if(!executor.isPresent())
+			return Integer.MAX_VALUE;
+		ThreadPoolExecutor threadPoolExecutor = executor.get().getThreadPoolExecutor();
+		return threadPoolExecutor.getMaximumPoolSize() + threadPoolExecutor.getQueue().size() + threadPoolExecutor.getQueue().remainingCapacity();
+	}
+}
@@ -0,0 +1,42 @@
+package com.db.awmd.challenge.service;
+
+import java.util.List;
+
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.domain.TransactionDO;
+
+/**
+ * The engine which actually moves the funds for a persisted transaction job, asynchronously to the web request.
+ * The engine in use is selected through the 'transfer.engine' property:
+ * <ul>
+ * <li>executor (default) : {@link FundsTransferManager}, debits and credits are processed on separate thread pools.</li>
+ * <li>partitioned : {@link com.db.awmd.challenge.engine.PartitionedTransferEngine}, accounts are owned by single-threaded partitions.</li>
+ * </ul>
+ * @author sinkar
+ *
+ */
+public interface FundsTransferEngine {
+
+	String ENGINE_PROPERTY = "transfer.engine";
+	
+	/**
+	 * Initiates the debit of the source account followed by the credit of the target account for the transaction job.
+	 * The transaction job status is updated as the transaction progresses.
+	 * @param transactionJob The transaction to be initiated for funds transfer.
+	 */
+	void startAsyncTransaction(TransactionJob transactionJob);
+	
+	/**
+	 * Initiates the transfers of a batch of transaction jobs which all debit the same source account.
+	 * The legs of the batch are applied together per account, instead of contending for the account one by one.
+	 * @param transactionJobs The transactions to be initiated, all with the same source account.
+	 */
+	void startAsyncTransactions(List<TransactionJob> transactionJobs);
+	
+	/**
+	 * Initiates the credit of the target account for a transaction already debited, e.g. when its credit was lost.
+	 * A transaction already credited is only marked SUCCESS.
+	 * @param transactionDO The debited transaction.
+	 */
+	void startAsyncCredit(TransactionDO transactionDO);
+}
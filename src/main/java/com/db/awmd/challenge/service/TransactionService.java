@@ -1,18 +1,36 @@
 package com.db.awmd.challenge.service;
 
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
 import com.db.awmd.challenge.client.FundsTransferRequest;
 import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.client.TransactionJobBatch;
+import com.db.awmd.challenge.client.TransactionJobList;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.engine.StuckTransferSweeper;
+import com.db.awmd.challenge.events.TransactionEventHub;
 import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.exception.TransferError;
+import com.db.awmd.challenge.exception.TransferFailure;
+import com.db.awmd.challenge.id.TransactionIdGenerator;
+import com.db.awmd.challenge.id.TransactionIds;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetrics.Stage;
 import com.db.awmd.challenge.repository.TransactionRespository;
 import com.db.awmd.challenge.util.TransactionUtil;
 
@@ -30,75 +48,231 @@ public class TransactionService {
 	private TransactionRespository transactionRespository;
 	
 	@Autowired
-	private FundsTransferManager fundsTransferManager;
+	private FundsTransferEngine fundsTransferEngine;
+	
+	@Autowired
+	private TransferMetrics transferMetrics;
+	
+	@Autowired
+	private TransactionEventHub transactionEventHub;
+	
+	@Autowired
+	private TransactionIdGenerator transactionIdGenerator;
+	
+	@Autowired
+	private StuckTransferSweeper stuckTransferSweeper;
+	
+	@Autowired
+	private AdmissionController admissionController;
+	
+	@Autowired
+	private AccountTransactionProcessor accountTransactionProcessor;
+	
+	@Value("${transaction.batch.max-size:1000}")
+	private int maxBatchSize;
 	
 	/**
 	 * Initiate a Funds transfer between source and target account for a specified amount.
 	 * @param fundsTransferRequest The request object for funds transfer.
 	 * @return The TransactionJob corresponding to the async job initiated for transaction.
-	 * @throws ResourceException Exception thrown in case of any validation errors.
+	 * @throws ResourceException Exception thrown in case of any validation errors, or with TOO_MANY_REQUESTS when too many transfers are in progress or the debit threadpool is saturated.
 	 */
 	public TransactionJob transferFunds(FundsTransferRequest fundsTransferRequest) throws ResourceException{
-		validateTransferRequest(fundsTransferRequest);
+		long start = System.nanoTime();
+		TransferError error = validateTransferRequest(fundsTransferRequest, accountsService::getAccount);
+		if(error != null)
+			throw rejection(error, fundsTransferRequest);
+		transferMetrics.record(Stage.VALIDATION, start);
 		
-		TransactionJob transactionJob = persistTransaction(fundsTransferRequest);
+		admissionController.admit(1);
+		start = System.nanoTime();
+		TransactionJob transactionJob;
+		try {
+			transactionJob = persistTransaction(fundsTransferRequest);
+		}catch(RuntimeException e) {
+			admissionController.cancel(1);
+			throw e;
+		}
+		transferMetrics.record(Stage.PERSISTENCE, start);
 		
-		fundsTransferManager.startAsyncTransaction(transactionJob, 0);
+		try {
+			fundsTransferEngine.startAsyncTransaction(transactionJob);
+		}catch(RejectedExecutionException e) {
+			abandon(transactionJob);
+			throw TransferError.TRANSFERS_OVERLOADED.failure(admissionController.getRetryAfterSeconds());
+		}
 		
 		return transactionJob;
 	}
 	
-	private TransactionJob persistTransaction(FundsTransferRequest fundsTransferRequest) {
-		// Create Unique transactionId
-		String transactionJobId = UUID.randomUUID().toString();
+	/**
+	 * Initiate a batch of Funds transfers. Every request is validated on its own, and the valid ones are persisted together
+	 * and started grouped by source account, so that the legs of the same account are applied together.
+	 * @param fundsTransferRequests The request objects for funds transfer.
+	 * @return The TransactionJob or the error of every request, in the order of the requests: the valid requests beyond the transfers admitted,
+	 * and a transfer whose debit the saturated debit threadpool rejected, which is timed out, are reported with TOO_MANY_REQUESTS.
+	 * @throws ResourceException Exception thrown if the batch itself is empty or too large, or with TOO_MANY_REQUESTS when no transfer could be admitted.
+	 */
+	public TransactionJobBatch transferFunds(List<FundsTransferRequest> fundsTransferRequests) throws ResourceException{
+		if(fundsTransferRequests == null || fundsTransferRequests.isEmpty())
+			throw TransferError.EMPTY_TRANSACTION_BATCH.failure();
+		if(fundsTransferRequests.size() > maxBatchSize)
+			throw TransferError.TRANSACTION_BATCH_TOO_LARGE.failure(maxBatchSize);
 		
-		// Actually persist the transaction before starting it.
-		TransactionDO transactionDO = new TransactionDO();
-		transactionDO.setAmount(fundsTransferRequest.getAmount());
-		transactionDO.setSourceAccountId(fundsTransferRequest.getSourceAccountId());
-		transactionDO.setTargetAccountId(fundsTransferRequest.getTargetAccountId());
-		transactionDO.setTransactionId(transactionJobId);
-		transactionDO.setTransactionStatus(TransactionJob.TransactionStatus.IN_PROGRESS);
+		// Every account is looked up once for the whole batch.
+		Map<String, Account> accounts = new HashMap<>();
+		Function<String, Account> accountLookup = accountId -> accountId == null ? null : accounts.computeIfAbsent(accountId, accountsService::getAccount);
+		
+		TransactionJobBatch transactionJobBatch = new TransactionJobBatch();
+		List<FundsTransferRequest> validRequests = new ArrayList<>(fundsTransferRequests.size());
+		List<TransactionJobBatch.Result> acceptedResults = new ArrayList<>(fundsTransferRequests.size());
+		for(int i = 0; i < fundsTransferRequests.size(); i++) {
+			FundsTransferRequest fundsTransferRequest = fundsTransferRequests.get(i);
+			TransactionJobBatch.Result result = new TransactionJobBatch.Result();
+			result.setIndex(i);
+			long start = System.nanoTime();
+			TransferError error = validateTransferRequest(fundsTransferRequest, accountLookup);
+			if(error == null) {
+				transferMetrics.record(Stage.VALIDATION, start);
+				validRequests.add(fundsTransferRequest);
+				acceptedResults.add(result);
+			}else
+				result.setError(rejection(error, fundsTransferRequest));
+			transactionJobBatch.getResults().add(result);
+		}
 		
+		// The first valid requests are admitted up to the room left by the transfers in flight, the others are shed on their own.
+		int admittedCount = validRequests.isEmpty() ? 0 : admissionController.admitUpTo(validRequests.size());
+		List<TransactionDO> transactionDOs = new ArrayList<>(admittedCount);
+		for(int i = 0; i < validRequests.size(); i++) {
+			if(i < admittedCount)
+				transactionDOs.add(newTransaction(validRequests.get(i)));
+			else
+				acceptedResults.get(i).setError(TransferError.TRANSFERS_OVERLOADED.failure(admissionController.getRetryAfterSeconds()));
+		}
+		long start = System.nanoTime();
+		try {
+			transactionRespository.createTransactions(transactionDOs);
+		}catch(RuntimeException e) {
+			admissionController.cancel(transactionDOs.size());
+			throw e;
+		}
+		transferMetrics.record(Stage.PERSISTENCE, start);
+		for(TransactionDO transactionDO : transactionDOs) {
+			admissionController.started(transactionDO.getTransactionId());
+			stuckTransferSweeper.track(transactionDO);
+		}
+		
+		Map<String, List<TransactionJob>> transactionJobsBySourceAccount = new LinkedHashMap<>();
+		Map<String, TransactionJobBatch.Result> resultsByTransactionJobId = new HashMap<>();
+		for(int i = 0; i < transactionDOs.size(); i++) {
+			TransactionJob transactionJob = TransactionUtil.convertTransactionDOToTransactionJob(transactionDOs.get(i));
+			transactionEventHub.publish(transactionDOs.get(i));
+			acceptedResults.get(i).setTransactionJob(transactionJob);
+			resultsByTransactionJobId.put(transactionJob.getTransactionJobId(), acceptedResults.get(i));
+			transactionJobsBySourceAccount.computeIfAbsent(transactionJob.getSourceAccountId(), sourceAccountId -> new ArrayList<>()).add(transactionJob);
+		}
+		int startedCount = transactionDOs.size();
+		for(List<TransactionJob> transactionJobs : transactionJobsBySourceAccount.values()) {
+			try {
+				fundsTransferEngine.startAsyncTransactions(transactionJobs);
+			}catch(RejectedExecutionException e) {
+				for(TransactionJob transactionJob : transactionJobs) {
+					abandon(transactionJob);
+					TransactionJobBatch.Result result = resultsByTransactionJobId.get(transactionJob.getTransactionJobId());
+					result.setTransactionJob(null);
+					result.setError(TransferError.TRANSFERS_OVERLOADED.failure(admissionController.getRetryAfterSeconds()));
+					startedCount--;
+				}
+			}
+		}
+		
+		transactionJobBatch.setAcceptedCount(startedCount);
+		transactionJobBatch.setRejectedCount(fundsTransferRequests.size() - startedCount);
+		return transactionJobBatch;
+	}
+	
+	private TransactionJob persistTransaction(FundsTransferRequest fundsTransferRequest) {
+		// Actually persist the transaction before starting it.
+		TransactionDO transactionDO = newTransaction(fundsTransferRequest);
 		transactionRespository.createTransaction(transactionDO);
+		admissionController.started(transactionDO.getTransactionId());
+		stuckTransferSweeper.track(transactionDO);
 		
 		// Pass on the client representation of Transaction.
 		// Domain representation MUST never be passed in response.
 		
 		TransactionJob transactionJob = TransactionUtil.convertTransactionDOToTransactionJob(transactionDO);
+		transactionEventHub.publish(transactionDO);
 		
 		return transactionJob;
 	}
 	
+	/**
+	 * Times out a persisted transfer whose debit was rejected by the saturated debit threadpool, so that it is not left in
+	 * progress, and gives back its admission.
+	 */
+	private void abandon(TransactionJob transactionJob) {
+		log.warn("Debit of transaction {} rejected by the saturated debit threadpool", transactionJob.getTransactionJobId());
+		admissionController.rejected(transactionJob.getTransactionJobId());
+		accountTransactionProcessor.timeOutTransaction(TransactionUtil.convertTransactionJobToTransactionDO(transactionJob));
+	}
+	
+	private TransactionDO newTransaction(FundsTransferRequest fundsTransferRequest) {
+		// Create Unique transactionId, encoded as a string for the clients only.
+		String transactionJobId = TransactionIds.format(transactionIdGenerator.nextId());
+		
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setAmount(fundsTransferRequest.getAmount());
+		transactionDO.setSourceAccountId(fundsTransferRequest.getSourceAccountId());
+		transactionDO.setTargetAccountId(fundsTransferRequest.getTargetAccountId());
+		transactionDO.setTransactionId(transactionJobId);
+		transactionDO.setTransactionStatus(TransactionJob.TransactionStatus.IN_PROGRESS);
+		return transactionDO;
+	}
+	
 	/**
 	 * Perform basic validations of the funds transfer request.
+	 * A rejected request is the expected outcome of many requests, so it is returned as a preallocated descriptor rather than thrown.
 	 * @param fundsTransferRequest The request object for funds transfer
+	 * @param accountLookup Looks up the source and target accounts.
+	 * @return The error for which the request is rejected, or null if it is valid.
 	 */
-	private void validateTransferRequest(FundsTransferRequest fundsTransferRequest) {
+	TransferError validateTransferRequest(FundsTransferRequest fundsTransferRequest, Function<String, Account> accountLookup) {
 		if(fundsTransferRequest == null) {
 			log.debug("fundsTransferRequest is null");
-			throw new ResourceException("Invalid Fund transfer request. Request cannot be null.", HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.EMPTY_TRANSACTION_REQUEST);
+			return TransferError.EMPTY_TRANSACTION_REQUEST;
 		}
 			
-		Account sourceAccount = accountsService.getAccount(fundsTransferRequest.getSourceAccountId());
+		Account sourceAccount = accountLookup.apply(fundsTransferRequest.getSourceAccountId());
 		if(sourceAccount == null)
-			throw new ResourceException("Invalid source account id " + fundsTransferRequest.getSourceAccountId(), HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.INVALID_SOURCE_ACCOUNTID);
+			return TransferError.INVALID_SOURCE_ACCOUNTID;
 			
-		Account targetAccount = accountsService.getAccount(fundsTransferRequest.getTargetAccountId());
+		Account targetAccount = accountLookup.apply(fundsTransferRequest.getTargetAccountId());
 		if(targetAccount == null)
-			throw new ResourceException("Invalid target account id " + fundsTransferRequest.getTargetAccountId(), HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.INVALID_TARGET_ACCOUNTID);
+			return TransferError.INVALID_TARGET_ACCOUNTID;
 		
 		// Ensure that Source account and Target account are not same.
 		if(sourceAccount.getAccountId().equals(targetAccount.getAccountId()))
-				throw new ResourceException("Source Account and Target account cannot be same " + fundsTransferRequest.getTargetAccountId(), HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.SOURCE_ACCOUNT_SAME_AS_TARGET_ACCOUNT);
+			return TransferError.SOURCE_ACCOUNT_SAME_AS_TARGET_ACCOUNT;
 		
-		if(fundsTransferRequest.getAmount().compareTo(BigDecimal.ZERO) <= 0)
-			throw new ResourceException("Invalid Transfer Amount " + fundsTransferRequest.getAmount(), HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.INVALID_FUND_TRANSFER_AMOUNT);
+		if(fundsTransferRequest.getAmount() == null || fundsTransferRequest.getAmount().compareTo(BigDecimal.ZERO) <= 0 || !accountsService.isValidTransferAmount(fundsTransferRequest.getAmount()))
+			return TransferError.INVALID_FUND_TRANSFER_AMOUNT;
 		
 		// Ensure that the Source account has the amount in account required for the transaction.
 		if(sourceAccount.getBalance().compareTo(fundsTransferRequest.getAmount()) < 0)
-			throw new ResourceException("Insufficient funds in source Account " + fundsTransferRequest.getSourceAccountId() + " , transaction amount: " + fundsTransferRequest.getAmount(), HttpStatus.BAD_REQUEST, AccountTransactionErrorCodes.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT);
+			return TransferError.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT;
 		
+		return null;
+	}
+	
+	/**
+	 * @return The failure returned to the API consumer for a rejected request, with the request as the arguments of its message.
+	 */
+	private static TransferFailure rejection(TransferError error, FundsTransferRequest fundsTransferRequest) {
+		if(fundsTransferRequest == null)
+			return error.failure();
+		return error.failure(fundsTransferRequest.getSourceAccountId(), fundsTransferRequest.getTargetAccountId(), fundsTransferRequest.getAmount());
 	}
 
 	/**
@@ -108,14 +282,15 @@ public class TransactionService {
 	public void updateTransactionJob(TransactionDO transactionDO) {
 		
 		if(transactionDO.getTransactionId() == null)
-			throw new ResourceException("Invalid transaction object. transactionId cannot be null or empty", HttpStatus.NOT_FOUND, AccountTransactionErrorCodes.NULL_EMPTY_TRANSACTION_ID);
+			throw TransferError.NULL_EMPTY_TRANSACTION_ID.failure();
 		
 		TransactionDO validatedTransactionDO = transactionRespository.findTransactionById(transactionDO.getTransactionId());
 		
 		if(validatedTransactionDO == null)
-			throw new ResourceException("Invalid transaction id " + transactionDO.getTransactionId(), HttpStatus.NOT_FOUND, AccountTransactionErrorCodes.INVALID_TRANSACTION_ID);
+			throw TransferError.INVALID_TRANSACTION_ID.failure(transactionDO.getTransactionId());
 		
-		transactionRespository.updateTransactionJob(transactionDO);
+		if(transactionRespository.updateTransactionJob(transactionDO))
+			transactionEventHub.publish(transactionDO);
 	}
 
 	/**
@@ -127,12 +302,60 @@ public class TransactionService {
 		TransactionDO transactionDO = transactionRespository.findTransactionById(transactionJobId);
 		
 		if(transactionDO == null)
-			throw new ResourceException("Invalid transaction id " + transactionJobId, HttpStatus.NOT_FOUND, AccountTransactionErrorCodes.INVALID_TRANSACTION_ID);
+			throw TransferError.INVALID_TRANSACTION_ID.failure(transactionJobId);
 		
 		return TransactionUtil.convertTransactionDOToTransactionJob(transactionDO);
 	}
 	
+	/**
+	 * Get the transaction jobs of an account and/or in some statuses, e.g. the jobs of an account still in flight.
+	 * The jobs are read through the index of the more selective criterion, never by scanning all the jobs.
+	 * @param accountId The account debited or credited by the jobs, or null for any account.
+	 * @param statuses The current statuses of the jobs, or null/empty for any status.
+	 * @return The matching transaction jobs, in the order they were started.
+	 */
+	public TransactionJobList findTransactionJobs(String accountId, List<TransactionStatus> statuses) {
+		if(accountId == null && (statuses == null || statuses.isEmpty()))
+			throw TransferError.MISSING_JOB_QUERY_CRITERIA.failure();
+		
+		TransactionJobList transactionJobList = new TransactionJobList();
+		for(TransactionDO transactionDO : transactionRespository.findTransactions(accountId, statuses))
+			transactionJobList.getTransactionJobs().add(TransactionUtil.convertTransactionDOToTransactionJob(transactionDO));
+		return transactionJobList;
+	}
+	
+	/**
+	 * Subscribes to the status transitions of a transaction job.
+	 * @param transactionJobId The transaction job id.
+	 * @return The stream of the transitions, starting with the current status of the job.
+	 */
+	public SseEmitter subscribeToTransactionJob(String transactionJobId) {
+		// Fails for an unknown transaction job id.
+		getTransactionJobStatus(transactionJobId);
+		return transactionEventHub.subscribeToJob(transactionJobId, () -> getTransactionJobStatus(transactionJobId));
+	}
+	
+	/**
+	 * Subscribes to the status transitions of the transaction jobs debiting or crediting the given accounts.
+	 * @param accountIds The accounts.
+	 * @return The stream of the transitions from now on.
+	 */
+	public SseEmitter subscribeToAccountTransactions(List<String> accountIds) {
+		return transactionEventHub.subscribeToAccounts(accountIds);
+	}
+	
+	/**
+	 * Calls the listener once the transaction job is completed, i.e. reaches a terminal status.
+	 * @param transactionJobId The transaction job id.
+	 * @param listener Called with the completed transaction job, on the thread completing it.
+	 * @return Unregisters the listener.
+	 */
+	public Runnable awaitTransactionJobCompletion(String transactionJobId, Consumer<TransactionJob> listener) {
+		return transactionEventHub.awaitCompletion(transactionJobId, () -> getTransactionJobStatus(transactionJobId), listener);
+	}
+	
 	public void clearTransactions() {
 		transactionRespository.clearTransactions();
+		admissionController.clear();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.db.awmd.challenge.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.db.awmd.challenge.concurrent.CoalescingDispatcher;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.metrics.NotificationGauges;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetrics.Stage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Since sending notification immediately is not part of business critical functionality, this task is off-loaded to a
+ * dedicated dispatcher thread to allow the transaction to complete.
+ * The notifications of an account sent within 'notification.coalescing.window-millis' are sent as one digest, and once
+ * 'notification.queue-capacity' notifications are waiting, the oldest one is dropped: a transfer thread never waits for,
+ * nor sends, a notification.
+ * @author sinkar
+ *
+ */
+@Component
+@Slf4j
+public class TransferNotifier implements DisposableBean {
+
+	private final AccountsService accountsService;
+	
+	private final NotificationService notificationService;
+	
+	private final TransferMetrics transferMetrics;
+	
+	private final CoalescingDispatcher dispatcher;
+	
+	@Autowired
+	public TransferNotifier(AccountsService accountsService, NotificationService notificationService, TransferMetrics transferMetrics,
+			@Value("${notification.queue-capacity:10000}") int queueCapacity,
+			@Value("${notification.coalescing.window-millis:50}") long coalescingWindowMillis,
+			@Value("${notification.coalescing.max-notifications:100}") int maxCoalescedNotifications) {
+		this.accountsService = accountsService;
+		this.notificationService = notificationService;
+		this.transferMetrics = transferMetrics;
+		this.dispatcher = new CoalescingDispatcher(queueCapacity, coalescingWindowMillis, TimeUnit.MILLISECONDS, maxCoalescedNotifications,
+				this::notifyAboutTransfers, "notificationDispatcher");
+	}
+	
+	/**
+	 * Delays in sending notification should not actually hold the transaction from completion.
+	 * In production setup, the event must be triggered to send notification.
+	 * 
+	 * @param accountId The accountId to which notifications is to be sent.
+	 * @param transferDescription The message to be sent in the notification.
+	 */
+	public void sendNotification(String accountId,  String transferDescription) {
+		dispatcher.offer(accountId, transferDescription);
+	}
+	
+	public NotificationGauges getGauges() {
+		NotificationGauges gauges = new NotificationGauges();
+		gauges.setQueued(dispatcher.size());
+		gauges.setOffered(dispatcher.getOffered());
+		gauges.setDropped(dispatcher.getDropped());
+		gauges.setDelivered(dispatcher.getDelivered());
+		gauges.setDigests(dispatcher.getDeliveredDigests());
+		return gauges;
+	}
+	
+	/**
+	 * Runs on the dispatcher thread.
+	 */
+	private void notifyAboutTransfers(String accountId, List<String> transferDescriptions) {
+		long start = System.nanoTime();
+		Account account = accountsService.getAccount(accountId);
+		if(account == null) {
+			log.warn("Dropping {} notifications for unknown account {}", transferDescriptions.size(), accountId);
+			return;
+		}
+		
+		String digest = transferDescriptions.size() == 1 ? transferDescriptions.get(0)
+				: transferDescriptions.size() + " transfers:\n" + String.join("\n", transferDescriptions);
+		notificationService.notifyAboutTransfer(account, digest);
+		transferMetrics.record(Stage.NOTIFICATION, start);
+	}
+	
+	@Override
+	public void destroy() {
+		dispatcher.stop();
+	}
+}
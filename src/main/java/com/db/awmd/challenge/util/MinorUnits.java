@@ -0,0 +1,58 @@
+package com.db.awmd.challenge.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between the decimal amounts used in the API and fixed-point amounts in minor units (paise) held as a primitive long.
+ * All conversions are exact: an amount with more decimal places than {@link #SCALE}, or which does not fit in a long, is rejected
+ * rather than being rounded or silently overflowing.
+ * @author sinkar
+ *
+ */
+public class MinorUnits {
+
+	// Number of decimal places of the minor unit (1 INR = 100 paise).
+	public static final int SCALE = 2;
+
+	private MinorUnits() {
+	}
+
+	/**
+	 * @param amount The decimal amount.
+	 * @return true if the amount can be represented exactly in minor units.
+	 */
+	public static boolean isRepresentable(BigDecimal amount) {
+		if(amount == null)
+			return false;
+		try {
+			toMinorUnits(amount);
+			return true;
+		}catch(ArithmeticException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param amount The decimal amount.
+	 * @return The amount in minor units.
+	 * @throws ArithmeticException if the amount has more than {@link #SCALE} decimal places or overflows a long.
+	 */
+	public static long toMinorUnits(BigDecimal amount) {
+		return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * Converts minor units back to a decimal amount without trailing zeros in the fraction, so that 90000 paise is
+	 * represented as 900 and 90050 paise as 900.5, like the amounts provided by the API consumers.
+	 * @param minorUnits The amount in minor units.
+	 * @return The decimal amount.
+	 */
+	public static BigDecimal toBigDecimal(long minorUnits) {
+		if(minorUnits % 100 == 0)
+			return BigDecimal.valueOf(minorUnits / 100);
+		if(minorUnits % 10 == 0)
+			return BigDecimal.valueOf(minorUnits / 10, 1);
+		return BigDecimal.valueOf(minorUnits, SCALE);
+	}
+}
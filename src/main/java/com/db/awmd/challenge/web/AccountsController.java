@@ -3,6 +3,7 @@ package com.db.awmd.challenge.web;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -11,8 +12,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.db.awmd.challenge.client.PostingPage;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.service.AccountsService;
@@ -24,8 +27,13 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class AccountsController {
 
+  private static final int DEFAULT_POSTINGS_PAGE_SIZE = 50;
+
   private final AccountsService accountsService;
 
+  @Value("${accounts.postings.max-page-size:500}")
+  private int maxPostingsPageSize;
+
   @Autowired
   public AccountsController(AccountsService accountsService) {
     this.accountsService = accountsService;
@@ -39,6 +47,9 @@ public class AccountsController {
     	this.accountsService.createAccount(account);
     } catch (DuplicateAccountIdException daie) {
       return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (IllegalArgumentException iae) {
+      // e.g. a balance which cannot be held by the configured balance mode.
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
@@ -49,4 +60,26 @@ public class AccountsController {
     log.info("Retrieving account for id {}", accountId);
     return this.accountsService.getAccount(accountId);
   }
-}
\ No newline at end of file
+
+  /**
+   * Lists the postings of an account, from the newest to the oldest, one page at a time.
+   * The next page is requested with the 'nextCursor' of the previous one.
+   */
+  @GetMapping(path = "/{accountId}/postings", produces = {PostingPage.MEDIA_TYPE_JSON, MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<Object> getPostings(@PathVariable String accountId, @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit) {
+    log.info("Retrieving postings for account {} from cursor {}", accountId, cursor);
+    if (this.accountsService.getAccount(accountId) == null) {
+      return new ResponseEntity<>("Account " + accountId + " not found", HttpStatus.NOT_FOUND);
+    }
+    if (limit != null && (limit < 1 || limit > maxPostingsPageSize)) {
+      return new ResponseEntity<>("Limit must be between 1 and " + maxPostingsPageSize, HttpStatus.BAD_REQUEST);
+    }
+
+    try {
+      return new ResponseEntity<>(this.accountsService.getPostings(accountId, cursor, limit == null ? DEFAULT_POSTINGS_PAGE_SIZE : limit), HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.web;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import com.db.awmd.challenge.client.BinaryTransferCodec;
+import com.db.awmd.challenge.client.FundsTransferRequest;
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.exception.ResourceException;
+
+/**
+ * Reads and writes the binary media types of the transfer requests and the transaction jobs (see BinaryTransferCodec),
+ * negotiated through the 'consumes'/'produces' of the TransactionController like the JSON ones.
+ * The errors returned to a binary client are written in binary too. It is registered with the other converters by Spring Boot.
+ * @author sinkar
+ *
+ */
+@Component
+public class BinaryTransferMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+	public BinaryTransferMessageConverter() {
+		super(MediaType.parseMediaType(FundsTransferRequest.MEDIA_TYPE_BINARY), MediaType.parseMediaType(TransactionJob.MEDIA_TYPE_BINARY));
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return clazz == FundsTransferRequest.class || clazz == TransactionJob.class || ResourceException.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	protected boolean canRead(MediaType mediaType) {
+		return mediaType != null && super.canRead(mediaType);
+	}
+
+	/**
+	 * Only written when the client asked for a binary media type, so that it is never chosen for a client accepting anything.
+	 */
+	@Override
+	protected boolean canWrite(MediaType mediaType) {
+		return mediaType != null && !mediaType.isWildcardType() && !mediaType.isWildcardSubtype() && super.canWrite(mediaType);
+	}
+
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage) throws IOException {
+		ByteBuffer content = ByteBuffer.wrap(StreamUtils.copyToByteArray(inputMessage.getBody()));
+		try {
+			if(clazz == FundsTransferRequest.class)
+				return BinaryTransferCodec.decodeRequest(content);
+			if(clazz == TransactionJob.class)
+				return BinaryTransferCodec.decodeJob(content);
+		}catch(IllegalArgumentException | BufferUnderflowException e) {
+			throw new HttpMessageNotReadableException("Invalid binary content: " + e.getMessage(), e);
+		}
+		throw new HttpMessageNotReadableException("Cannot read " + clazz.getName() + " from binary content");
+	}
+
+	@Override
+	protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+		byte[] content;
+		try {
+			if(object instanceof TransactionJob)
+				content = BinaryTransferCodec.encodeJob((TransactionJob) object);
+			else if(object instanceof FundsTransferRequest)
+				content = BinaryTransferCodec.encodeRequest((FundsTransferRequest) object);
+			else
+				content = BinaryTransferCodec.encodeError((ResourceException) object);
+		}catch(IllegalArgumentException e) {
+			throw new HttpMessageNotWritableException("Cannot write binary content: " + e.getMessage(), e);
+		}
+		outputMessage.getHeaders().setContentLength(content.length);
+		outputMessage.getBody().write(content);
+	}
+}
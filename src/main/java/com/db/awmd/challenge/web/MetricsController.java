@@ -0,0 +1,62 @@
+package com.db.awmd.challenge.web;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.db.awmd.challenge.engine.StuckTransferSweeper;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.metrics.ExecutorGauges;
+import com.db.awmd.challenge.metrics.IdempotencyCounters;
+import com.db.awmd.challenge.metrics.MetricsReport;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.service.AdmissionController;
+import com.db.awmd.challenge.service.TransferNotifier;
+
+/**
+ * Exposes the latency of the stages of the transfers and the saturation of the thread pools.
+ * @author sinkar
+ *
+ */
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+	@Autowired
+	private TransferMetrics transferMetrics;
+	
+	// The thread pools, by bean name; the debit/credit pools only exist with the executor based transfer engine.
+	@Autowired
+	private Map<String, ThreadPoolTaskExecutor> executors;
+	
+	@Autowired
+	private TransactionIdempotency transactionIdempotency;
+	
+	@Autowired
+	private StuckTransferSweeper stuckTransferSweeper;
+	
+	@Autowired
+	private TransferNotifier transferNotifier;
+	
+	@Autowired
+	private AdmissionController admissionController;
+	
+	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+	public MetricsReport getMetrics() {
+		MetricsReport metricsReport = new MetricsReport();
+		metricsReport.getLatencies().putAll(transferMetrics.getLatencies());
+		for(Map.Entry<String, ThreadPoolTaskExecutor> executor : executors.entrySet())
+			metricsReport.getExecutors().put(executor.getKey(), ExecutorGauges.of(executor.getValue()));
+		metricsReport.getIdempotency().put("debitedTransactions", IdempotencyCounters.of(transactionIdempotency.getDebitedTransactions()));
+		metricsReport.getIdempotency().put("creditedTransactions", IdempotencyCounters.of(transactionIdempotency.getCreditedTransactions()));
+		metricsReport.setSweeper(stuckTransferSweeper.getGauges());
+		metricsReport.setNotifications(transferNotifier.getGauges());
+		metricsReport.setAdmission(admissionController.getGauges());
+		return metricsReport;
+	}
+}
@@ -1,9 +1,10 @@
 package com.db.awmd.challenge.web;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -11,14 +12,23 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.db.awmd.challenge.client.FundsTransferRequest;
 import com.db.awmd.challenge.client.Link;
+import com.db.awmd.challenge.client.LinkTemplate;
 import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.client.TransactionJobBatch;
+import com.db.awmd.challenge.client.TransactionJobList;
 import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.service.AdmissionController;
 import com.db.awmd.challenge.service.TransactionService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -28,18 +38,56 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class TransactionController {
 	
+	private static final String PREFER_HEADER = "Prefer";
+	
+	// The links of the responses are shared templates, into which only the transaction job id is spliced.
+	private static final LinkTemplate JOB_STATUS_LINK = new LinkTemplate("Link to get transaction job status", HttpMethod.GET.name(), "transactionJobStatus",
+			"/v1/transaction/jobs/", TransactionJob.MEDIA_TYPE_JSON);
+	private static final LinkTemplate SELF_LINK = new LinkTemplate("Link to get transaction job status", HttpMethod.GET.name(), Link.REL_SELF,
+			"/v1/transaction/jobs/", TransactionJob.MEDIA_TYPE_JSON);
+	
 	@Autowired
 	private TransactionService transactionService;
 	
+	@Autowired
+	private AdmissionController admissionController;
+	
+	@Value("${transaction.sync-wait.max-seconds:30}")
+	private long maxWaitSeconds;
+	
 
 	/**
 	 * Initiate a transaction between two accounts for a given amount.
+	 * With the header 'Prefer: wait=N' (RFC 7240), respond only once the transaction job is completed, or after N seconds at
+	 * the latest (capped by 'transaction.sync-wait.max-seconds') with its status at that time. No request thread is held
+	 * while waiting; the response is completed by the thread completing the job. Without a 'wait' preference, the response
+	 * is returned right away, without an async dispatch.
 	 * @param fundsTransferRequest The request object encapsulation the transaction request.
-	 * @return An instance of TransactionJob which corresponds to an async job created to cater to transaction request.
+	 * @param prefer The preferences of the client: 'wait=N', and/or 'return=minimal' for a response without HATEOAS links.
+	 * @return The ResponseEntity of the TransactionJob which corresponds to an async job created to cater to transaction request,
+	 * or with 'wait', the DeferredResult of it, completed unless the wait was over first.
 	 */
 	@RequestMapping(value = "/jobs", produces = {TransactionJob.MEDIA_TYPE_JSON,
-			MediaType.APPLICATION_JSON_VALUE },consumes={FundsTransferRequest.MEDIA_TYPE_JSON, MediaType.APPLICATION_JSON_VALUE}, method = RequestMethod.POST)
-	public ResponseEntity<Object> startTransaction(@RequestBody FundsTransferRequest fundsTransferRequest) {
+			MediaType.APPLICATION_JSON_VALUE, TransactionJob.MEDIA_TYPE_BINARY },consumes={FundsTransferRequest.MEDIA_TYPE_JSON, MediaType.APPLICATION_JSON_VALUE,
+			FundsTransferRequest.MEDIA_TYPE_BINARY}, method = RequestMethod.POST)
+	public Object startTransaction(@RequestBody FundsTransferRequest fundsTransferRequest,
+			@RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+		ResponseEntity<Object> response = initiateTransaction(fundsTransferRequest, prefer);
+		long waitSeconds = Math.min(parseWaitSeconds(prefer), maxWaitSeconds);
+		// Spring MVC picks the handling of the returned value by its runtime type.
+		if(waitSeconds <= 0 || !(response.getBody() instanceof TransactionJob))
+			return response;
+		
+		String transactionJobId = ((TransactionJob) response.getBody()).getTransactionJobId();
+		DeferredResult<ResponseEntity<Object>> deferredResult = new DeferredResult<>(TimeUnit.SECONDS.toMillis(waitSeconds));
+		Runnable stopWaiting = transactionService.awaitTransactionJobCompletion(transactionJobId,
+				completedJob -> deferredResult.setResult(jobResponse(completedJob, response.getHeaders(), prefer)));
+		deferredResult.onTimeout(() -> deferredResult.setResult(jobResponse(transactionService.getTransactionJobStatus(transactionJobId), response.getHeaders(), prefer)));
+		deferredResult.onCompletion(stopWaiting);
+		return deferredResult;
+	}
+	
+	private ResponseEntity<Object> initiateTransaction(FundsTransferRequest fundsTransferRequest, String prefer) {
 		log.info("Received transaction request {}", fundsTransferRequest);
 	    if(fundsTransferRequest == null)
 	    	System.out.println("fundsTransferRequest is NULL");
@@ -50,12 +98,12 @@ public class TransactionController {
 	    try {
 	    	transactionJob = transactionService.transferFunds(fundsTransferRequest);
 	    	log.info("Transaction initiated : {}", transactionJob.getTransactionJobId());
-	    	addHATEOASLinksForJob(transactionJob, "transactionJobStatus");
+	    	addHATEOASLinksForJob(transactionJob, JOB_STATUS_LINK, prefer);
 	    	
 	    	// Add Location header for newly created resource
-			headers.add(HttpHeaders.LOCATION, transactionJob.getLinks().get(0).getRel());
+			headers.add(HttpHeaders.LOCATION, JOB_STATUS_LINK.uriFor(transactionJob.getTransactionJobId()));
 	    }catch(ResourceException e) {
-	    	return new ResponseEntity<>(e, HttpStatus.BAD_REQUEST);
+	    	return rejectedResponse(e);
 	    }catch(Throwable t) {
 	    	log.error("Uncaught exception encountered while transferring funds for request: " + fundsTransferRequest, t);
 	    	return new ResponseEntity<>("An internal server error occured.", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -64,21 +112,98 @@ public class TransactionController {
 	    return new ResponseEntity<>(transactionJob, headers, HttpStatus.OK);
 	}
 
+	/**
+	 * A transfer shed by the admission control is answered with 429 and the time after which to retry; any other rejection with 400.
+	 */
+	private ResponseEntity<Object> rejectedResponse(ResourceException e) {
+		if(e.getHttpStatus() != HttpStatus.TOO_MANY_REQUESTS)
+			return new ResponseEntity<>(e, HttpStatus.BAD_REQUEST);
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, Long.toString(admissionController.getRetryAfterSeconds()));
+		return new ResponseEntity<>(e, headers, HttpStatus.TOO_MANY_REQUESTS);
+	}
+	
+	private ResponseEntity<Object> jobResponse(TransactionJob transactionJob, HttpHeaders headers, String prefer) {
+		addHATEOASLinksForJob(transactionJob, JOB_STATUS_LINK, prefer);
+		return new ResponseEntity<>(transactionJob, headers, HttpStatus.OK);
+	}
+	
+	/**
+	 * @param prefer The value of the Prefer header, e.g. 'respond-async, wait=10'.
+	 * @return The seconds of the 'wait' preference, or 0 without one.
+	 */
+	private static long parseWaitSeconds(String prefer) {
+		String wait = preference(prefer, "wait");
+		try {
+			return wait == null ? 0 : Long.parseLong(wait);
+		}catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * @param prefer The value of the Prefer header, or null.
+	 * @param name The name of a preference.
+	 * @return The value of the preference, or null if the client did not express it.
+	 */
+	private static String preference(String prefer, String name) {
+		if(prefer == null)
+			return null;
+		for(String preference : prefer.split(",")) {
+			String[] nameAndValue = preference.split(";")[0].trim().split("=", 2);
+			if(nameAndValue.length == 2 && name.equalsIgnoreCase(nameAndValue[0].trim()))
+				return nameAndValue[1].trim();
+		}
+		return null;
+	}
+
+	/**
+	 * Initiate a batch of transactions with a single request.
+	 * Each request of the batch is validated on its own; a request failing validation does not prevent the others from being started.
+	 * @param fundsTransferRequests The array of transaction requests.
+	 * @param prefer The preferences of the client; with 'return=minimal', the transaction jobs have no HATEOAS links.
+	 * @return An instance of TransactionJobBatch holding the TransactionJob or the validation error of every request, in the order of the requests.
+	 */
+	@RequestMapping(value = "/jobs/batch", produces = {TransactionJobBatch.MEDIA_TYPE_JSON,
+			MediaType.APPLICATION_JSON_VALUE },consumes={FundsTransferRequest.MEDIA_TYPE_JSON, MediaType.APPLICATION_JSON_VALUE}, method = RequestMethod.POST)
+	public ResponseEntity<Object> startTransactions(@RequestBody List<FundsTransferRequest> fundsTransferRequests,
+			@RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+		log.info("Received batch of {} transaction requests", fundsTransferRequests == null ? 0 : fundsTransferRequests.size());
+		TransactionJobBatch transactionJobBatch = null;
+		try {
+			transactionJobBatch = transactionService.transferFunds(fundsTransferRequests);
+			log.info("Transaction batch initiated : {} accepted, {} rejected", transactionJobBatch.getAcceptedCount(), transactionJobBatch.getRejectedCount());
+			for(TransactionJobBatch.Result result : transactionJobBatch.getResults()) {
+				if(result.getTransactionJob() != null)
+					addHATEOASLinksForJob(result.getTransactionJob(), JOB_STATUS_LINK, prefer);
+			}
+		}catch(ResourceException e) {
+			return rejectedResponse(e);
+		}catch(Throwable t) {
+			log.error("Uncaught exception encountered while transferring funds for a batch of requests", t);
+			return new ResponseEntity<>("An internal server error occured.", HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+		
+		return new ResponseEntity<>(transactionJobBatch, HttpStatus.OK);
+	}
 	
 	/**
 	 * Get the TransactionJob for a given transaction job id.
 	 * @param transactionJobId The transaction id for which the details are to be retrieved.
+	 * @param prefer The preferences of the client; with 'return=minimal', the response has no HATEOAS links.
 	 * @return An instance of TransactionJob corresponding to the transactionJobId.
 	 */
 	@RequestMapping(value = "/jobs/{transactionJobId}", produces = { TransactionJob.MEDIA_TYPE_JSON,
-			MediaType.APPLICATION_JSON_VALUE }, method = RequestMethod.GET)
-	public ResponseEntity<Object> getTransferJobStatus(@PathVariable String transactionJobId) {
+			MediaType.APPLICATION_JSON_VALUE, TransactionJob.MEDIA_TYPE_BINARY }, method = RequestMethod.GET)
+	public ResponseEntity<Object> getTransferJobStatus(@PathVariable String transactionJobId,
+			@RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
 		log.info("Retrieving transaction job status for transactionJobId {}", transactionJobId);
 	    
 	    TransactionJob transactionJob = null;
 	    try {
 	    	transactionJob = transactionService.getTransactionJobStatus(transactionJobId);
-	    	addHATEOASLinksForJob(transactionJob, Link.REL_SELF);
+	    	addHATEOASLinksForJob(transactionJob, SELF_LINK, prefer);
 	    }catch(ResourceException e) {
 	    	return new ResponseEntity<>(e, HttpStatus.BAD_REQUEST);
 	    }catch(Throwable t) {
@@ -90,17 +215,70 @@ public class TransactionController {
 	}
 	  
 	/**
-	 * Adds the HATEOAS links to the REST response.
-	 * @param transactionJob The transaction Job to which the links are to be added.
-	 * @param rel The name for the link being added.
+	 * Get the transaction jobs of an account and/or in some statuses, e.g. GET /v1/transaction/jobs?accountId=X&status=IN_PROGRESS&status=DEBIT_SUCCESS
+	 * for the jobs of account X still in flight.
+	 * @param accountId The account debited or credited by the jobs; optional if a status is given.
+	 * @param statuses The current statuses of the jobs; optional if an account id is given.
+	 * @param prefer The preferences of the client; with 'return=minimal', the transaction jobs have no HATEOAS links.
+	 * @return An instance of TransactionJobList holding the matching jobs, in the order they were started.
 	 */
-	private void addHATEOASLinksForJob(TransactionJob transactionJob, String rel) {
-		List<Link> links = new ArrayList<Link>();
+	@RequestMapping(value = "/jobs", produces = { TransactionJobList.MEDIA_TYPE_JSON, MediaType.APPLICATION_JSON_VALUE }, method = RequestMethod.GET)
+	public ResponseEntity<Object> findTransferJobs(@RequestParam(value = "accountId", required = false) String accountId,
+			@RequestParam(value = "status", required = false) List<TransactionStatus> statuses,
+			@RequestHeader(value = PREFER_HEADER, required = false) String prefer) {
+		log.info("Retrieving transaction jobs for account {} and statuses {}", accountId, statuses);
 		
-		Link jobStatusLink = new Link("Link to get transaction job status", HttpMethod.GET.name(), rel, "/v1/transaction/jobs/"+ transactionJob.getTransactionJobId(),
-				TransactionJob.MEDIA_TYPE_JSON);
-		links.add(jobStatusLink);
+		TransactionJobList transactionJobList = null;
+		try {
+			transactionJobList = transactionService.findTransactionJobs(accountId, statuses);
+			for(TransactionJob transactionJob : transactionJobList.getTransactionJobs())
+				addHATEOASLinksForJob(transactionJob, SELF_LINK, prefer);
+		}catch(ResourceException e) {
+			return new ResponseEntity<>(e, e.getHttpStatus());
+		}catch(Throwable t) {
+			log.error("Uncaught exception encountered while querying transaction jobs", t);
+			return new ResponseEntity<>("An internal server error occured.", HttpStatus.INTERNAL_SERVER_ERROR);
+		}
 		
-		transactionJob.setLinks(links);
+		return new ResponseEntity<>(transactionJobList, HttpStatus.OK);
+	}
+	
+	/**
+	 * Streams the status transitions of a transaction job as Server-Sent Events, instead of polling its status.
+	 * The stream starts with the current status of the job and ends after its terminal status.
+	 * @param transactionJobId The transaction job id whose transitions are to be streamed.
+	 * @return The stream of TransactionJob events, or NOT_FOUND for an unknown transactionJobId.
+	 */
+	@RequestMapping(value = "/jobs/{transactionJobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE, method = RequestMethod.GET)
+	public ResponseEntity<SseEmitter> streamTransferJobStatus(@PathVariable String transactionJobId) {
+		log.info("Subscribing to transaction job events for transactionJobId {}", transactionJobId);
+		try {
+			return new ResponseEntity<>(transactionService.subscribeToTransactionJob(transactionJobId), HttpStatus.OK);
+		}catch(ResourceException e) {
+			return new ResponseEntity<>(e.getHttpStatus());
+		}
+	}
+	
+	/**
+	 * Streams the status transitions of all the transaction jobs debiting or crediting the given accounts as Server-Sent Events,
+	 * until the client disconnects or the stream times out.
+	 * @param accountIds The accounts whose transaction jobs are to be streamed.
+	 * @return The stream of TransactionJob events.
+	 */
+	@RequestMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE, method = RequestMethod.GET)
+	public SseEmitter streamAccountTransactions(@RequestParam("accountId") List<String> accountIds) {
+		log.info("Subscribing to transaction job events for accounts {}", accountIds);
+		return transactionService.subscribeToAccountTransactions(accountIds);
+	}
+	  
+	/**
+	 * Adds the HATEOAS links to the REST response, unless the client prefers a minimal representation.
+	 * @param transactionJob The transaction Job to which the links are to be added.
+	 * @param linkTemplate The template of the link being added.
+	 * @param prefer The value of the Prefer header, or null.
+	 */
+	private void addHATEOASLinksForJob(TransactionJob transactionJob, LinkTemplate linkTemplate, String prefer) {
+		if(!"minimal".equalsIgnoreCase(preference(prefer, "return")))
+			transactionJob.setLinks(linkTemplate.linksFor(transactionJob.getTransactionJobId()));
 	}
 }
\ No newline at end of file
@@ -4,14 +4,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
 import com.db.awmd.challenge.service.AccountsService;
 import com.db.awmd.challenge.service.TransactionService;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -107,4 +110,65 @@ public class AccountsControllerTest {
       .andExpect(
         content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
   }
+
+  @Test
+  public void getPostingsPageByPage() throws Exception {
+    this.accountsService.createAccount(new Account("Id-A", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("Id-B", new BigDecimal("1000")));
+    String prefix = "T" + System.currentTimeMillis() + "-";
+    this.accountsService.debitSourceAccountForTransaction(transaction(prefix + 1, "Id-A", "Id-B", "100"));
+    this.accountsService.creditTargetAccountForTransaction(transaction(prefix + 1, "Id-A", "Id-B", "100"));
+    this.accountsService.debitSourceAccountForTransaction(transaction(prefix + 2, "Id-B", "Id-A", "30"));
+    this.accountsService.debitSourceAccountForTransaction(transaction(prefix + 3, "Id-B", "Id-A", "20"));
+    this.accountsService.creditTargetAccountForTransactions(
+      Arrays.asList(transaction(prefix + 2, "Id-B", "Id-A", "30"), transaction(prefix + 3, "Id-B", "Id-A", "20")));
+
+    // Newest first: the batch credits carry the running balance after each of them.
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings?limit=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.postings.length()").value(2))
+      .andExpect(jsonPath("$.postings[0].sequence").value(3))
+      .andExpect(jsonPath("$.postings[0].type").value("CREDIT"))
+      .andExpect(jsonPath("$.postings[0].balance").value(950))
+      .andExpect(jsonPath("$.postings[1].balance").value(930))
+      .andExpect(jsonPath("$.postings[1].counterpartyAccountId").value("Id-B"))
+      .andExpect(jsonPath("$.nextCursor").value("2"));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings?limit=2&cursor=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.postings.length()").value(1))
+      .andExpect(jsonPath("$.postings[0].type").value("DEBIT"))
+      .andExpect(jsonPath("$.postings[0].amount").value(100))
+      .andExpect(jsonPath("$.postings[0].balance").value(900))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-B/postings"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.postings.length()").value(3))
+      .andExpect(jsonPath("$.postings[0].balance").value(1050))
+      .andExpect(jsonPath("$.postings[2].type").value("CREDIT"));
+  }
+
+  @Test
+  public void getPostingsInvalidRequest() throws Exception {
+    this.accountsService.createAccount(new Account("Id-A", new BigDecimal("1000")));
+
+    this.mockMvc.perform(get("/v1/accounts/Id-unknown/postings")).andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings?cursor=abc")).andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings?cursor=5")).andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings?limit=0")).andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings?limit=501")).andExpect(status().isBadRequest());
+    this.mockMvc.perform(get("/v1/accounts/Id-A/postings"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.postings.length()").value(0));
+  }
+
+  private static TransactionDO transaction(String transactionId, String sourceAccountId, String targetAccountId, String amount) {
+    TransactionDO transactionDO = new TransactionDO();
+    transactionDO.setTransactionId(transactionId);
+    transactionDO.setSourceAccountId(sourceAccountId);
+    transactionDO.setTargetAccountId(targetAccountId);
+    transactionDO.setAmount(new BigDecimal(amount));
+    return transactionDO;
+  }
 }
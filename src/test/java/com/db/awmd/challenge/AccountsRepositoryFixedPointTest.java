@@ -0,0 +1,93 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.repository.AccountsRepositoryFixedPoint;
+import com.db.awmd.challenge.service.AccountsService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "accounts.balance-mode=fixed-point")
+public class AccountsRepositoryFixedPointTest {
+
+	@Autowired
+	private AccountsService accountsService;
+	
+	@Before
+	public void prepare() {
+		// Reset the existing accounts before each test.
+		accountsService.getAccountsRepository().clearAccounts();
+	}
+	
+	@Test
+	public void fixedPointRepositoryIsSelectedByConfiguration() {
+		assertThat(accountsService.getAccountsRepository()).isInstanceOf(AccountsRepositoryFixedPoint.class);
+	}
+	
+	@Test
+	public void debitAndCreditInMinorUnits() throws Exception{
+		this.accountsService.createAccount(new Account("123", new BigDecimal("1000.50")));
+		this.accountsService.createAccount(new Account("abc", new BigDecimal("20")));
+		
+		TransactionDO transactionDO = transaction("12345", "123", "abc", "0.75");
+		accountsService.debitSourceAccountForTransaction(transactionDO);
+		accountsService.creditTargetAccountForTransaction(transactionDO);
+		
+		assertThat(this.accountsService.getAccount("123").getBalance()).isEqualTo(new BigDecimal("999.75"));
+		assertThat(this.accountsService.getAccount("abc").getBalance()).isEqualTo(new BigDecimal("20.75"));
+		
+		// Replay of the same credit must not be applied twice.
+		accountsService.creditTargetAccountForTransaction(transactionDO);
+		assertThat(this.accountsService.getAccount("abc").getBalance()).isEqualTo(new BigDecimal("20.75"));
+	}
+	
+	@Test
+	public void wholeAmountsKeepTheirScale() throws Exception{
+		this.accountsService.createAccount(new Account("123", new BigDecimal(1000)));
+		
+		accountsService.debitSourceAccountForTransaction(transaction("12345", "123", "abc", "100"));
+		
+		assertThat(this.accountsService.getAccount("123").getBalance()).isEqualTo(new BigDecimal(900));
+	}
+	
+	@Test
+	public void debitAccount_failOnInsufficientFunds() throws Exception{
+		this.accountsService.createAccount(new Account("123", new BigDecimal("10")));
+		
+		try {
+			accountsService.debitSourceAccountForTransaction(transaction("12345", "123", "abc", "10.01"));
+			fail("Transaction should have failed and not reached this point due to insufficient funds in source account");
+		}catch(ResourceException e) {
+			assertThat(e.getErrorCode()).isEqualTo(AccountTransactionErrorCodes.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT);
+		}
+		assertThat(this.accountsService.getAccount("123").getBalance()).isEqualTo(new BigDecimal("10"));
+	}
+	
+	@Test
+	public void amountsFinerThanMinorUnitsAreRejected() {
+		assertThat(accountsService.isValidTransferAmount(new BigDecimal("0.01"))).isTrue();
+		assertThat(accountsService.isValidTransferAmount(new BigDecimal("0.001"))).isFalse();
+	}
+	
+	private TransactionDO transaction(String transactionId, String sourceAccountId, String targetAccountId, String amount) {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setAmount(new BigDecimal(amount));
+		transactionDO.setSourceAccountId(sourceAccountId);
+		transactionDO.setTargetAccountId(targetAccountId);
+		transactionDO.setTransactionId(transactionId);
+		return transactionDO;
+	}
+}
@@ -0,0 +1,210 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+
+public class AccountsRepositoryJournaledTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void balancesAreRecoveredFromSnapshotAndJournalTail() throws Exception{
+		AccountsRepositoryJournaled accountsRepository = open(false);
+		accountsRepository.createAccount(new Account("123", new BigDecimal("1000.50")));
+		accountsRepository.createAccount(new Account("abc", new BigDecimal("10")));
+		transfer(accountsRepository, "tx-1", "123", "abc", "100.25");
+		accountsRepository.takeSnapshot();
+
+		transfer(accountsRepository, "tx-2", "abc", "123", "50");
+		accountsRepository.createAccount(new Account("xyz", new BigDecimal("5")));
+
+		// Simulate a crash: the repository is not shut down, so the last transfer is only in the journal.
+		AccountsRepositoryJournaled recoveredRepository = open(false);
+		assertThat(recoveredRepository.getAccount("123").getBalance()).isEqualByComparingTo("950.25");
+		assertThat(recoveredRepository.getAccount("abc").getBalance()).isEqualByComparingTo("60.25");
+		assertThat(recoveredRepository.getAccount("xyz").getBalance()).isEqualByComparingTo("5");
+
+		// New records continue after the ones covered by the snapshot.
+		transfer(recoveredRepository, "tx-3", "123", "xyz", "0.25");
+		recoveredRepository.destroy();
+
+		recoveredRepository = open(true);
+		assertThat(recoveredRepository.getAccount("123").getBalance()).isEqualByComparingTo("950");
+		assertThat(recoveredRepository.getAccount("xyz").getBalance()).isEqualByComparingTo("5.25");
+		recoveredRepository.destroy();
+	}
+
+	@Test
+	public void snapshotDiscardsTheJournalRecordsItCovers() throws Exception{
+		AccountsRepositoryJournaled accountsRepository = open(true);
+		accountsRepository.createAccount(new Account("123", new BigDecimal("1000")));
+		accountsRepository.createAccount(new Account("abc", new BigDecimal("0")));
+		for(int i = 0; i < 100; i++)
+			transfer(accountsRepository, "tx-" + i, "123", "abc", "1");
+
+		File journalFile = new File(temporaryFolder.getRoot(), "accounts.wal");
+		long journalLength = journalFile.length();
+		accountsRepository.takeSnapshot();
+		assertThat(journalFile.length()).isLessThan(journalLength);
+		accountsRepository.destroy();
+
+		AccountsRepositoryJournaled recoveredRepository = open(true);
+		assertThat(recoveredRepository.getAccount("123").getBalance()).isEqualByComparingTo("900");
+		assertThat(recoveredRepository.getAccount("abc").getBalance()).isEqualByComparingTo("100");
+		recoveredRepository.destroy();
+	}
+
+	@Test
+	public void snapshotsTakenDuringTransfersAreConsistent() throws Exception{
+		AccountsRepositoryJournaled accountsRepository = open(true);
+		int accountCount = 16;
+		for(int i = 0; i < accountCount; i++)
+			accountsRepository.createAccount(new Account("account-" + i, new BigDecimal("1000")));
+
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> workers = new ArrayList<>();
+		for(int t = 0; t < 4; t++) {
+			int worker = t;
+			workers.add(executor.submit(() -> {
+				for(int i = 0; running.get(); i++) {
+					String sourceAccountId = "account-" + ((worker + i) % accountCount);
+					String targetAccountId = "account-" + ((worker + 3 * i + 1) % accountCount);
+					transfer(accountsRepository, "tx-" + worker + "-" + i, sourceAccountId, targetAccountId, "1");
+				}
+			}));
+		}
+		for(int i = 0; i < 5; i++)
+			accountsRepository.takeSnapshot();
+		running.set(false);
+		for(Future<?> worker : workers)
+			worker.get();
+		executor.shutdown();
+
+		List<BigDecimal> balances = new ArrayList<>();
+		for(int i = 0; i < accountCount; i++)
+			balances.add(accountsRepository.getAccount("account-" + i).getBalance());
+
+		// Recover from the last snapshot taken during the transfers plus the journal tail.
+		AccountsRepositoryJournaled recoveredRepository = open(true);
+		BigDecimal total = BigDecimal.ZERO;
+		for(int i = 0; i < accountCount; i++) {
+			BigDecimal balance = recoveredRepository.getAccount("account-" + i).getBalance();
+			assertThat(balance).isEqualByComparingTo(balances.get(i));
+			total = total.add(balance);
+		}
+		assertThat(total).isEqualByComparingTo(new BigDecimal(1000 * accountCount));
+		recoveredRepository.destroy();
+	}
+
+	@Test
+	public void refusedDebitsAreNotAppliedOnReplay() throws Exception{
+		TransactionIdempotency transactionIdempotency = new TransactionIdempotency(3600, 1000);
+		AccountsRepositoryJournaled accountsRepository = open(false, transactionIdempotency);
+		accountsRepository.createAccount(new Account("123", new BigDecimal("100")));
+		accountsRepository.createAccount(new Account("abc", new BigDecimal("0")));
+
+		// The debit id of a timed out job is claimed by the sweeper, so its late debit is refused.
+		transactionIdempotency.getDebitedTransactions().tryClaim("tx-timed-out");
+		transfer(accountsRepository, "tx-timed-out", "123", "abc", "10");
+		transfer(accountsRepository, "tx-too-large", "123", "abc", "1000");
+		transfer(accountsRepository, "tx-1", "123", "abc", "30");
+		assertThat(accountsRepository.getAccount("123").getBalance()).isEqualByComparingTo("70");
+
+		// Simulate a crash: the claims are lost, only the applied debits/credits are replayed.
+		AccountsRepositoryJournaled recoveredRepository = open(false);
+		assertThat(recoveredRepository.getAccount("123").getBalance()).isEqualByComparingTo("70");
+		assertThat(recoveredRepository.getAccount("abc").getBalance()).isEqualByComparingTo("30");
+		recoveredRepository.destroy();
+	}
+
+	@Test
+	public void accountsCreatedDuringSnapshotsAreRecovered() throws Exception{
+		AccountsRepositoryJournaled accountsRepository = open(true);
+		int accountCount = 2000;
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<?>> creators = new ArrayList<>();
+		for(int t = 0; t < 4; t++) {
+			int creator = t;
+			creators.add(executor.submit(() -> {
+				for(int i = creator; i < accountCount; i += 4)
+					accountsRepository.createAccount(new Account("account-" + i, new BigDecimal("10")));
+			}));
+		}
+		while(!creators.stream().allMatch(Future::isDone))
+			accountsRepository.takeSnapshot();
+		for(Future<?> creator : creators)
+			creator.get();
+		executor.shutdown();
+
+		// Simulate a crash: the accounts are recovered from the last snapshot plus the journal tail.
+		AccountsRepositoryJournaled recoveredRepository = open(true);
+		for(int i = 0; i < accountCount; i++)
+			assertThat(recoveredRepository.getAccount("account-" + i)).as("account-" + i).isNotNull();
+		recoveredRepository.destroy();
+	}
+
+	@Test
+	public void appliedTransactionIdsAreRecoveredFromTheSnapshot() throws Exception{
+		AccountsRepositoryJournaled accountsRepository = open(true);
+		accountsRepository.createAccount(new Account("123", new BigDecimal("100")));
+		accountsRepository.createAccount(new Account("abc", new BigDecimal("0")));
+		transfer(accountsRepository, "tx-1", "123", "abc", "30");
+		// The snapshot drops the journal records of the transfer.
+		accountsRepository.destroy();
+
+		TransactionIdempotency transactionIdempotency = new TransactionIdempotency(3600, 1000);
+		AccountsRepositoryJournaled recoveredRepository = open(true, transactionIdempotency);
+		assertThat(transactionIdempotency.getDebitedTransactions().contains("tx-1")).isTrue();
+		assertThat(transactionIdempotency.getCreditedTransactions().contains("tx-1")).isTrue();
+
+		// A replayed transfer is still applied only once.
+		transfer(recoveredRepository, "tx-1", "123", "abc", "30");
+		assertThat(recoveredRepository.getAccount("123").getBalance()).isEqualByComparingTo("70");
+		assertThat(recoveredRepository.getAccount("abc").getBalance()).isEqualByComparingTo("30");
+		recoveredRepository.destroy();
+	}
+
+	private AccountsRepositoryJournaled open(boolean groupCommit) throws Exception {
+		return open(groupCommit, new TransactionIdempotency(3600, 1000));
+	}
+
+	private AccountsRepositoryJournaled open(boolean groupCommit, TransactionIdempotency transactionIdempotency) throws Exception {
+		return new AccountsRepositoryJournaled(new File(temporaryFolder.getRoot(), "accounts.wal").getPath(), groupCommit,
+				new File(temporaryFolder.getRoot(), "accounts.snapshot").getPath(), 0, transactionIdempotency);
+	}
+
+	private static void transfer(AccountsRepositoryJournaled accountsRepository, String transactionId, String sourceAccountId, String targetAccountId, String amount) {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(transactionId);
+		transactionDO.setSourceAccountId(sourceAccountId);
+		transactionDO.setTargetAccountId(targetAccountId);
+		transactionDO.setAmount(new BigDecimal(amount));
+		try {
+			accountsRepository.debitAccountForTransaction(transactionDO);
+		}catch(ResourceException e) {
+			return;
+		}
+		accountsRepository.creditAccountForTransaction(transactionDO);
+	}
+}
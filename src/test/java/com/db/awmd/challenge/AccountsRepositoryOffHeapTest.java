@@ -0,0 +1,92 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.ResourceException;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.service.AccountsService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.balance-mode=off-heap", "accounts.off-heap.slots-per-chunk=16"})
+public class AccountsRepositoryOffHeapTest {
+
+	@Autowired
+	private AccountsService accountsService;
+	
+	@Before
+	public void prepare() {
+		// Reset the existing accounts before each test.
+		accountsService.getAccountsRepository().clearAccounts();
+	}
+	
+	@Test
+	public void offHeapRepositoryIsSelectedByConfiguration() {
+		assertThat(accountsService.getAccountsRepository()).isInstanceOf(AccountsRepositoryOffHeap.class);
+	}
+	
+	@Test
+	public void accountsSpanningSeveralChunksAndIndexResizes() {
+		// 16 slots per chunk and an initial index of 1024 entries, so this grows both.
+		for(int i = 0; i < 5000; i++)
+			this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+		this.accountsService.createAccount(new Account("Id\u00e9-\u00fcn\u00efcode", new BigDecimal("10.25")));
+		
+		for(int i = 0; i < 5000; i++)
+			assertThat(this.accountsService.getAccount("Id-" + i).getBalance()).isEqualTo(new BigDecimal(i));
+		assertThat(this.accountsService.getAccount("Id\u00e9-\u00fcn\u00efcode").getBalance()).isEqualTo(new BigDecimal("10.25"));
+		assertThat(this.accountsService.getAccount("Id-5000")).isNull();
+		
+		try {
+			this.accountsService.createAccount(new Account("Id-42"));
+			fail("Should have failed when adding duplicate account");
+		}catch(DuplicateAccountIdException ex) {
+			assertThat(ex.getMessage()).isEqualTo("Account id Id-42 already exists!");
+		}
+	}
+	
+	@Test
+	public void debitAndCredit() throws Exception{
+		this.accountsService.createAccount(new Account("123", new BigDecimal("1000")));
+		this.accountsService.createAccount(new Account("abc", new BigDecimal("20")));
+		
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setAmount(new BigDecimal("100.50"));
+		transactionDO.setSourceAccountId("123");
+		transactionDO.setTargetAccountId("abc");
+		transactionDO.setTransactionId("12345");
+		
+		accountsService.debitSourceAccountForTransaction(transactionDO);
+		accountsService.creditTargetAccountForTransaction(transactionDO);
+		assertThat(this.accountsService.getAccount("123").getBalance()).isEqualTo(new BigDecimal("899.5"));
+		assertThat(this.accountsService.getAccount("abc").getBalance()).isEqualTo(new BigDecimal("120.5"));
+		
+		transactionDO.setTransactionId("67890");
+		transactionDO.setAmount(new BigDecimal("900"));
+		try {
+			accountsService.debitSourceAccountForTransaction(transactionDO);
+			fail("Transaction should have failed and not reached this point due to insufficient funds in source account");
+		}catch(ResourceException e) {
+			assertThat(e.getErrorCode()).isEqualTo(AccountTransactionErrorCodes.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT);
+		}
+		assertThat(this.accountsService.getAccount("123").getBalance()).isEqualTo(new BigDecimal("899.5"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void accountIdLongerThanSlotIsRejected() {
+		this.accountsService.createAccount(new Account("an-account-id-longer-than-23-bytes"));
+	}
+}
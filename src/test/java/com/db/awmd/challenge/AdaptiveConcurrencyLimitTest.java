@@ -0,0 +1,85 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.concurrent.AdaptiveConcurrencyLimit;
+
+public class AdaptiveConcurrencyLimitTest {
+
+	private final AtomicLong nanoClock = new AtomicLong();
+
+	@Test
+	public void acquisitionsBeyondTheLimitAreRejected() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 1, 10, 100, TimeUnit.MILLISECONDS, 0.5, nanoClock::get);
+		assertThat(limit.tryAcquire(2)).isTrue();
+		assertThat(limit.tryAcquire(1)).isTrue();
+		assertThat(limit.tryAcquire(1)).isFalse();
+
+		limit.release(3);
+		// More permits than the limit are only granted when nothing is in flight.
+		assertThat(limit.tryAcquire(5)).isTrue();
+		assertThat(limit.getInFlight()).isEqualTo(5);
+	}
+
+	@Test
+	public void acquisitionsUpToTheLimitArePartiallyGranted() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 1, 10, 100, TimeUnit.MILLISECONDS, 0.5, nanoClock::get);
+		assertThat(limit.tryAcquireUpTo(2)).isEqualTo(2);
+		assertThat(limit.tryAcquireUpTo(5)).isEqualTo(1);
+		assertThat(limit.tryAcquireUpTo(1)).isZero();
+
+		limit.release(3);
+		assertThat(limit.tryAcquireUpTo(5)).isEqualTo(3);
+		assertThat(limit.getInFlight()).isEqualTo(3);
+	}
+
+	@Test
+	public void limitIncreasesAdditivelyAndDecreasesMultiplicatively() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 10, 100, TimeUnit.MILLISECONDS, 0.5, nanoClock::get);
+
+		// 4 fast completions with the limit in use: +1/4 each.
+		for(int i = 0; i < 4; i++) {
+			limit.tryAcquire(4);
+			limit.complete(TimeUnit.MILLISECONDS.toNanos(10));
+			limit.release(3);
+		}
+		assertThat(limit.getLimit()).isEqualTo(4);
+		limit.tryAcquire(4);
+		limit.complete(TimeUnit.MILLISECONDS.toNanos(10));
+		limit.release(3);
+		assertThat(limit.getLimit()).isEqualTo(5);
+
+		// Late completions halve the limit once per target latency only.
+		limit.tryAcquire(2);
+		limit.complete(TimeUnit.MILLISECONDS.toNanos(300));
+		limit.complete(TimeUnit.MILLISECONDS.toNanos(300));
+		assertThat(limit.getLimit()).isEqualTo(2);
+		nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+		limit.tryAcquire(1);
+		limit.complete(TimeUnit.MILLISECONDS.toNanos(300));
+		assertThat(limit.getLimit()).isEqualTo(1);
+		assertThat(limit.getInFlight()).isZero();
+	}
+
+	@Test
+	public void backOffDecreasesTheLimitOncePerTargetLatency() {
+		AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10, 100, TimeUnit.MILLISECONDS, 0.5, nanoClock::get);
+
+		limit.backOff();
+		limit.backOff();
+		assertThat(limit.getLimit()).isEqualTo(4);
+		// A late completion right after the backoff does not shrink the limit again.
+		limit.tryAcquire(1);
+		limit.complete(TimeUnit.MILLISECONDS.toNanos(300));
+		assertThat(limit.getLimit()).isEqualTo(4);
+
+		nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+		limit.backOff();
+		assertThat(limit.getLimit()).isEqualTo(2);
+	}
+}
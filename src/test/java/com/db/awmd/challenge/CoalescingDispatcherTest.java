@@ -0,0 +1,70 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.concurrent.CoalescingDispatcher;
+
+public class CoalescingDispatcherTest {
+
+	private final Map<String, List<String>> digests = new ConcurrentHashMap<>();
+
+	@Test
+	public void messagesOfAKeyAreDeliveredAsOneDigest() throws Exception {
+		CoalescingDispatcher dispatcher = new CoalescingDispatcher(100, 50, TimeUnit.MILLISECONDS, 100,
+				(key, messages) -> digests.put(key, new ArrayList<>(messages)), "testDispatcher");
+		dispatcher.offer("123", "debited by 10");
+		dispatcher.offer("abc", "credited with 10");
+		dispatcher.offer("123", "debited by 20");
+		dispatcher.offer("123", "debited by 30");
+
+		while(dispatcher.getDelivered() < 4)
+			Thread.sleep(5);
+		assertThat(dispatcher.getDeliveredDigests()).isEqualTo(2);
+		assertThat(digests.get("123")).containsExactly("debited by 10", "debited by 20", "debited by 30");
+		assertThat(digests.get("abc")).containsExactly("credited with 10");
+		dispatcher.stop();
+	}
+
+	@Test
+	public void oldestMessagesAreDroppedWhenTheQueueIsFull() throws Exception {
+		CountDownLatch delivering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CoalescingDispatcher dispatcher = new CoalescingDispatcher(3, 1, TimeUnit.MILLISECONDS, 1, (key, messages) -> {
+			digests.merge(key, new ArrayList<>(messages), (previous, next) -> {
+				previous.addAll(next);
+				return previous;
+			});
+			delivering.countDown();
+			await(release);
+		}, "testDispatcher");
+
+		// The worker is held by the delivery of the first message, so the next ones stay queued.
+		dispatcher.offer("123", "m0");
+		await(delivering);
+		for(int i = 1; i <= 5; i++)
+			dispatcher.offer("123", "m" + i);
+
+		assertThat(dispatcher.getDropped()).isEqualTo(2);
+		assertThat(dispatcher.size()).isEqualTo(3);
+		release.countDown();
+		dispatcher.stop();
+		assertThat(digests.get("123")).containsExactly("m0", "m3", "m4", "m5");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
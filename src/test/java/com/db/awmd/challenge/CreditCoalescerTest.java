@@ -0,0 +1,56 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.engine.CreditCoalescer;
+
+public class CreditCoalescerTest {
+
+	private final List<List<TransactionDO>> flushedBatches = new CopyOnWriteArrayList<>();
+
+	@Test
+	public void fullBatchIsFlushedOnTheSubmittingThread() {
+		CreditCoalescer creditCoalescer = new CreditCoalescer(60_000, 3, credits -> flushedBatches.add(new ArrayList<>(credits)), ForkJoinPool.commonPool());
+		for(int i = 0; i < 7; i++)
+			creditCoalescer.submit(credit("tx-" + i, i % 2 == 0 ? "merchant" : "settlement"));
+
+		// 4 credits to 'merchant' and 3 to 'settlement': one full batch of each.
+		assertThat(flushedBatches).hasSize(2);
+		assertThat(flushedBatches.get(0)).extracting("targetAccountId").containsOnly("merchant");
+		assertThat(flushedBatches.get(1)).extracting("transactionId").containsExactly("tx-1", "tx-3", "tx-5");
+
+		creditCoalescer.close();
+		assertThat(flushedBatches).hasSize(3);
+		assertThat(flushedBatches.get(2)).extracting("transactionId").containsExactly("tx-6");
+	}
+
+	@Test
+	public void partialBatchIsFlushedAtTheEndOfTheWindow() throws Exception {
+		CreditCoalescer creditCoalescer = new CreditCoalescer(20, 100, credits -> flushedBatches.add(new ArrayList<>(credits)), ForkJoinPool.commonPool());
+		creditCoalescer.submit(credit("tx-1", "merchant"));
+		creditCoalescer.submit(credit("tx-2", "merchant"));
+
+		while(flushedBatches.isEmpty())
+			Thread.sleep(5);
+		assertThat(flushedBatches.get(0)).extracting("transactionId").containsExactly("tx-1", "tx-2");
+		creditCoalescer.close();
+	}
+
+	private static TransactionDO credit(String transactionId, String targetAccountId) {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(transactionId);
+		transactionDO.setSourceAccountId("123");
+		transactionDO.setTargetAccountId(targetAccountId);
+		transactionDO.setAmount(BigDecimal.ONE);
+		return transactionDO;
+	}
+}
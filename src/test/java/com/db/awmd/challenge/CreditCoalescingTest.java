@@ -0,0 +1,80 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.db.awmd.challenge.client.FundsTransferRequest;
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransactionService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"transfer.credit-coalescing.enabled=true", "transfer.credit-coalescing.window-millis=5", "transfer.credit-coalescing.max-credits=16"})
+public class CreditCoalescingTest {
+
+	@Autowired
+	private TransactionService transactionService;
+	
+	@Autowired
+	private AccountsService accountsService;
+	
+	@Before
+	public void prepare() {
+		// Reset the existing accounts and transactions before each test.
+		accountsService.getAccountsRepository().clearAccounts();
+		transactionService.clearTransactions();
+	}
+	
+	@Test
+	public void creditsToHotAccountAreAllApplied() throws Exception{
+		accountsService.createAccount(new Account("merchant", BigDecimal.ZERO));
+		for(int i = 0; i < 8; i++)
+			accountsService.createAccount(new Account("customer-" + i, new BigDecimal(1000)));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<TransactionJob>> transactionJobs = new ArrayList<>();
+		for(int round = 0; round < 25; round++) {
+			for(int i = 0; i < 8; i++) {
+				FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+				fundsTransferRequest.setSourceAccountId("customer-" + i);
+				fundsTransferRequest.setTargetAccountId("merchant");
+				fundsTransferRequest.setAmount(new BigDecimal("1.5"));
+				transactionJobs.add(executor.submit(() -> transactionService.transferFunds(fundsTransferRequest)));
+			}
+		}
+		
+		for(Future<TransactionJob> transactionJob : transactionJobs)
+			assertThat(waitForCompletion(transactionJob.get()).getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+		executor.shutdown();
+		
+		assertThat(accountsService.getAccount("merchant").getBalance()).isEqualByComparingTo("300");
+		for(int i = 0; i < 8; i++)
+			assertThat(accountsService.getAccount("customer-" + i).getBalance()).isEqualByComparingTo("962.5");
+	}
+	
+	private TransactionJob waitForCompletion(TransactionJob transactionJob) throws Exception{
+		// Bounded to 5 seconds, so that a lost debit or credit fails the test instead of hanging the build.
+		for(int i = 0; i < 250 && (transactionJob.getTransactionStatus().equals(TransactionStatus.IN_PROGRESS) || transactionJob.getTransactionStatus().equals(TransactionStatus.DEBIT_SUCCESS)); i++) {
+			// Sleep for 20 milli seconds before polling the status again
+			Thread.sleep(20);
+			
+			transactionJob = transactionService.getTransactionJobStatus(transactionJob.getTransactionJobId());
+		}
+		return transactionJob;
+	}
+}
@@ -0,0 +1,48 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.concurrent.HashedWheelTimer;
+
+public class HashedWheelTimerTest {
+
+	@Test
+	public void tasksRunAfterTheirDelayInDeadlineOrder() throws Exception{
+		// A small wheel, so that the longest delays take several turns of it.
+		HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8, "testTimer");
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(3);
+		long start = System.nanoTime();
+		try {
+			timer.schedule(() -> { order.add(40); done.countDown(); }, 40, TimeUnit.MILLISECONDS);
+			timer.schedule(() -> { order.add(0); done.countDown(); }, 0, TimeUnit.MILLISECONDS);
+			timer.schedule(() -> { order.add(15); done.countDown(); }, 15, TimeUnit.MILLISECONDS);
+
+			assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+			assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(40);
+			assertThat(order).containsExactly(0, 15, 40);
+		}finally {
+			timer.stop();
+		}
+	}
+
+	@Test
+	public void failingTaskDoesNotStopTheTimer() throws Exception{
+		HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8, "testTimer");
+		CountDownLatch done = new CountDownLatch(1);
+		try {
+			timer.schedule(() -> { throw new IllegalStateException("failure"); }, 1, TimeUnit.MILLISECONDS);
+			timer.schedule(done::countDown, 5, TimeUnit.MILLISECONDS);
+			assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		}finally {
+			timer.stop();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.idempotency.IdempotencyStore;
+
+public class IdempotencyStoreTest {
+
+	private final AtomicLong clock = new AtomicLong(1_000_000);
+
+	@Test
+	public void replayedIdIsDetectedUntilItExpires() {
+		IdempotencyStore idempotencyStore = new IdempotencyStore(60, TimeUnit.SECONDS, 4, 1000, clock::get);
+
+		assertThat(idempotencyStore.tryClaim("tx-1")).isTrue();
+		assertThat(idempotencyStore.tryClaim("tx-1")).isFalse();
+
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(59));
+		assertThat(idempotencyStore.tryClaim("tx-1")).isFalse();
+
+		// The generation of tx-1 ends when the next one starts; it is dropped a time-to-live later.
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(61));
+		assertThat(idempotencyStore.tryClaim("tx-2")).isTrue();
+		assertThat(idempotencyStore.contains("tx-1")).isFalse();
+		assertThat(idempotencyStore.tryClaim("tx-1")).isTrue();
+
+		assertThat(idempotencyStore.getHits()).isEqualTo(2);
+		assertThat(idempotencyStore.getMisses()).isEqualTo(3);
+		assertThat(idempotencyStore.getExpirations()).isEqualTo(1);
+		assertThat(idempotencyStore.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void releasedIdCanBeClaimedAgain() {
+		IdempotencyStore idempotencyStore = new IdempotencyStore(60, TimeUnit.SECONDS, 4, 1000, clock::get);
+
+		assertThat(idempotencyStore.tryClaim("tx-1")).isTrue();
+		idempotencyStore.release("tx-1");
+		assertThat(idempotencyStore.tryClaim("tx-1")).isTrue();
+		assertThat(idempotencyStore.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void oldestGenerationsAreEvictedAboveTheMaximumSize() {
+		IdempotencyStore idempotencyStore = new IdempotencyStore(60, TimeUnit.SECONDS, 4, 100, clock::get);
+
+		for(int i = 0; i < 80; i++)
+			idempotencyStore.tryClaim("old-" + i);
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(15));
+		for(int i = 0; i < 40; i++)
+			idempotencyStore.tryClaim("new-" + i);
+
+		assertThat(idempotencyStore.size()).isLessThanOrEqualTo(100);
+		assertThat(idempotencyStore.getEvictions()).isEqualTo(80);
+		assertThat(idempotencyStore.contains("old-0")).isFalse();
+		assertThat(idempotencyStore.contains("new-39")).isTrue();
+	}
+}
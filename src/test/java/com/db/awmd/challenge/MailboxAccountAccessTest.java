@@ -0,0 +1,159 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.db.awmd.challenge.engine.MailboxAccountAccess;
+
+public class MailboxAccountAccessTest {
+
+	private final MailboxAccountAccess accountAccess = new MailboxAccountAccess();
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void close() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void parkedOperationsRunOneAtATimeInArrivalOrder() throws Exception{
+		int operations = 1000;
+		List<Integer> applied = new ArrayList<>();
+		AtomicBoolean busy = new AtomicBoolean();
+		AtomicBoolean overlapped = new AtomicBoolean();
+		CountDownLatch done = new CountDownLatch(operations);
+
+		for(int i = 0; i < operations; i++) {
+			int operation = i;
+			accountAccess.execute("123", () -> {
+				if(!busy.compareAndSet(false, true))
+					overlapped.set(true);
+				// Not thread-safe on purpose: the mailbox must give each operation exclusive access.
+				applied.add(operation);
+				busy.set(false);
+				return done::countDown;
+			}, executor, null);
+		}
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(overlapped.get()).isFalse();
+		assertThat(applied).hasSize(operations);
+		for(int i = 0; i < operations; i++)
+			assertThat(applied.get(i)).isEqualTo(i);
+	}
+
+	@Test
+	public void accountsDoNotWaitForEachOther() throws Exception{
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		executor.execute(() -> accountAccess.execute("123", () -> {
+			try {
+				release.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}, executor, null));
+
+		// Runs right away on the calling thread, while the other account is busy.
+		accountAccess.execute("abc", () -> {
+			done.countDown();
+			return null;
+		}, executor, null);
+		assertThat(done.getCount()).isEqualTo(0);
+		release.countDown();
+	}
+
+	@Test
+	public void failingOperationReleasesTheAccount() throws Exception{
+		CountDownLatch done = new CountDownLatch(1);
+		try {
+			accountAccess.execute("123", () -> { throw new IllegalStateException("failure"); }, executor, null);
+		}catch(IllegalStateException e) {
+			// Expected.
+		}
+		accountAccess.execute("123", () -> {
+			done.countDown();
+			return null;
+		}, executor, null);
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void parkedOperationsRunOnTheReleasingThreadWhenTheExecutorIsSaturated() throws Exception{
+		int operations = 100000;
+		AtomicInteger applied = new AtomicInteger();
+		AtomicInteger followUps = new AtomicInteger();
+		CountDownLatch parked = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		Executor saturatedExecutor = task -> { throw new RejectedExecutionException("saturated"); };
+
+		// Holds the account until every other operation is parked behind it.
+		executor.execute(() -> accountAccess.execute("123", () -> {
+			try {
+				parked.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return followUps::incrementAndGet;
+		}, executor, null));
+		Thread.sleep(50);
+		for(int i = 0; i < operations; i++) {
+			accountAccess.execute("123", () -> {
+				applied.incrementAndGet();
+				return followUps::incrementAndGet;
+			}, saturatedExecutor, null);
+		}
+		accountAccess.execute("123", () -> done::countDown, saturatedExecutor, null);
+		parked.countDown();
+
+		// Run in a loop on the thread releasing the account, without overflowing its stack.
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(applied.get()).isEqualTo(operations);
+		assertThat(followUps.get()).isEqualTo(operations + 1);
+	}
+
+	@Test
+	public void operationsParkedBehindABrokenExecutorAreGivenUp() throws Exception{
+		CountDownLatch parked = new CountDownLatch(1);
+		AtomicInteger givenUp = new AtomicInteger();
+		Executor brokenExecutor = task -> { throw new IllegalStateException("broken"); };
+
+		executor.execute(() -> accountAccess.execute("123", () -> {
+			try {
+				parked.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}, executor, null));
+		Thread.sleep(50);
+		accountAccess.execute("123", () -> null, brokenExecutor, givenUp::incrementAndGet);
+		accountAccess.execute("123", () -> null, brokenExecutor, givenUp::incrementAndGet);
+		parked.countDown();
+
+		// The account is released rather than wedged.
+		for(int i = 0; i < 100 && givenUp.get() < 2; i++)
+			Thread.sleep(50);
+		assertThat(givenUp.get()).isEqualTo(2);
+		CountDownLatch done = new CountDownLatch(1);
+		accountAccess.execute("123", () -> {
+			done.countDown();
+			return null;
+		}, executor, null);
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+}
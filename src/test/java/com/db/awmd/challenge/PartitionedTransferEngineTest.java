@@ -0,0 +1,127 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.db.awmd.challenge.client.FundsTransferRequest;
+import com.db.awmd.challenge.client.TransactionJob;
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.client.TransactionJobBatch;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.engine.PartitionedTransferEngine;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.metrics.TransferMetrics.Stage;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.FundsTransferEngine;
+import com.db.awmd.challenge.service.TransactionService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"transfer.engine=partitioned", "transfer.partitions=4"})
+public class PartitionedTransferEngineTest {
+
+	@Autowired
+	private TransactionService transactionService;
+	
+	@Autowired
+	private AccountsService accountsService;
+	
+	@Autowired
+	private FundsTransferEngine fundsTransferEngine;
+	
+	@Autowired
+	private TransferMetrics transferMetrics;
+	
+	@Before
+	public void prepare() {
+		// Reset the existing accounts and transactions before each test.
+		accountsService.getAccountsRepository().clearAccounts();
+		transactionService.clearTransactions();
+	}
+	
+	@Test
+	public void partitionedEngineIsSelectedByConfiguration() {
+		assertThat(fundsTransferEngine).isInstanceOf(PartitionedTransferEngine.class);
+	}
+	
+	@Test
+	public void transfersInCircleBetweenAccountsOfDifferentPartitions() throws Exception{
+		String[] accountIds = {"123", "abc", "456", "def", "789", "ghi"};
+		for(String accountId : accountIds)
+			createAccount(accountId, 1000);
+		
+		List<TransactionJob> transactionJobs = new ArrayList<>();
+		for(int round = 0; round < 10; round++) {
+			for(int i = 0; i < accountIds.length; i++)
+				transactionJobs.add(transactionService.transferFunds(transferRequest(accountIds[i], accountIds[(i + 1) % accountIds.length], 10)));
+		}
+		
+		for(TransactionJob transactionJob : transactionJobs)
+			assertThat(waitForCompletion(transactionJob).getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+		
+		// Every account sent and received the same amount.
+		for(String accountId : accountIds)
+			assertThat(this.accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo("1000");
+		
+		// The partition queues feed the queueing delay of the admission control.
+		for(Stage stage : new Stage[] {Stage.DEBIT_QUEUE, Stage.DEBIT, Stage.CREDIT_QUEUE, Stage.CREDIT})
+			assertThat(transferMetrics.getLatencies().get(stage).getCount()).isGreaterThan(0);
+	}
+	
+	@Test
+	public void batchOfTransfersIsGroupedBySourceAccount() throws Exception{
+		String[] accountIds = {"123", "abc", "456", "def"};
+		for(String accountId : accountIds)
+			createAccount(accountId, 1000);
+		
+		List<FundsTransferRequest> fundsTransferRequests = new ArrayList<>();
+		for(int round = 0; round < 10; round++) {
+			for(int i = 0; i < accountIds.length; i++)
+				fundsTransferRequests.add(transferRequest(accountIds[i], accountIds[(i + round % 3 + 1) % accountIds.length], 10));
+		}
+		TransactionJobBatch transactionJobBatch = transactionService.transferFunds(fundsTransferRequests);
+		assertThat(transactionJobBatch.getAcceptedCount()).isEqualTo(fundsTransferRequests.size());
+		
+		for(TransactionJobBatch.Result result : transactionJobBatch.getResults())
+			assertThat(waitForCompletion(result.getTransactionJob()).getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+		
+		BigDecimal total = BigDecimal.ZERO;
+		for(String accountId : accountIds)
+			total = total.add(this.accountsService.getAccount(accountId).getBalance());
+		assertThat(total).isEqualByComparingTo("4000");
+	}
+	
+	private TransactionJob waitForCompletion(TransactionJob transactionJob) throws Exception{
+		// Bounded to 5 seconds, so that a lost debit or credit fails the test instead of hanging the build.
+		for(int i = 0; i < 100 && (transactionJob.getTransactionStatus().equals(TransactionStatus.IN_PROGRESS) || transactionJob.getTransactionStatus().equals(TransactionStatus.DEBIT_SUCCESS)); i++) {
+			// Sleep for 50 milli seconds before polling the status again
+			Thread.sleep(50);
+			
+			transactionJob = transactionService.getTransactionJobStatus(transactionJob.getTransactionJobId());
+		}
+		return transactionJob;
+	}
+	
+	private FundsTransferRequest transferRequest(String sourceAccountId, String targetAccountId, int amount) {
+		FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+		fundsTransferRequest.setAmount(new BigDecimal(amount));
+		fundsTransferRequest.setSourceAccountId(sourceAccountId);
+		fundsTransferRequest.setTargetAccountId(targetAccountId);
+		return fundsTransferRequest;
+	}
+	
+	private void createAccount(String accountId, int balance) throws Exception {
+		Account account = new Account(accountId);
+		account.setBalance(new BigDecimal(balance));
+		this.accountsService.createAccount(account);
+	}
+}
@@ -0,0 +1,108 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.db.awmd.challenge.concurrent.AccountLockStripes;
+import com.db.awmd.challenge.engine.RetryPolicy;
+import com.db.awmd.challenge.engine.RetryingAccountAccess;
+
+public class RetryingAccountAccessTest {
+
+	private final AccountLockStripes accountLocks = new AccountLockStripes(16);
+	private final RetryingAccountAccess accountAccess = new RetryingAccountAccess(accountLocks, new RetryPolicy(4, 2, 8, 0.5), 1);
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final ExecutorService accountHolder = Executors.newSingleThreadExecutor();
+
+	@After
+	public void close() {
+		accountAccess.destroy();
+		executor.shutdown();
+		accountHolder.shutdown();
+	}
+
+	@Test
+	public void operationIsRetriedOnceTheAccountIsReleased() throws Exception{
+		CountDownLatch release = holdAccount("123");
+		CountDownLatch done = new CountDownLatch(2);
+		AtomicInteger followUps = new AtomicInteger();
+		ReentrantLock accountLock = accountLocks.lockFor("123");
+		accountAccess.execute("123", () -> {
+			done.countDown();
+			// The follow-up runs once the account is released.
+			return () -> {
+				if(!accountLock.isLocked())
+					followUps.incrementAndGet();
+				done.countDown();
+			};
+		}, executor, () -> { throw new AssertionError("Operation must not be given up"); });
+		
+		// Busy for less than the first backoffs.
+		Thread.sleep(5);
+		release.countDown();
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(followUps.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void operationIsGivenUpOnceTheAttemptsAreExhausted() throws Exception{
+		CountDownLatch release = holdAccount("123");
+		CountDownLatch givenUp = new CountDownLatch(1);
+		AtomicInteger operations = new AtomicInteger();
+		accountAccess.execute("123", () -> {
+			operations.incrementAndGet();
+			return null;
+		}, executor, givenUp::countDown);
+		
+		assertThat(givenUp.await(5, TimeUnit.SECONDS)).isTrue();
+		release.countDown();
+		assertThat(operations.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void operationWithoutGiveUpKeepsRetrying() throws Exception{
+		CountDownLatch release = holdAccount("123");
+		CountDownLatch done = new CountDownLatch(1);
+		accountAccess.execute("123", () -> {
+			done.countDown();
+			return null;
+		}, executor, null);
+		
+		// Busy for longer than the whole budget of attempts.
+		assertThat(done.await(100, TimeUnit.MILLISECONDS)).isFalse();
+		release.countDown();
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	/**
+	 * Holds the account from another thread until the returned latch is released.
+	 */
+	private CountDownLatch holdAccount(String accountId) throws Exception{
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		accountHolder.execute(() -> {
+			ReentrantLock accountLock = accountLocks.lockFor(accountId);
+			accountLock.lock();
+			try {
+				held.countDown();
+				release.await();
+			}catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}finally {
+				accountLock.unlock();
+			}
+		});
+		held.await();
+		return release;
+	}
+}
@@ -0,0 +1,104 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.FileSystemUtils;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.id.TransactionIds;
+import com.db.awmd.challenge.idempotency.TransactionIdempotency;
+import com.db.awmd.challenge.repository.AccountsRepositoryJournaled;
+import com.db.awmd.challenge.repository.TransactionRepositoryJournaled;
+import com.db.awmd.challenge.repository.TransactionRespository;
+import com.db.awmd.challenge.service.AccountsService;
+
+/**
+ * Restarts over journals holding transactions whose debit was applied before a crash, and whose credit was never run: one
+ * recorded DEBIT_SUCCESS, the other still IN_PROGRESS with its debit record dropped by the snapshot of the accounts.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.balance-mode=journaled", "transactions.repository=journaled",
+		"accounts.journal.file=${java.io.tmpdir}/stuck-transfer-recovery/accounts.wal",
+		"accounts.snapshot.file=${java.io.tmpdir}/stuck-transfer-recovery/accounts.snapshot",
+		"transactions.journal.file=${java.io.tmpdir}/stuck-transfer-recovery/transactions.wal",
+		// The recovered transaction must not wait for the deadline.
+		"transfer.sweeper.deadline-millis=60000", "transfer.sweeper.interval-millis=20"})
+public class StuckTransferRecoveryTest {
+
+	private static final File DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "stuck-transfer-recovery");
+	private static final String TRANSACTION_ID = TransactionIds.format(42);
+	private static final String IN_PROGRESS_TRANSACTION_ID = TransactionIds.format(43);
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransactionRespository transactionRespository;
+
+	@BeforeClass
+	public static void crashAfterDebit() throws Exception {
+		FileSystemUtils.deleteRecursively(DIRECTORY);
+		DIRECTORY.mkdirs();
+
+		AccountsRepositoryJournaled accountsRepository = new AccountsRepositoryJournaled(new File(DIRECTORY, "accounts.wal").getPath(), true,
+				new File(DIRECTORY, "accounts.snapshot").getPath(), 0, new TransactionIdempotency(3600, 1000));
+		TransactionRepositoryJournaled transactionRepository = new TransactionRepositoryJournaled(new File(DIRECTORY, "transactions.wal").getPath(), true);
+		accountsRepository.createAccount(new Account("123", new BigDecimal(1000)));
+		accountsRepository.createAccount(new Account("abc", new BigDecimal(2000)));
+
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(TRANSACTION_ID);
+		transactionDO.setSourceAccountId("123");
+		transactionDO.setTargetAccountId("abc");
+		transactionDO.setAmount(new BigDecimal(100));
+		transactionDO.setTransactionStatus(TransactionStatus.IN_PROGRESS);
+		transactionRepository.createTransaction(transactionDO);
+		assertThat(accountsRepository.tryDebitAccountForTransaction(transactionDO)).isTrue();
+		transactionDO.setTransactionStatus(TransactionStatus.DEBIT_SUCCESS);
+		transactionRepository.updateTransactionJob(transactionDO);
+
+		// Debited, but the crash comes before DEBIT_SUCCESS is recorded.
+		TransactionDO inProgressTransactionDO = new TransactionDO();
+		inProgressTransactionDO.setTransactionId(IN_PROGRESS_TRANSACTION_ID);
+		inProgressTransactionDO.setSourceAccountId("123");
+		inProgressTransactionDO.setTargetAccountId("abc");
+		inProgressTransactionDO.setAmount(new BigDecimal(50));
+		inProgressTransactionDO.setTransactionStatus(TransactionStatus.IN_PROGRESS);
+		transactionRepository.createTransaction(inProgressTransactionDO);
+		assertThat(accountsRepository.tryDebitAccountForTransaction(inProgressTransactionDO)).isTrue();
+
+		// Crash: the accounts are recovered from their snapshot only, the transactions from their journal.
+		accountsRepository.destroy();
+	}
+
+	@Test
+	public void creditOfRecoveredDebitedTransactionsIsRedriven() throws Exception{
+		assertThat(waitForCompletion(TRANSACTION_ID)).isEqualTo(TransactionStatus.SUCCESS);
+		// Not timed out: its debit is known from the snapshot.
+		assertThat(waitForCompletion(IN_PROGRESS_TRANSACTION_ID)).isEqualTo(TransactionStatus.SUCCESS);
+		assertThat(accountsService.getAccount("123").getBalance()).isEqualByComparingTo("850");
+		assertThat(accountsService.getAccount("abc").getBalance()).isEqualByComparingTo("2150");
+	}
+
+	private TransactionStatus waitForCompletion(String transactionId) throws InterruptedException {
+		TransactionStatus status = null;
+		for(int i = 0; i < 250; i++) {
+			status = transactionRespository.findTransactionById(transactionId).getTransactionStatus();
+			if(status != TransactionStatus.IN_PROGRESS && status != TransactionStatus.DEBIT_SUCCESS)
+				break;
+			Thread.sleep(20);
+		}
+		return status;
+	}
+}
@@ -0,0 +1,109 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.engine.StuckTransferSweeper;
+import com.db.awmd.challenge.id.TransactionIdGenerator;
+import com.db.awmd.challenge.id.TransactionIds;
+import com.db.awmd.challenge.repository.TransactionRespository;
+import com.db.awmd.challenge.service.AccountTransactionProcessor;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransactionService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"transfer.sweeper.deadline-millis=200", "transfer.sweeper.interval-millis=20"})
+public class StuckTransferSweeperTest {
+
+	@Autowired
+	private TransactionService transactionService;
+	
+	@Autowired
+	private AccountsService accountsService;
+	
+	@Autowired
+	private TransactionRespository transactionRespository;
+	
+	@Autowired
+	private AccountTransactionProcessor accountTransactionProcessor;
+	
+	@Autowired
+	private TransactionIdGenerator transactionIdGenerator;
+	
+	@Autowired
+	private StuckTransferSweeper stuckTransferSweeper;
+	
+	@Before
+	public void prepare() {
+		// Reset the existing accounts and transactions before each test.
+		accountsService.getAccountsRepository().clearAccounts();
+		transactionService.clearTransactions();
+		accountsService.createAccount(new Account("123", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("abc", new BigDecimal(2000)));
+	}
+	
+	@Test
+	public void lostCreditIsRedriven() throws Exception{
+		TransactionDO transactionDO = persistTransaction();
+		// The debit succeeds, but its credit task is lost.
+		accountTransactionProcessor.debitSourceAccount(transactionDO);
+		
+		assertThat(waitForCompletion(transactionDO)).isEqualTo(TransactionStatus.SUCCESS);
+		assertThat(accountsService.getAccount("123").getBalance()).isEqualByComparingTo("900");
+		assertThat(accountsService.getAccount("abc").getBalance()).isEqualByComparingTo("2100");
+		assertThat(stuckTransferSweeper.getGauges().getRedrivenCredits()).isPositive();
+		
+		// A credit replayed after the re-driven one is not applied again.
+		accountTransactionProcessor.creditTargetAccount(transactionDO);
+		assertThat(accountsService.getAccount("abc").getBalance()).isEqualByComparingTo("2100");
+	}
+	
+	@Test
+	public void lostDebitIsTimedOut() throws Exception{
+		// The debit task is lost.
+		TransactionDO transactionDO = persistTransaction();
+		
+		assertThat(waitForCompletion(transactionDO)).isEqualTo(TransactionStatus.TRANSACTION_TIMEOUT);
+		
+		// A debit arriving after the time-out is not applied.
+		assertThat(accountTransactionProcessor.debitSourceAccount(transactionDO)).isFalse();
+		assertThat(accountsService.getAccount("123").getBalance()).isEqualByComparingTo("1000");
+		assertThat(transactionRespository.findTransactionById(transactionDO.getTransactionId()).getTransactionStatus())
+				.isEqualTo(TransactionStatus.TRANSACTION_TIMEOUT);
+		assertThat(stuckTransferSweeper.getGauges().getTimedOut()).isPositive();
+	}
+	
+	private TransactionDO persistTransaction() {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(TransactionIds.format(transactionIdGenerator.nextId()));
+		transactionDO.setSourceAccountId("123");
+		transactionDO.setTargetAccountId("abc");
+		transactionDO.setAmount(new BigDecimal(100));
+		transactionDO.setTransactionStatus(TransactionStatus.IN_PROGRESS);
+		transactionRespository.createTransaction(transactionDO);
+		stuckTransferSweeper.track(transactionDO);
+		return transactionDO;
+	}
+	
+	private TransactionStatus waitForCompletion(TransactionDO transactionDO) throws Exception{
+		TransactionStatus status = null;
+		for(int i = 0; i < 200; i++) {
+			status = transactionRespository.findTransactionById(transactionDO.getTransactionId()).getTransactionStatus();
+			if(status != TransactionStatus.IN_PROGRESS && status != TransactionStatus.DEBIT_SUCCESS)
+				break;
+			Thread.sleep(20);
+		}
+		return status;
+	}
+}
@@ -0,0 +1,92 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.id.TimeOrderedIdGenerator;
+import com.db.awmd.challenge.id.TransactionIds;
+
+public class TimeOrderedIdGeneratorTest {
+
+	@Test
+	public void idsAreUniqueAndIncreasingAcrossThreads() throws Exception{
+		TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(7, System::currentTimeMillis);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Boolean>> generators = new ArrayList<>();
+		for(int i = 0; i < 8; i++) {
+			generators.add(executor.submit(() -> {
+				long previous = 0;
+				boolean increasing = true;
+				for(int j = 0; j < 50_000; j++) {
+					long id = idGenerator.nextId();
+					increasing &= id > previous;
+					previous = id;
+					ids.add(id);
+				}
+				return increasing;
+			}));
+		}
+		for(Future<Boolean> generator : generators)
+			assertThat(generator.get()).isTrue();
+		executor.shutdown();
+		
+		assertThat(ids).hasSize(8 * 50_000);
+	}
+	
+	@Test
+	public void idsFollowTheClockAndBorrowTimeWhenTheSequenceIsExhausted() {
+		AtomicLong clock = new AtomicLong(1500000000000L);
+		TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(1, clock::get);
+		
+		long first = idGenerator.nextId();
+		assertThat(TimeOrderedIdGenerator.timeMillisOf(first)).isEqualTo(1500000000000L);
+		
+		// More ids than the sequence holds within the same millisecond.
+		long last = first;
+		for(int i = 0; i < 5000; i++) {
+			long id = idGenerator.nextId();
+			assertThat(id).isGreaterThan(last);
+			last = id;
+		}
+		assertThat(TimeOrderedIdGenerator.timeMillisOf(last)).isEqualTo(1500000000001L);
+		
+		// A clock going backwards does not break the order.
+		clock.addAndGet(-1000);
+		assertThat(idGenerator.nextId()).isGreaterThan(last);
+		
+		clock.addAndGet(10_000);
+		assertThat(TimeOrderedIdGenerator.timeMillisOf(idGenerator.nextId())).isEqualTo(1500000009000L);
+	}
+	
+	@Test
+	public void encodedIdsSortLikeTheIds() {
+		long[] ids = { 0, 1, 31, 32, 1L << 40, Long.MAX_VALUE, -1 };
+		String previous = null;
+		for(long id : ids) {
+			String encoded = TransactionIds.format(id);
+			assertThat(encoded).hasSize(TransactionIds.ENCODED_LENGTH);
+			assertThat(TransactionIds.parse(encoded)).isEqualTo(id);
+			assertThat(TransactionIds.parse(encoded.toLowerCase())).isEqualTo(id);
+			if(previous != null)
+				assertThat(encoded.compareTo(previous)).isPositive();
+			previous = encoded;
+		}
+		
+		assertThat(TransactionIds.isValid("5c1f6b2e-7a43-4d0e-9a51-3f4c2b8d9e10")).isFalse();
+		assertThat(TransactionIds.isValid("0000000000O00")).isFalse();
+		assertThat(TransactionIds.isValid("G000000000000")).isFalse();
+		assertThatThrownBy(() -> TransactionIds.parse("unknown")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
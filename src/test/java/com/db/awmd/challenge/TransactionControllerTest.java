@@ -1,13 +1,19 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -27,13 +33,19 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
+import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
+import com.db.awmd.challenge.client.BinaryTransferCodec;
 import com.db.awmd.challenge.client.FundsTransferRequest;
 import com.db.awmd.challenge.client.TransactionJob;
 import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.client.TransactionJobBatch;
+import com.db.awmd.challenge.client.TransactionJobList;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.AdmissionController;
 import com.db.awmd.challenge.service.TransactionService;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
@@ -51,6 +63,9 @@ public class TransactionControllerTest {
 	  
 	  @Autowired
 	  private TransactionService transactionService;
+	  
+	  @Autowired
+	  private AdmissionController admissionController;
 
 	  @Autowired
 	  private WebApplicationContext webApplicationContext;
@@ -407,6 +422,285 @@ public class TransactionControllerTest {
 		  assertThat(new BigDecimal("5750")).isEqualTo(account6.getBalance());
 	  }
 	  
+	  @Test
+	  public void initiateBatchOfTransactions() throws Exception{
+		  createTestAccountsForTransaction("123", "1000");
+		  createTestAccountsForTransaction("abc", "2000");
+		  createTestAccountsForTransaction("456", "3000");
+		  
+		  String batchRequest = "[ { \"sourceAccountId\": \"123\", \"targetAccountId\": \"abc\", \"amount\": 100 },"
+				  + " { \"sourceAccountId\": \"123\", \"targetAccountId\": \"456\", \"amount\": 50 },"
+				  + " { \"sourceAccountId\": \"xyz\", \"targetAccountId\": \"abc\", \"amount\": 10 },"
+				  + " { \"sourceAccountId\": \"abc\", \"targetAccountId\": \"123\", \"amount\": 300 } ]";
+		  
+		  MvcResult mvcResult = this.mockMvc.perform(post("/v1/transaction/jobs/batch").contentType(FundsTransferRequest.MEDIA_TYPE_JSON).accept(TransactionJobBatch.MEDIA_TYPE_JSON)
+				  .content(batchRequest))
+		  .andExpect(status().isOk())
+		  .andExpect(jsonPath("$.acceptedCount").value(3))
+		  .andExpect(jsonPath("$.rejectedCount").value(1))
+		  .andExpect(jsonPath("$.results[2].index").value(2))
+		  .andExpect(jsonPath("$.results[2].error.errorCode").value(1001))
+		  .andReturn();
+		  
+		  JsonNode results = new ObjectMapper().readTree(mvcResult.getResponse().getContentAsString()).get("results");
+		  for(int i : new int[] {0, 1, 3}) {
+			  assertThat(results.get(i).get("transactionJob").get("links")).isNotEmpty();
+			  validateTransactionJobStatusAsSuccess(getTransactionJobStatus(results.get(i).get("transactionJob").get("transactionJobId").asText()));
+		  }
+		  
+		  assertThat(this.accountsService.getAccount("123").getBalance()).isEqualByComparingTo("1150");
+		  assertThat(this.accountsService.getAccount("abc").getBalance()).isEqualByComparingTo("1800");
+		  assertThat(this.accountsService.getAccount("456").getBalance()).isEqualByComparingTo("3050");
+	  }
+	  
+	  @Test
+	  public void validateEmptyBatchOfTransactions() throws Exception{
+		  this.mockMvc.perform(post("/v1/transaction/jobs/batch").contentType(FundsTransferRequest.MEDIA_TYPE_JSON).accept(TransactionJobBatch.MEDIA_TYPE_JSON)
+				  .content("[]"))
+		  .andExpect(status().isBadRequest())
+		  .andExpect(jsonPath("$.errorCode").value("1000"));
+	  }
+	  
+	  @Test
+	  public void metricsCoverTheStagesOfATransfer() throws Exception{
+		  createTestAccountsForTransaction("123", "1000");
+		  createTestAccountsForTransaction("abc", "2000");
+		  initiateTransaction("123", "abc", "100");
+		  
+		  MvcResult mvcResult = this.mockMvc.perform(get("/v1/metrics").accept(MediaType.APPLICATION_JSON))
+				  .andExpect(status().isOk())
+				  .andReturn();
+		  
+		  JsonNode metrics = new ObjectMapper().readTree(mvcResult.getResponse().getContentAsString());
+		  // The debit is recorded before its credit starts, so before the transaction is completed.
+		  for(String stage : new String[] {"VALIDATION", "PERSISTENCE", "DEBIT_QUEUE", "DEBIT"})
+			  assertThat(metrics.get("latencies").get(stage).get("count").asLong()).isGreaterThan(0);
+		  assertThat(metrics.get("executors").get("debitTransactionThreadpool").get("queueRemainingCapacity").asInt()).isGreaterThan(0);
+		  assertThat(metrics.get("executors").get("notificationThreadpool").has("callerRunsRejections")).isTrue();
+		  assertThat(metrics.get("idempotency").get("debitedTransactions").get("misses").asLong()).isGreaterThan(0);
+	  }
+	  
+	  @Test
+	  public void streamTransactionEventsOfAccount() throws Exception{
+		  createTestAccountsForTransaction("123", "1000");
+		  createTestAccountsForTransaction("abc", "2000");
+		  
+		  MvcResult events = this.mockMvc.perform(get("/v1/transaction/events").param("accountId", "abc").accept(MediaType.TEXT_EVENT_STREAM))
+				  .andExpect(request().asyncStarted())
+				  .andReturn();
+		  String transactionJobId = initiateTransaction("123", "abc", "100");
+		  
+		  // The events are sent asynchronously.
+		  String stream = waitForEvent(events, transactionJobId + "/SUCCESS");
+		  assertThat(stream).contains("id:" + transactionJobId + "/IN_PROGRESS");
+		  assertThat(stream).contains("id:" + transactionJobId + "/DEBIT_SUCCESS");
+		  assertThat(stream.indexOf("/IN_PROGRESS")).isLessThan(stream.indexOf("/DEBIT_SUCCESS"));
+		  assertThat(stream.indexOf("/DEBIT_SUCCESS")).isLessThan(stream.indexOf("/SUCCESS"));
+	  }
+	  
+	  @Test
+	  public void streamTransactionEventsOfCompletedJob() throws Exception{
+		  createTestAccountsForTransaction("123", "1000");
+		  createTestAccountsForTransaction("abc", "2000");
+		  String transactionJobId = initiateTransaction("123", "abc", "100");
+		  
+		  MvcResult events = this.mockMvc.perform(get("/v1/transaction/jobs/" + transactionJobId + "/events").accept(MediaType.TEXT_EVENT_STREAM))
+				  .andExpect(request().asyncStarted())
+				  .andReturn();
+		  
+		  // The stream starts with the current, terminal status and ends.
+		  assertThat(waitForEvent(events, transactionJobId + "/SUCCESS")).contains("\"transactionStatus\":\"SUCCESS\"");
+		  
+		  this.mockMvc.perform(get("/v1/transaction/jobs/unknown/events").accept(MediaType.TEXT_EVENT_STREAM))
+		  .andExpect(status().isNotFound());
+	  }
+	  
+	  @Test
+  public void linksAreOmittedForMinimalRepresentation() throws Exception{
+	  createTestAccountsForTransaction("123", "1000");
+	  createTestAccountsForTransaction("abc", "2000");
+	  String transactionRequest = "{ \"sourceAccountId\": \"123\", \"targetAccountId\": \"abc\", \"amount\": 100 }";
+	  
+	  String transactionJobId = initiateTransaction("123", "abc", "100");
+	  this.mockMvc.perform(get("/v1/transaction/jobs/" + transactionJobId).accept(TransactionJob.MEDIA_TYPE_JSON))
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.links[0].version").value(1))
+	  .andExpect(jsonPath("$.links[0].method").value("GET"))
+	  .andExpect(jsonPath("$.links[0].rel").value("self"))
+	  .andExpect(jsonPath("$.links[0].uri").value("/v1/transaction/jobs/" + transactionJobId))
+	  .andExpect(jsonPath("$.links[0].type").value(TransactionJob.MEDIA_TYPE_JSON))
+	  .andExpect(jsonPath("$.links[0].title").value("Link to get transaction job status"));
+	  
+	  this.mockMvc.perform(get("/v1/transaction/jobs/" + transactionJobId).accept(TransactionJob.MEDIA_TYPE_JSON).header("Prefer", "return=minimal"))
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.transactionJobId").value(transactionJobId))
+	  .andExpect(jsonPath("$.links").doesNotExist());
+	  
+	  // Without a 'wait' preference, the response is not dispatched asynchronously.
+	  this.mockMvc.perform(post("/v1/transaction/jobs").contentType(FundsTransferRequest.MEDIA_TYPE_JSON).accept(TransactionJob.MEDIA_TYPE_JSON)
+			  .header("Prefer", "return=minimal").content(transactionRequest))
+	  .andExpect(request().asyncNotStarted())
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.links").doesNotExist())
+	  .andExpect(header().string(HttpHeaders.LOCATION, startsWith("/v1/transaction/jobs/")));
+  }
+  
+  @Test
+  public void transferWithBinaryMediaTypes() throws Exception{
+	  createTestAccountsForTransaction("123", "1000");
+	  createTestAccountsForTransaction("abc", "2000");
+	  FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+	  fundsTransferRequest.setSourceAccountId("123");
+	  fundsTransferRequest.setTargetAccountId("abc");
+	  fundsTransferRequest.setAmount(new BigDecimal("100.25"));
+	  
+	  MvcResult mvcResult = this.mockMvc.perform(post("/v1/transaction/jobs").contentType(FundsTransferRequest.MEDIA_TYPE_BINARY).accept(TransactionJob.MEDIA_TYPE_BINARY)
+			  .content(BinaryTransferCodec.encodeRequest(fundsTransferRequest)))
+			  .andExpect(status().isOk())
+			  .andExpect(content().contentType(TransactionJob.MEDIA_TYPE_BINARY))
+			  .andReturn();
+	  TransactionJob transactionJob = BinaryTransferCodec.decodeJob(ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray()));
+	  assertThat(transactionJob.getSourceAccountId()).isEqualTo("123");
+	  assertThat(transactionJob.getTargetAccountId()).isEqualTo("abc");
+	  assertThat(transactionJob.getAmount()).isEqualTo(new BigDecimal("100.25"));
+	  
+	  for(int i = 0; i < 100 && transactionJob.getTransactionStatus() != TransactionStatus.SUCCESS; i++) {
+		  Thread.sleep(50);
+		  mvcResult = this.mockMvc.perform(get("/v1/transaction/jobs/" + transactionJob.getTransactionJobId()).accept(TransactionJob.MEDIA_TYPE_BINARY))
+				  .andExpect(status().isOk())
+				  .andReturn();
+		  transactionJob = BinaryTransferCodec.decodeJob(ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray()));
+	  }
+	  assertThat(transactionJob.getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+	  
+	  // A rejected request is answered in binary too: version, HTTP status, error code, message.
+	  fundsTransferRequest.setSourceAccountId("unknown");
+	  mvcResult = this.mockMvc.perform(post("/v1/transaction/jobs").contentType(FundsTransferRequest.MEDIA_TYPE_BINARY).accept(TransactionJob.MEDIA_TYPE_BINARY)
+			  .content(BinaryTransferCodec.encodeRequest(fundsTransferRequest)))
+			  .andExpect(status().isBadRequest())
+			  .andReturn();
+	  ByteBuffer error = ByteBuffer.wrap(mvcResult.getResponse().getContentAsByteArray());
+	  error.get();
+	  error.getShort();
+	  assertThat(error.getInt()).isEqualTo(AccountTransactionErrorCodes.INVALID_SOURCE_ACCOUNTID);
+	  
+	  this.mockMvc.perform(post("/v1/transaction/jobs").contentType(FundsTransferRequest.MEDIA_TYPE_BINARY).accept(TransactionJob.MEDIA_TYPE_BINARY)
+			  .content(new byte[] { BinaryTransferCodec.VERSION, 0, 1 }))
+			  .andExpect(status().isBadRequest());
+  }
+  
+  @Test
+  public void startTransactionAndWaitForCompletion() throws Exception{
+	  createTestAccountsForTransaction("123", "1000");
+	  createTestAccountsForTransaction("abc", "2000");
+	  String transactionRequest = "{ \"sourceAccountId\": \"123\", \"targetAccountId\": \"abc\", \"amount\": 100 }";
+	  
+	  MvcResult mvcResult = this.mockMvc.perform(post("/v1/transaction/jobs").contentType(FundsTransferRequest.MEDIA_TYPE_JSON).accept(TransactionJob.MEDIA_TYPE_JSON)
+			  .header("Prefer", "wait=5").content(transactionRequest))
+			  .andExpect(request().asyncStarted())
+			  .andReturn();
+	  
+	  // The response is the completed job, without polling its status.
+	  this.mockMvc.perform(asyncDispatch(mvcResult))
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.transactionStatus").value("SUCCESS"));
+	  
+	  assertThat(accountsService.getAccount("123").getBalance()).isEqualByComparingTo("900");
+	  assertThat(accountsService.getAccount("abc").getBalance()).isEqualByComparingTo("2100");
+  }
+  
+  @Test
+  public void findTransactionJobsByAccountAndStatus() throws Exception{
+	  createTestAccountsForTransaction("123", "1000");
+	  createTestAccountsForTransaction("abc", "2000");
+	  createTestAccountsForTransaction("xyz", "3000");
+	  String firstJobId = initiateTransaction("123", "abc", "100");
+	  String secondJobId = initiateTransaction("abc", "xyz", "200");
+	  
+	  this.mockMvc.perform(get("/v1/transaction/jobs").param("accountId", "abc").accept(TransactionJobList.MEDIA_TYPE_JSON))
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.transactionJobs.length()").value(2))
+	  .andExpect(jsonPath("$.transactionJobs[0].transactionJobId").value(firstJobId))
+	  .andExpect(jsonPath("$.transactionJobs[1].transactionJobId").value(secondJobId));
+	  
+	  this.mockMvc.perform(get("/v1/transaction/jobs").param("accountId", "xyz").param("status", "SUCCESS").accept(TransactionJobList.MEDIA_TYPE_JSON))
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.transactionJobs.length()").value(1))
+	  .andExpect(jsonPath("$.transactionJobs[0].transactionJobId").value(secondJobId));
+	  
+	  // The completed jobs have left the in-flight statuses.
+	  this.mockMvc.perform(get("/v1/transaction/jobs").param("status", "IN_PROGRESS", "DEBIT_SUCCESS").accept(TransactionJobList.MEDIA_TYPE_JSON))
+	  .andExpect(status().isOk())
+	  .andExpect(jsonPath("$.transactionJobs.length()").value(0));
+	  
+	  this.mockMvc.perform(get("/v1/transaction/jobs").accept(TransactionJobList.MEDIA_TYPE_JSON))
+	  .andExpect(status().isBadRequest())
+	  .andExpect(jsonPath("$.errorCode").value(AccountTransactionErrorCodes.MISSING_JOB_QUERY_CRITERIA));
+  }
+  
+  @Test
+  public void transfersBeyondTheAdmissionLimitAreShed() throws Exception{
+	  createTestAccountsForTransaction("123", "1000");
+	  createTestAccountsForTransaction("abc", "2000");
+	  String transactionRequest = "{ \"sourceAccountId\": \"123\", \"targetAccountId\": \"abc\", \"amount\": 100 }";
+	  
+	  // Transfers in flight up to the limit.
+	  int limit = admissionController.getGauges().getLimit();
+	  admissionController.admit(limit);
+	  try {
+		  this.mockMvc.perform(post("/v1/transaction/jobs").contentType(FundsTransferRequest.MEDIA_TYPE_JSON).accept(TransactionJob.MEDIA_TYPE_JSON)
+				  .content(transactionRequest))
+		  .andExpect(status().isTooManyRequests())
+		  .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+		  .andExpect(jsonPath("$.errorCode").value(AccountTransactionErrorCodes.TRANSFERS_OVERLOADED));
+	  }finally {
+		  admissionController.cancel(limit);
+	  }
+	  assertThat(admissionController.getGauges().getShed()).isPositive();
+	  assertThat(accountsService.getAccount("123").getBalance()).isEqualByComparingTo("1000");
+	  
+	  initiateTransaction("123", "abc", "100");
+	  assertThat(admissionController.getGauges().getInFlight()).isZero();
+  }
+  
+  @Test
+  public void batchIsAdmittedUpToTheRoomLeft() throws Exception{
+	  createTestAccountsForTransaction("123", "1000");
+	  createTestAccountsForTransaction("abc", "2000");
+	  String batchRequest = "[ { \"sourceAccountId\": \"123\", \"targetAccountId\": \"abc\", \"amount\": 100 },"
+			  + " { \"sourceAccountId\": \"123\", \"targetAccountId\": \"abc\", \"amount\": 50 } ]";
+	  
+	  // Room left for one transfer only.
+	  int limit = admissionController.getGauges().getLimit();
+	  admissionController.admit(limit - 1);
+	  MvcResult mvcResult;
+	  try {
+		  mvcResult = this.mockMvc.perform(post("/v1/transaction/jobs/batch").contentType(FundsTransferRequest.MEDIA_TYPE_JSON).accept(TransactionJobBatch.MEDIA_TYPE_JSON)
+				  .content(batchRequest))
+		  .andExpect(status().isOk())
+		  .andExpect(jsonPath("$.acceptedCount").value(1))
+		  .andExpect(jsonPath("$.rejectedCount").value(1))
+		  .andExpect(jsonPath("$.results[1].error.errorCode").value(AccountTransactionErrorCodes.TRANSFERS_OVERLOADED))
+		  .andReturn();
+	  }finally {
+		  admissionController.cancel(limit - 1);
+	  }
+	  
+	  JsonNode results = new ObjectMapper().readTree(mvcResult.getResponse().getContentAsString()).get("results");
+	  validateTransactionJobStatusAsSuccess(getTransactionJobStatus(results.get(0).get("transactionJob").get("transactionJobId").asText()));
+	  assertThat(accountsService.getAccount("123").getBalance()).isEqualByComparingTo("900");
+	  assertThat(admissionController.getGauges().getInFlight()).isZero();
+  }
+  
+  private String waitForEvent(MvcResult events, String eventId) throws Exception{
+		  for(int i = 0; i < 100 && !events.getResponse().getContentAsString().contains("id:" + eventId); i++)
+			  Thread.sleep(50);
+		  
+		  String stream = events.getResponse().getContentAsString();
+		  assertThat(stream).contains("id:" + eventId);
+		  return stream;
+	  }
+	  
 	  private String initiateTransaction(String account1, String account2, String transactionAmount) throws Exception{
 		  String transactionRequest = "{ \"sourceAccountId\": \"" + account1 + "\", \"targetAccountId\": \"" + account2 + "\", \"amount\": " + transactionAmount + " }";
 		  
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.events.TransactionEventHub;
+
+public class TransactionEventHubTest {
+
+	@Test
+	public void subscriptionIsClosedWhenItsSendIsRejected() {
+		AtomicInteger submittedSends = new AtomicInteger();
+		// A saturated notification threadpool.
+		TransactionEventHub transactionEventHub = new TransactionEventHub(task -> {
+			submittedSends.incrementAndGet();
+			throw new RejectedExecutionException("saturated");
+		}, 60000);
+		transactionEventHub.subscribeToAccounts(Collections.singletonList("123"));
+
+		// The publishing thread neither runs the send nor fails.
+		transactionEventHub.publish(transaction("tx-1", TransactionStatus.IN_PROGRESS));
+		assertThat(submittedSends.get()).isEqualTo(1);
+
+		// The subscription is gone, so the later transitions are not sent to it.
+		transactionEventHub.publish(transaction("tx-1", TransactionStatus.DEBIT_SUCCESS));
+		transactionEventHub.publish(transaction("tx-2", TransactionStatus.IN_PROGRESS));
+		assertThat(submittedSends.get()).isEqualTo(1);
+	}
+
+	private static TransactionDO transaction(String transactionId, TransactionStatus transactionStatus) {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(transactionId);
+		transactionDO.setSourceAccountId("123");
+		transactionDO.setTargetAccountId("abc");
+		transactionDO.setAmount(new BigDecimal(100));
+		transactionDO.setTransactionStatus(transactionStatus);
+		return transactionDO;
+	}
+}
@@ -0,0 +1,128 @@
+package com.db.awmd.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.db.awmd.challenge.client.TransactionJob.TransactionStatus;
+import com.db.awmd.challenge.domain.TransactionDO;
+import com.db.awmd.challenge.id.TransactionIds;
+import com.db.awmd.challenge.repository.TransactionRepositoryJournaled;
+
+public class TransactionRepositoryJournaledTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	@Test
+	public void transactionsAreRecoveredFromTheJournal() throws Exception{
+		String journalFile = new File(temporaryFolder.getRoot(), "transactions.wal").getPath();
+		
+		TransactionRepositoryJournaled transactionRepository = new TransactionRepositoryJournaled(journalFile, true);
+		transactionRepository.createTransaction(transaction(transactionId(1), "123", "abc", "100.25", TransactionStatus.IN_PROGRESS));
+		transactionRepository.createTransaction(transaction(transactionId(2), "abc", "123", "7", TransactionStatus.IN_PROGRESS));
+		transactionRepository.updateTransactionJob(transaction(transactionId(1), "123", "abc", "100.25", TransactionStatus.DEBIT_SUCCESS));
+		transactionRepository.destroy();
+		
+		TransactionRepositoryJournaled recoveredRepository = new TransactionRepositoryJournaled(journalFile, true);
+		TransactionDO recovered = recoveredRepository.findTransactionById(transactionId(1));
+		assertThat(recovered.getTransactionStatus()).isEqualTo(TransactionStatus.DEBIT_SUCCESS);
+		assertThat(recovered.getSourceAccountId()).isEqualTo("123");
+		assertThat(recovered.getTargetAccountId()).isEqualTo("abc");
+		assertThat(recovered.getAmount()).isEqualTo(new BigDecimal("100.25"));
+		assertThat(recoveredRepository.findTransactionById(transactionId(2)).getTransactionStatus()).isEqualTo(TransactionStatus.IN_PROGRESS);
+		recoveredRepository.destroy();
+	}
+	
+	@Test
+	public void concurrentWritersAreAllDurable() throws Exception{
+		String journalFile = new File(temporaryFolder.getRoot(), "transactions.wal").getPath();
+		
+		TransactionRepositoryJournaled transactionRepository = new TransactionRepositoryJournaled(journalFile, true);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> writes = new ArrayList<>();
+		for(int i = 0; i < 200; i++) {
+			String transactionId = transactionId(i);
+			writes.add(executor.submit(() -> transactionRepository.createTransaction(transaction(transactionId, "123", "abc", "1", TransactionStatus.IN_PROGRESS))));
+		}
+		for(Future<?> write : writes)
+			write.get();
+		executor.shutdown();
+		transactionRepository.destroy();
+		
+		TransactionRepositoryJournaled recoveredRepository = new TransactionRepositoryJournaled(journalFile, true);
+		for(int i = 0; i < 200; i++)
+			assertThat(recoveredRepository.findTransactionById(transactionId(i))).isNotNull();
+		recoveredRepository.destroy();
+	}
+	
+	@Test
+	public void tornRecordAtTheEndIsDiscarded() throws Exception{
+		File file = new File(temporaryFolder.getRoot(), "transactions.wal");
+		
+		TransactionRepositoryJournaled transactionRepository = new TransactionRepositoryJournaled(file.getPath(), false);
+		transactionRepository.createTransaction(transaction(transactionId(1), "123", "abc", "1", TransactionStatus.IN_PROGRESS));
+		transactionRepository.updateTransactionJob(transaction(transactionId(1), "123", "abc", "1", TransactionStatus.SUCCESS));
+		transactionRepository.destroy();
+		
+		// Simulate a crash in the middle of writing the last record.
+		try(RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+			journal.setLength(journal.length() - 3);
+		}
+		
+		TransactionRepositoryJournaled recoveredRepository = new TransactionRepositoryJournaled(file.getPath(), false);
+		assertThat(recoveredRepository.findTransactionById(transactionId(1)).getTransactionStatus()).isEqualTo(TransactionStatus.IN_PROGRESS);
+		
+		// New records are appended after the last valid one.
+		recoveredRepository.updateTransactionJob(transaction(transactionId(1), "123", "abc", "1", TransactionStatus.SUCCESS));
+		recoveredRepository.destroy();
+		
+		recoveredRepository = new TransactionRepositoryJournaled(file.getPath(), false);
+		assertThat(recoveredRepository.findTransactionById(transactionId(1)).getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+		recoveredRepository.destroy();
+	}
+	
+	@Test
+	public void statusesOnlyMoveForward() throws Exception{
+		String journalFile = new File(temporaryFolder.getRoot(), "transactions.wal").getPath();
+		
+		TransactionRepositoryJournaled transactionRepository = new TransactionRepositoryJournaled(journalFile, true);
+		transactionRepository.createTransaction(transaction(transactionId(1), "123", "abc", "1", TransactionStatus.IN_PROGRESS));
+		// A re-driven credit completes before the slow debit records DEBIT_SUCCESS.
+		assertThat(transactionRepository.updateTransactionJob(transaction(transactionId(1), "123", "abc", "1", TransactionStatus.SUCCESS))).isTrue();
+		assertThat(transactionRepository.updateTransactionJob(transaction(transactionId(1), "123", "abc", "1", TransactionStatus.DEBIT_SUCCESS))).isFalse();
+		assertThat(transactionRepository.findTransactionById(transactionId(1)).getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+		assertThat(transactionRepository.findTransactions(null, EnumSet.of(TransactionStatus.DEBIT_SUCCESS))).isEmpty();
+		transactionRepository.destroy();
+		
+		TransactionRepositoryJournaled recoveredRepository = new TransactionRepositoryJournaled(journalFile, true);
+		assertThat(recoveredRepository.findTransactionById(transactionId(1)).getTransactionStatus()).isEqualTo(TransactionStatus.SUCCESS);
+		recoveredRepository.destroy();
+	}
+	
+	private static String transactionId(long id) {
+		return TransactionIds.format(id);
+	}
+	
+	private static TransactionDO transaction(String transactionId, String sourceAccountId, String targetAccountId, String amount, TransactionStatus transactionStatus) {
+		TransactionDO transactionDO = new TransactionDO();
+		transactionDO.setTransactionId(transactionId);
+		transactionDO.setSourceAccountId(sourceAccountId);
+		transactionDO.setTargetAccountId(targetAccountId);
+		transactionDO.setAmount(new BigDecimal(amount));
+		transactionDO.setTransactionStatus(transactionStatus);
+		return transactionDO;
+	}
+}
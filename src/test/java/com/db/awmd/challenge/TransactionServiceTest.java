@@ -10,6 +10,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.db.awmd.challenge.client.AccountTransactionErrorCodes;
@@ -69,6 +70,26 @@ public class TransactionServiceTest {
 		assertThat(this.accountsService.getAccount(accountId2).getBalance()).isEqualTo(new BigDecimal(2500));
 	}
 	
+	@Test
+	public void rejectedTransferHasNoStackTrace() throws Exception{
+		createAccount("123", 100);
+		createAccount("abc", 100);
+		
+		FundsTransferRequest fundsTransferRequest = new FundsTransferRequest();
+		fundsTransferRequest.setAmount(new BigDecimal(500));
+		fundsTransferRequest.setSourceAccountId("123");
+		fundsTransferRequest.setTargetAccountId("abc");
+		try {
+			transactionService.transferFunds(fundsTransferRequest);
+			fail("Since the source account has insufficient funds, it must not reach this point.");
+		}catch(ResourceException e) {
+			assertThat(e.getErrorCode()).isEqualTo(AccountTransactionErrorCodes.INSUFFICIENT_FUNDS_IN_SOURCE_ACCOUNT);
+			assertThat(e.getHttpStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+			assertThat(e.getStackTrace()).isEmpty();
+			assertThat(e.getMessage()).isEqualTo("Insufficient funds in source Account 123 , transaction amount: 500");
+		}
+	}
+	
 	@Test
 	public void getTransactionJobStatus_failInvalidJobId() {
 		try {